@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.K2JStacklessException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+/**
+ * Parses dirty input where a share of the records fail: once with a try/catch around a throwing
+ * chain, once with {@code letCatching} and the usual exceptions, and once with {@code letCatching}
+ * and a preallocated {@link K2JStacklessException}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CatchingBenchmark {
+
+    private static final int RECORDS = 1024;
+    private static final K2JStacklessException NOT_A_NUMBER = new K2JStacklessException("not a number");
+
+    @Param({"10", "50"})
+    public int failurePercent;
+
+    private final String[] records = new String[RECORDS];
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = random.nextInt(100) < failurePercent ? "x" + i : Integer.toString(random.nextInt(100_000));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void tryCatch(final Blackhole blackhole) {
+        for (final String record : records) {
+            int value;
+            try {
+                value = take(record)._let(Integer::parseInt).unwrap();
+            } catch (NumberFormatException e) {
+                value = -1;
+            }
+            blackhole.consume(value);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void letCatching(final Blackhole blackhole) {
+        for (final String record : records) {
+            blackhole.consume(take(record)
+                    ._letCatching(Integer::parseInt)
+                    .unwrapOr(-1));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void letCatchingStackless(final Blackhole blackhole) {
+        for (final String record : records) {
+            blackhole.consume(take(record)
+                    ._letCatching(CatchingBenchmark::parse)
+                    .unwrapOr(-1));
+        }
+    }
+
+    private static Integer parse(final String record) {
+        for (int i = 0; i < record.length(); i++) {
+            if (!Character.isDigit(record.charAt(i))) {
+                throw NOT_A_NUMBER;
+            }
+        }
+        return Integer.parseInt(record);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+/**
+ * Compares {@code take(...)...unwrap()} chains of length 1, 3 and 5 against the same logic written
+ * as plain null checks and as {@link Optional}. Each variant is measured on a non-null and a null
+ * input. Run with the gc profiler (the default for {@code ./gradlew :k2j-compat-benchmarks:jmh})
+ * to see the bytes allocated per chain next to the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChainBenchmark {
+
+    @Param({"nonNull", "null"})
+    public String input;
+
+    private String value;
+
+    @Setup
+    public void setUp() {
+        value = "nonNull".equals(input) ? "  Hello K2J World  " : null;
+    }
+
+    // length 1
+
+    @Benchmark
+    public String k2j_1() {
+        return take(value)
+                ._let(String::trim)
+                .unwrap();
+    }
+
+    @Benchmark
+    public String ifNull_1() {
+        final String in = value;
+        return in != null ? in.trim() : null;
+    }
+
+    @Benchmark
+    public String optional_1() {
+        return Optional.ofNullable(value)
+                .map(String::trim)
+                .orElse(null);
+    }
+
+    // length 3
+
+    @Benchmark
+    public Integer k2j_3() {
+        return take(value)
+                ._let(String::trim)
+                .takeIf((it) -> it != null && !it.isEmpty())
+                ._let(String::length)
+                .unwrap();
+    }
+
+    @Benchmark
+    public Integer ifNull_3() {
+        final String in = value;
+        if (in != null) {
+            final String trimmed = in.trim();
+            if (!trimmed.isEmpty()) {
+                return trimmed.length();
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Integer optional_3() {
+        return Optional.ofNullable(value)
+                .map(String::trim)
+                .filter((it) -> !it.isEmpty())
+                .map(String::length)
+                .orElse(null);
+    }
+
+    // length 5
+
+    @Benchmark
+    public Integer k2j_5() {
+        return take(value)
+                ._let(String::trim)
+                .takeIf((it) -> it != null && !it.isEmpty())
+                ._let(String::toLowerCase)
+                ._let(String::length)
+                ._takeIf((it) -> it > 2)
+                .unwrap();
+    }
+
+    @Benchmark
+    public Integer ifNull_5() {
+        final String in = value;
+        if (in != null) {
+            final String trimmed = in.trim();
+            if (!trimmed.isEmpty()) {
+                final int length = trimmed.toLowerCase().length();
+                if (length > 2) {
+                    return length;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Integer optional_5() {
+        return Optional.ofNullable(value)
+                .map(String::trim)
+                .filter((it) -> !it.isEmpty())
+                .map(String::toLowerCase)
+                .map(String::length)
+                .filter((it) -> it > 2)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs {@link PollutionBenchmark} (or the benchmarks given as JMH options) with
+ * {@code -XX:+PrintInlining}, and prints the throughput of every run next to what C2 did with the
+ * function call inside each {@code K2JWrapper} operation of the measured method:
+ * <pre>
+ * Benchmark                    lambdas      Score  Units    let                  takeIf               also
+ * PollutionBenchmark.loaded          1     95.210  ops/us   inlined              inlined              inlined
+ * PollutionBenchmark.loaded          3     41.877  ops/us   virtual call         virtual call         virtual call
+ * </pre>
+ * Any other JMH option is passed through, e.g. {@code -f 1 -wi 3 -i 3}. The full JMH output, with
+ * the inlining trees, is kept in a temporary file.
+ */
+public final class InliningReport {
+    private static final List<String> JVM_ARGS = Arrays.asList(
+            "-XX:+UnlockDiagnosticVMOptions", "-XX:+PrintCompilation", "-XX:+PrintInlining");
+
+    /**
+     * {@code -XX:+PrintCompilation} line of a compilation: time, id, flags, tier and method.
+     */
+    private static final Pattern COMPILATION = Pattern.compile("^\\s*\\d+\\s+\\d+\\s+[%sbn! ]*?(\\d)\\s+(\\S+::\\S+).*");
+    /**
+     * {@code -XX:+PrintInlining} line of a call site: bci, callee and what was done with it.
+     */
+    private static final Pattern CALL_SITE = Pattern.compile("^[ !sbnmc]*@ (\\d+)\\s+(\\S+) \\(.*?\\)\\s*(.*)$");
+    private static final Pattern FUNCTION = Pattern.compile(".*::do(Let|Take|Also)$");
+    private static final String WRAPPER = "K2JCompat$K2JWrapper::";
+    private static final int C2 = 4;
+
+    private InliningReport() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final File log = File.createTempFile("k2j-inlining", ".log");
+        System.out.println("JMH and JIT output: " + log);
+
+        final List<String> jvmArgs = new ArrayList<>(JVM_ARGS);
+        jvmArgs.addAll(commandLine.getJvmArgsAppend().orElse(new ArrayList<String>()));
+        final ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .jvmArgsAppend(jvmArgs.toArray(new String[0]))
+                .output(log.getPath());
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(PollutionBenchmark.class.getSimpleName());
+        }
+
+        final Collection<RunResult> results = new Runner(options.build()).run();
+        final Map<String, Map<String, String>> inlining =
+                parse(Files.readAllLines(log.toPath(), StandardCharsets.UTF_8));
+        print(results, inlining);
+    }
+
+    /**
+     * @return by {@code "<benchmark> <params>"}, what the last C2 compilation of each fork did
+     * with the function call in every {@code K2JWrapper} operation, by operation
+     */
+    static Map<String, Map<String, String>> parse(final List<String> lines) {
+        final Map<String, Map<String, String>> inlining = new LinkedHashMap<>();
+        final Deque<Frame> frames = new ArrayDeque<>();
+        String benchmark = null;
+        String measured = null;
+        String run = null;
+        boolean rootIsMeasured = false;
+        boolean c2 = false;
+
+        for (final String line : lines) {
+            if (line.startsWith("# Benchmark: ")) {
+                benchmark = line.substring("# Benchmark: ".length()).trim();
+                final int method = benchmark.lastIndexOf('.');
+                final String className = benchmark.substring(0, method);
+                measured = className.substring(className.lastIndexOf('.') + 1) + "::" + benchmark.substring(method + 1);
+                run = benchmark;
+                continue;
+            }
+            if (line.startsWith("# Parameters: ")) {
+                run = benchmark + " " + line.substring("# Parameters: ".length()).trim();
+                continue;
+            }
+            if (measured == null) {
+                continue;
+            }
+
+            final Matcher compilation = COMPILATION.matcher(line);
+            if (compilation.matches()) {
+                if (!line.contains("made not entrant") && !line.contains("made zombie")) {
+                    close(frames, 0, inlining, run);
+                    c2 = Integer.parseInt(compilation.group(1)) == C2;
+                    rootIsMeasured = compilation.group(2).endsWith(measured);
+                }
+                continue;
+            }
+
+            final Matcher callSite = CALL_SITE.matcher(line);
+            if (!c2 || !callSite.matches()) {
+                continue;
+            }
+            final int depth = line.indexOf('@');
+            close(frames, depth, inlining, run);
+
+            final String callee = callSite.group(2);
+            final String decision = callSite.group(3).trim();
+            final Frame parent = frames.peek();
+            final boolean insideMeasured = rootIsMeasured || (parent != null && parent.insideMeasured);
+            final Frame frame = new Frame(depth, callee, decision, insideMeasured || callee.endsWith(measured));
+            if (parent != null && parent.isWrapperOperation() && FUNCTION.matcher(callee).matches()) {
+                parent.functions.add(frame);
+            }
+            frames.push(frame);
+        }
+        close(frames, 0, inlining, run);
+        return inlining;
+    }
+
+    /**
+     * Pops the call sites at {@code depth} or deeper, recording the wrapper operations among them.
+     */
+    private static void close(final Deque<Frame> frames,
+                              final int depth,
+                              final Map<String, Map<String, String>> inlining,
+                              final String run) {
+        while (!frames.isEmpty() && frames.peek().depth >= depth) {
+            final Frame frame = frames.pop();
+            if (frame.insideMeasured && frame.isWrapperOperation() && (!frame.functions.isEmpty() || !frame.inlined())) {
+                Map<String, String> operations = inlining.get(run);
+                if (operations == null) {
+                    operations = new LinkedHashMap<>();
+                    inlining.put(run, operations);
+                }
+                operations.put(frame.callee.substring(frame.callee.indexOf(WRAPPER) + WRAPPER.length()), frame.describe());
+            }
+        }
+    }
+
+    private static void print(final Collection<RunResult> results, final Map<String, Map<String, String>> inlining) {
+        final List<String> operations = new ArrayList<>();
+        for (final Map<String, String> byOperation : inlining.values()) {
+            for (final String operation : byOperation.keySet()) {
+                if (!operations.contains(operation)) {
+                    operations.add(operation);
+                }
+            }
+        }
+
+        final StringBuilder header = new StringBuilder(String.format("%-40s %-12s %10s  %-8s", "Benchmark", "Params", "Score", "Units"));
+        for (final String operation : operations) {
+            header.append(String.format(" %-24s", operation));
+        }
+        System.out.println();
+        System.out.println(header.toString().trim());
+
+        for (final RunResult result : results) {
+            final String benchmark = result.getParams().getBenchmark();
+            final StringBuilder params = new StringBuilder();
+            final StringBuilder key = new StringBuilder();
+            for (final String param : result.getParams().getParamsKeys()) {
+                params.append(params.length() > 0 ? "," : "").append(result.getParams().getParam(param));
+                key.append(key.length() > 0 ? ", " : "").append(param).append(" = ").append(result.getParams().getParam(param));
+            }
+            final String run = key.length() > 0 ? benchmark + " (" + key + ")" : benchmark;
+            final Map<String, String> byOperation = inlining.get(run);
+
+            final StringBuilder row = new StringBuilder(String.format("%-40s %-12s %10.3f  %-8s",
+                    benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1),
+                    params,
+                    result.getPrimaryResult().getScore(),
+                    result.getPrimaryResult().getScoreUnit()));
+            for (final String operation : operations) {
+                final String decision = byOperation != null ? byOperation.get(operation) : null;
+                row.append(String.format(" %-24s", decision != null ? decision : "-"));
+            }
+            System.out.println(row.toString().trim());
+        }
+    }
+
+    private static final class Frame {
+        final int depth;
+        final String callee;
+        final String decision;
+        final boolean insideMeasured;
+        final List<Frame> functions = new ArrayList<>();
+
+        Frame(final int depth, final String callee, final String decision, final boolean insideMeasured) {
+            this.depth = depth;
+            this.callee = callee;
+            this.decision = decision;
+            this.insideMeasured = insideMeasured;
+        }
+
+        boolean isWrapperOperation() {
+            return callee.contains(WRAPPER);
+        }
+
+        boolean inlined() {
+            return decision.startsWith("inline") || decision.startsWith("force inline") || decision.equals("accessor");
+        }
+
+        /**
+         * @return for a wrapper operation, what happened to its function call
+         */
+        String describe() {
+            if (!inlined()) {
+                return "wrapper: " + decision;
+            }
+            int inlinedReceivers = 0;
+            String notInlined = null;
+            for (final Frame function : functions) {
+                if (function.inlined()) {
+                    inlinedReceivers++;
+                } else {
+                    notInlined = function.decision;
+                }
+            }
+            if (inlinedReceivers == 0) {
+                return notInlined != null ? notInlined : "-";
+            }
+            final String inlined = inlinedReceivers == 1 ? "inlined" : "inlined x" + inlinedReceivers;
+            return notInlined != null ? inlined + " + " + notInlined : inlined;
+        }
+    }
+}
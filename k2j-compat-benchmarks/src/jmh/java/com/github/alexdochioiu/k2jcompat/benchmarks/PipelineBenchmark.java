@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.takeAll;
+
+/**
+ * Applies the same five stage chain to a batch of records, once rebuilding the chain with
+ * {@code take(...)} per record, once through a prebuilt {@link K2JPipeline} and once through the
+ * bulk {@code takeAll(...)} path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PipelineBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    private final String[] records = new String[RECORDS];
+    private final Integer[] out = new Integer[RECORDS];
+
+    private ILet<String, Integer> pipeline;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        for (int i = 0; i < RECORDS; i++) {
+            // roughly a quarter of the records are null or not numeric
+            final int roll = random.nextInt(8);
+            records[i] = roll == 0 ? null : roll == 1 ? " x" + i + " " : " " + random.nextInt(100_000) + " ";
+        }
+
+        pipeline = K2JPipeline.<String>start()
+                ._let(String::trim)
+                ._takeIf((it) -> !it.isEmpty() && Character.isDigit(it.charAt(0)))
+                ._let(Integer::parseInt)
+                ._takeUnless((it) -> it < 10)
+                ._let((it) -> it * 2)
+                .build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void wrapperChain(final Blackhole blackhole) {
+        for (final String record : records) {
+            blackhole.consume(take(record)
+                    ._let(String::trim)
+                    ._takeIf((it) -> !it.isEmpty() && Character.isDigit(it.charAt(0)))
+                    ._let(Integer::parseInt)
+                    ._takeUnless((it) -> it < 10)
+                    ._let((it) -> it * 2)
+                    .unwrap());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void pipeline(final Blackhole blackhole) {
+        final ILet<String, Integer> fused = pipeline;
+        for (final String record : records) {
+            blackhole.consume(fused.doLet(record));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int bulk() {
+        return takeAll(records)
+                ._let(String::trim)
+                ._takeIf((it) -> !it.isEmpty() && Character.isDigit(it.charAt(0)))
+                ._let(Integer::parseInt)
+                ._takeUnless((it) -> it < 10)
+                ._let((it) -> it * 2)
+                .compactInto(out);
+    }
+}
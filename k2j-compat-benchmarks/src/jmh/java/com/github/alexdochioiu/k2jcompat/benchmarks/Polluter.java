@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stands in for the other lambdas of an application. {@link #copies(int)} loads this class again in
+ * class loaders of its own, and the JIT profiles every copy as a different receiver class, the same
+ * way it would profile that many lambdas.
+ */
+public final class Polluter implements ILet<Integer, Integer>, ITake<Integer>, IAlso<Integer> {
+    private int seen;
+
+    @Override
+    public Integer doLet(final Integer object) {
+        return object + 1;
+    }
+
+    @Override
+    public boolean doTake(final Integer object) {
+        return object != 0;
+    }
+
+    @Override
+    public void doAlso(final Integer object) {
+        seen += object;
+    }
+
+    /**
+     * @return {@code count} instances, each of a class of its own. They are not instances of this
+     * {@link Polluter}, only of the interfaces it implements.
+     */
+    static Object[] copies(final int count) throws ReflectiveOperationException, IOException {
+        final byte[] bytes = bytes();
+        final Object[] copies = new Object[count];
+        for (int i = 0; i < count; i++) {
+            copies[i] = new CopyLoader(Polluter.class.getClassLoader())
+                    .define(Polluter.class.getName(), bytes)
+                    .getConstructor()
+                    .newInstance();
+        }
+        return copies;
+    }
+
+    private static byte[] bytes() throws IOException {
+        try (InputStream input = Polluter.class.getResourceAsStream("Polluter.class")) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            for (int count = input.read(buffer); count >= 0; count = input.read(buffer)) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    private static final class CopyLoader extends ClassLoader {
+
+        CopyLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(final String name, final byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+/**
+ * Measures a {@code let / takeIf / also} chain after the call sites inside {@code K2JWrapper} have
+ * seen {@link #lambdas} different classes, the measured lambdas included. Microbenchmarks with a
+ * single lambda let the JIT inline it; an application with hundreds of lambdas going through the
+ * same {@code K2JWrapper.let} does not get that.
+ * <p>
+ * {@link #constant} passes lambdas written in place, whose class the JIT knows whatever the call
+ * sites have seen. {@link #loaded} reads them from fields, like a chain given its functions by its
+ * caller, so it depends on the profile of the call sites. Run {@link InliningReport} to see the
+ * throughput next to what the JIT inlined for each count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PollutionBenchmark {
+
+    private static final int VALUES = 1024;
+    private static final int POLLUTION_ROUNDS = 20_000;
+
+    private static final ILet<Integer, Integer> LET = (it) -> it * 3;
+    private static final ITake<Integer> TAKE = (it) -> (it & 7) != 0;
+    private static final IAlso<Integer> ALSO = (it) -> { };
+
+    @Param({"1", "2", "3", "8", "32"})
+    public int lambdas;
+
+    private final Integer[] values = new Integer[VALUES];
+
+    private ILet<Integer, Integer> let = LET;
+    private ITake<Integer> take = TAKE;
+    private IAlso<Integer> also = ALSO;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws ReflectiveOperationException, IOException {
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = i;
+        }
+
+        // the measured lambdas count as one class per call site, the polluters make up the rest
+        final Object[] polluters = Polluter.copies(lambdas - 1);
+        for (int round = 0; round < POLLUTION_ROUNDS; round++) {
+            final Integer value = values[round % VALUES];
+            for (final Object polluter : polluters) {
+                take(value)
+                        .let((ILet<Integer, Integer>) polluter)
+                        .takeIf((ITake<Integer>) polluter)
+                        .also((IAlso<Integer>) polluter)
+                        .unwrap();
+            }
+            take(value).let(LET).takeIf(TAKE).also(ALSO).unwrap();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void constant(final Blackhole blackhole) {
+        for (final Integer value : values) {
+            blackhole.consume(take(value)
+                    .let(LET)
+                    .takeIf(TAKE)
+                    .also(ALSO)
+                    .unwrap());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void loaded(final Blackhole blackhole) {
+        for (final Integer value : values) {
+            blackhole.consume(take(value)
+                    .let(let)
+                    .takeIf(take)
+                    .also(also)
+                    .unwrap());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.K2JPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.takePooled;
+
+/**
+ * Formats a record through a large {@link StringBuilder}, once allocating the builder on every
+ * call as the README's {@code also} example does, and once borrowing it with {@code takePooled}.
+ * Run with {@code -prof gc} to see the allocation rate of each; {@code -t} puts several threads
+ * on the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PooledBenchmark {
+
+    private static final int CAPACITY = 4096;
+    private static final K2JPool<StringBuilder> BUILDERS = K2JPool.builder(PooledBenchmark::newBuilder)
+            .reset((it) -> it.setLength(0))
+            .build();
+
+    @Benchmark
+    public String allocated() {
+        return take(new StringBuilder(CAPACITY))
+                .also(PooledBenchmark::format)
+                .let(StringBuilder::toString)
+                .unwrap();
+    }
+
+    @Benchmark
+    public String pooled() {
+        return takePooled(BUILDERS)
+                .also(PooledBenchmark::format)
+                .let(StringBuilder::toString)
+                .unwrap();
+    }
+
+    private static StringBuilder newBuilder() {
+        return new StringBuilder(CAPACITY);
+    }
+
+    private static void format(final StringBuilder builder) {
+        builder.append("user=").append(42).append(", name=").append("Jane Doe").append(", score=").append(97.5);
+    }
+}
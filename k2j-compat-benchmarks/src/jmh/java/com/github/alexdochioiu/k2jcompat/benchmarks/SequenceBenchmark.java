@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.K2JSequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.takeSequence;
+
+/**
+ * The same map / filter / mapNotNull / take / collect work over a list, with a hand written
+ * loop, a {@link K2JSequence} and a {@code java.util.stream}. Reported per call, not per element,
+ * as the fixed setup cost is what differs on small lists.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SequenceBenchmark {
+
+    @Param({"8", "64", "1024"})
+    public int size;
+
+    private List<String> records;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // roughly a quarter of the records are null or not numeric
+            final int roll = random.nextInt(8);
+            records.add(roll == 0 ? null : roll == 1 ? "x" + i : Integer.toString(random.nextInt(100_000)));
+        }
+    }
+
+    @Benchmark
+    public List<Integer> loop() {
+        final List<Integer> result = new ArrayList<>();
+        for (final String record : records) {
+            if (record == null) {
+                continue;
+            }
+            final Integer parsed = parse(record);
+            if (parsed != null && parsed > 10) {
+                result.add(parsed * 2);
+                if (result.size() == size / 2) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Integer> sequence() {
+        return takeSequence(records)
+                .mapNotNull(SequenceBenchmark::parse)
+                .filter((it) -> it > 10)
+                .map((it) -> it * 2)
+                .take(size / 2)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Integer> stream() {
+        return records.stream()
+                .filter(Objects::nonNull)
+                .map(SequenceBenchmark::parse)
+                .filter(Objects::nonNull)
+                .filter((it) -> it > 10)
+                .map((it) -> it * 2)
+                .limit(size / 2)
+                .collect(Collectors.toList());
+    }
+
+    private static Integer parse(final String record) {
+        return Character.isDigit(record.charAt(0)) ? Integer.valueOf(record) : null;
+    }
+}
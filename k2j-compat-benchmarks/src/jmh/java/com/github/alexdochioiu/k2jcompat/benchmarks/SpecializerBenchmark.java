@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+import com.github.alexdochioiu.k2jcompat.specializer.K2JSpecializer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same three stage chain built with {@link K2JPipeline#build()} and with
+ * {@link K2JSpecializer#specialize(K2JPipeline)}, after other pipelines of the same shape have run
+ * through the shared stage classes, the way they would in an application with many chains.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpecializerBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    private final String[] records = new String[RECORDS];
+
+    private ILet<String, Integer> built;
+    private ILet<String, Integer> specialized;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = random.nextInt(8) == 0 ? null : " " + random.nextInt(100_000) + " ";
+        }
+
+        // every one of these is a different lambda class going through the same stage classes
+        final List<ILet<String, Integer>> others = Arrays.asList(
+                K2JPipeline.<String>start()._let(String::toLowerCase)._takeIf(String::isEmpty)._let(String::length).build(),
+                K2JPipeline.<String>start()._let(String::toUpperCase)._takeIf((it) -> it.length() > 2)._let(String::hashCode).build(),
+                K2JPipeline.<String>start()._let(String::intern)._takeIf((it) -> it.indexOf('1') >= 0)._let((it) -> it.charAt(0) + 0).build(),
+                K2JPipeline.<String>start()._let((it) -> it + "0")._takeIf((it) -> !it.startsWith("9"))._let((it) -> it.length() * 2).build());
+        for (int round = 0; round < 20_000; round++) {
+            for (final ILet<String, Integer> other : others) {
+                other.doLet(records[round % RECORDS]);
+            }
+        }
+
+        final K2JPipeline<String, Integer> pipeline = K2JPipeline.<String>start()
+                ._let(String::trim)
+                ._takeIf((it) -> !it.isEmpty())
+                ._let(Integer::parseInt);
+        built = pipeline.build();
+        specialized = K2JSpecializer.specialize(pipeline);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void built(final Blackhole blackhole) {
+        final ILet<String, Integer> function = built;
+        for (final String record : records) {
+            blackhole.consume(function.doLet(record));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void specialized(final Blackhole blackhole) {
+        final ILet<String, Integer> function = specialized;
+        for (final String record : records) {
+            blackhole.consume(function.doLet(record));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.benchmarks;
+
+import com.github.alexdochioiu.k2jcompat.vector.K2JCondition;
+import com.github.alexdochioiu.k2jcompat.vector.K2JExpr;
+import com.github.alexdochioiu.k2jcompat.vector.K2JVector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.vector.K2JVector.x;
+
+/**
+ * A bulk takeIf and let over an {@code int[]}, with a hand written loop and with
+ * {@link K2JVector}. Runs on the Vector API when the forks get
+ * {@code --add-modules jdk.incubator.vector} (the build adds it on Java 16+); add
+ * {@code -Dk2j.vector=false} to the fork arguments to measure the scalar kernels instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VectorBenchmark {
+    private static final K2JCondition IN_RANGE = x().gt(-500).and(x().lt(500));
+    private static final K2JExpr SCALE = x().mul(3).add(7).max(0);
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    private int[] values;
+    private int[] out;
+
+    @Setup
+    public void setUp() {
+        values = new Random(42).ints(size, -1000, 1000).toArray();
+        out = new int[size];
+    }
+
+    @Benchmark
+    public int loopTakeIf() {
+        int kept = 0;
+        for (final int value : values) {
+            if (value > -500 && value < 500) {
+                out[kept++] = value;
+            }
+        }
+        return kept;
+    }
+
+    @Benchmark
+    public int k2jTakeIf() {
+        return K2JVector.takeIfInto(values, IN_RANGE, out);
+    }
+
+    @Benchmark
+    public int[] loopLet() {
+        for (int i = 0; i < values.length; i++) {
+            out[i] = Math.max(values[i] * 3 + 7, 0);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public int[] k2jLet() {
+        K2JVector.letInto(values, SCALE, out);
+        return out;
+    }
+}
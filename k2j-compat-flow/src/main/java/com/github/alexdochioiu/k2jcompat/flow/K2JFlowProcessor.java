@@ -0,0 +1,352 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.flow;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link Flow.Processor} applying a K2J chain to every element, with backpressure.
+ * <pre>
+ * final K2JFlowProcessor&lt;String, Integer&gt; parse = K2JFlowProcessor.builder(
+ *         K2JPipeline.&lt;String&gt;start()
+ *                 ._let(String::trim)
+ *                 ._takeIf((it) -&gt; it.matches("[0-9]+"))
+ *                 ._let(Integer::parseInt))
+ *         .prefetch(256)
+ *         .executor(workers)
+ *         .build();
+ *
+ * events.subscribe(parse);
+ * parse.subscribe(consumer);
+ * </pre>
+ * At most {@code prefetch} elements are requested from upstream ahead of time, and more are
+ * requested as those are consumed. An element the chain turns into null is dropped without
+ * using up the demand of the subscriber, so every requested element is a real result.
+ * <p>
+ * The chain runs on the thread delivering the signals, or, with an {@link Builder#executor
+ * executor}, on that executor, one element at a time and in order. An exception thrown by the
+ * chain cancels upstream and is passed to the subscriber. An upstream error reaches the subscriber
+ * after the elements already buffered.
+ * <p>
+ * Only one subscriber is supported; others get {@code onError(IllegalStateException)}.
+ *
+ * @param <T> the upstream element type
+ * @param <R> the downstream element type
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JFlowProcessor<T, R> implements Flow.Processor<T, R> {
+    private final ILet<T, R> chain;
+    private final int prefetch;
+    private final int replenishAt;
+    private final Executor executor;
+
+    // single producer (onNext), single consumer (drain) ring: a slot is free while it holds null
+    private final AtomicReferenceArray<T> queue;
+    private final int mask;
+    private long producerIndex;
+    private long consumerIndex;
+    private int consumedSinceRequest;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Flow.Subscriber<? super R>> downstream = new AtomicReference<>();
+    private final AtomicInteger upstreamRequested = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Runnable drainTask = this::drainLoop;
+
+    private Throwable error;
+    private volatile boolean done;
+    private volatile Throwable fatal;
+    private volatile boolean cancelled;
+
+    private K2JFlowProcessor(final Builder<T, R> builder) {
+        this.chain = builder.chain;
+        this.prefetch = builder.prefetch;
+        this.replenishAt = Math.max(1, prefetch - (prefetch >> 2));
+        this.executor = builder.executor;
+        final int capacity = prefetch == 1 ? 1 : Integer.highestOneBit(prefetch - 1) << 1;
+        this.queue = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @param chain applied to every element, a null result drops the element
+     */
+    public static <T, R> Builder<T, R> builder(final ILet<T, R> chain) {
+        return new Builder<>(Objects.requireNonNull(chain));
+    }
+
+    public static <T, R> Builder<T, R> builder(final K2JPipeline<T, R> pipeline) {
+        return new Builder<>(pipeline.build());
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super R> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(CancelledSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("K2JFlowProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription());
+        requestUpstream();
+        schedule();
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (!upstream.compareAndSet(null, subscription) || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        requestUpstream();
+    }
+
+    @Override
+    public void onNext(final T item) {
+        Objects.requireNonNull(item);
+        final int index = (int) producerIndex & mask;
+        if (queue.get(index) != null) {
+            fail(new IllegalStateException("Upstream sent more elements than requested"));
+            return;
+        }
+        queue.lazySet(index, item);
+        producerIndex++;
+        schedule();
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        error = Objects.requireNonNull(throwable);
+        done = true;
+        schedule();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        schedule();
+    }
+
+    private void requestUpstream() {
+        final Flow.Subscription subscription = upstream.get();
+        if (subscription != null && downstream.get() != null && upstreamRequested.compareAndSet(0, 1)) {
+            subscription.request(prefetch);
+        }
+    }
+
+    private void fail(final Throwable throwable) {
+        cancelUpstream();
+        fatal = throwable;
+        schedule();
+    }
+
+    private void cancelUpstream() {
+        final Flow.Subscription subscription = upstream.getAndSet(CancelledSubscription.INSTANCE);
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private void schedule() {
+        if (downstream.get() == null || wip.getAndIncrement() != 0) {
+            return;
+        }
+        if (executor == null) {
+            drainLoop();
+            return;
+        }
+        try {
+            executor.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            // this thread owns the drain loop now, so it may signal the subscriber
+            cancelled = true;
+            cancelUpstream();
+            clear();
+            downstream.get().onError(e);
+        }
+    }
+
+    /**
+     * Runs by one thread at a time, see {@link #wip}.
+     */
+    private void drainLoop() {
+        final Flow.Subscriber<? super R> subscriber = downstream.get();
+        int missed = 1;
+        do {
+            final long demand = requested.get();
+            long emitted = 0;
+            while (true) {
+                if (cancelled) {
+                    clear();
+                    return;
+                }
+                if (fatal != null) {
+                    terminate(subscriber, fatal);
+                    return;
+                }
+                final boolean terminated = done;
+                final int index = (int) consumerIndex & mask;
+                final T element = queue.get(index);
+                if (element == null) {
+                    if (terminated) {
+                        terminate(subscriber, error);
+                        return;
+                    }
+                    break;
+                }
+                if (emitted == demand) {
+                    break;
+                }
+                queue.lazySet(index, null);
+                consumerIndex++;
+                replenish();
+
+                final R result;
+                try {
+                    result = chain.doLet(element);
+                } catch (Exception e) {
+                    cancelUpstream();
+                    terminate(subscriber, e);
+                    return;
+                }
+                if (result != null) {
+                    subscriber.onNext(result);
+                    emitted++;
+                }
+            }
+            if (emitted != 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void replenish() {
+        if (++consumedSinceRequest == replenishAt) {
+            consumedSinceRequest = 0;
+            upstream.get().request(replenishAt);
+        }
+    }
+
+    private void terminate(final Flow.Subscriber<? super R> subscriber, final Throwable throwable) {
+        cancelled = true;
+        clear();
+        if (throwable != null) {
+            subscriber.onError(throwable);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private void clear() {
+        while (true) {
+            final int index = (int) consumerIndex & mask;
+            if (queue.get(index) == null) {
+                return;
+            }
+            queue.lazySet(index, null);
+            consumerIndex++;
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription {
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Rule 3.9: request must be positive, was " + n));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                if (current == Long.MAX_VALUE) {
+                    return;
+                }
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelUpstream();
+            schedule();
+        }
+    }
+
+    private enum CancelledSubscription implements Flow.Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    public static final class Builder<T, R> {
+        private final ILet<T, R> chain;
+        private int prefetch = 128;
+        private Executor executor;
+
+        private Builder(final ILet<T, R> chain) {
+            this.chain = chain;
+        }
+
+        /**
+         * The most elements requested from upstream ahead of the subscriber. Defaults to 128.
+         *
+         * @throws IllegalArgumentException if {@code prefetch} is not positive or above 2^30
+         */
+        public Builder<T, R> prefetch(final int prefetch) {
+            if (prefetch <= 0 || prefetch > 1 << 30) {
+                throw new IllegalArgumentException("prefetch must be between 1 and 2^30, was " + prefetch);
+            }
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * Runs the chain and the subscriber's {@code onNext} on {@code executor} instead of the
+         * signalling thread. Only one task is queued at a time, so elements stay in order.
+         */
+        public Builder<T, R> executor(final Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        public K2JFlowProcessor<T, R> build() {
+            return new K2JFlowProcessor<>(this);
+        }
+    }
+}
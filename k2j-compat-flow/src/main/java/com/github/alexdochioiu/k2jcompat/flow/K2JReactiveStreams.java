@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.flow;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import org.reactivestreams.FlowAdapters;
+import org.reactivestreams.Processor;
+
+/**
+ * {@link K2JFlowProcessor} for Reactive Streams libraries still on {@code org.reactivestreams}
+ * (RxJava 2, Reactor, Akka Streams). Needs {@code org.reactivestreams:reactive-streams} 1.0.3+ on
+ * the classpath, which this module does not bring in itself.
+ * <pre>
+ * Flowable.fromPublisher(events).subscribe(K2JReactiveStreams.toProcessor(parse));
+ * </pre>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JReactiveStreams {
+
+    private K2JReactiveStreams() {
+    }
+
+    public static <T, R> Processor<T, R> toProcessor(final K2JFlowProcessor<T, R> processor) {
+        return FlowAdapters.toProcessor(processor);
+    }
+
+    /**
+     * @return a processor with the default {@link K2JFlowProcessor.Builder} settings
+     */
+    public static <T, R> Processor<T, R> processor(final ILet<T, R> chain) {
+        return toProcessor(K2JFlowProcessor.builder(chain).build());
+    }
+
+    public static <T, R> Processor<T, R> processor(final K2JPipeline<T, R> pipeline) {
+        return toProcessor(K2JFlowProcessor.builder(pipeline).build());
+    }
+}
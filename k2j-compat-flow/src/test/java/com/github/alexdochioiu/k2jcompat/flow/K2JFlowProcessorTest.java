@@ -0,0 +1,371 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.flow;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JFlowProcessorTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_crashOnNonPositivePrefetch() {
+        K2JFlowProcessor.builder((Object it) -> it).prefetch(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void builder_crashOnNullChain() {
+        K2JFlowProcessor.builder((ILet<Object, Object>) null);
+    }
+
+    @Test
+    public void droppedElements_doNotUseUpDemand() {
+        final ManualPublisher<Integer> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<Integer, String> processor = K2JFlowProcessor.builder(
+                (Integer it) -> take(it)._takeIf((value) -> value % 2 == 0)._let((value) -> "#" + value).unwrap())
+                .build();
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        upstream.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.request(2);
+        for (int i = 1; i <= 7; i++) {
+            upstream.emit(i);
+        }
+
+        Assert.assertEquals(Arrays.asList("#2", "#4"), subscriber.items());
+        subscriber.request(10);
+        Assert.assertEquals(Arrays.asList("#2", "#4", "#6"), subscriber.items());
+        Assert.assertFalse(subscriber.isDone());
+    }
+
+    @Test
+    public void prefetch_boundsUpstreamDemand() {
+        final ManualPublisher<Integer> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<Integer, Integer> processor = K2JFlowProcessor.builder((Integer it) -> it).prefetch(8).build();
+        final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        upstream.subscribe(processor);
+
+        Assert.assertEquals("nothing requested before there is a subscriber", 0, upstream.requested.get());
+        processor.subscribe(subscriber);
+        Assert.assertEquals(8, upstream.requested.get());
+
+        for (int i = 0; i < 8; i++) {
+            upstream.emit(i);
+        }
+        Assert.assertEquals("buffered, nothing consumed yet", 8, upstream.requested.get());
+
+        subscriber.request(6);
+        Assert.assertEquals("replenished after three quarters", 14, upstream.requested.get());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), subscriber.items());
+    }
+
+    @Test
+    public void overflow_isAnError() {
+        final ManualPublisher<Integer> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<Integer, Integer> processor = K2JFlowProcessor.builder((Integer it) -> it).prefetch(2).build();
+        final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        upstream.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        upstream.emit(1);
+        upstream.emit(2);
+        upstream.emit(3);
+
+        Assert.assertTrue(subscriber.error() instanceof IllegalStateException);
+        Assert.assertTrue(upstream.cancelled.get());
+    }
+
+    @Test
+    public void completion_comesAfterBufferedElements() {
+        final ManualPublisher<String> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<String, String> processor = K2JFlowProcessor.builder(
+                K2JPipeline.<String>start()._let(String::trim)._takeUnless(String::isEmpty)).build();
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        upstream.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        upstream.emit(" a ");
+        upstream.emit("  ");
+        upstream.emit("b");
+        upstream.complete();
+        Assert.assertFalse(subscriber.isDone());
+
+        subscriber.request(Long.MAX_VALUE);
+        Assert.assertEquals(Arrays.asList("a", "b"), subscriber.items());
+        Assert.assertTrue(subscriber.isDone());
+        Assert.assertNull(subscriber.error());
+    }
+
+    @Test
+    public void completion_ofEmptyUpstreamBeforeSubscribe() {
+        final ManualPublisher<String> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<String, String> processor = K2JFlowProcessor.builder((String it) -> it).build();
+        upstream.subscribe(processor);
+        upstream.complete();
+
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        processor.subscribe(subscriber);
+
+        Assert.assertTrue(subscriber.isDone());
+    }
+
+    @Test
+    public void chainException_cancelsUpstreamAndReachesSubscriber() {
+        final ManualPublisher<String> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<String, Integer> processor = K2JFlowProcessor.builder((String it) -> Integer.parseInt(it)).build();
+        final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        upstream.subscribe(processor);
+        processor.subscribe(subscriber);
+        subscriber.request(10);
+
+        upstream.emit("1");
+        upstream.emit("x");
+        upstream.emit("3");
+
+        Assert.assertEquals(Collections.singletonList(1), subscriber.items());
+        Assert.assertTrue(subscriber.error() instanceof NumberFormatException);
+        Assert.assertTrue(upstream.cancelled.get());
+    }
+
+    @Test
+    public void cancel_cancelsUpstream() {
+        final ManualPublisher<String> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<String, String> processor = K2JFlowProcessor.builder((String it) -> it).build();
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        upstream.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.subscription.cancel();
+        upstream.emit("ignored");
+        subscriber.request(1);
+
+        Assert.assertTrue(upstream.cancelled.get());
+        Assert.assertEquals(Collections.emptyList(), subscriber.items());
+        Assert.assertFalse(subscriber.isDone());
+    }
+
+    @Test
+    public void nonPositiveRequest_isAnError() {
+        final ManualPublisher<String> upstream = new ManualPublisher<>();
+        final K2JFlowProcessor<String, String> processor = K2JFlowProcessor.builder((String it) -> it).build();
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        upstream.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.request(0);
+
+        Assert.assertTrue(subscriber.error() instanceof IllegalArgumentException);
+        Assert.assertTrue(upstream.cancelled.get());
+    }
+
+    @Test
+    public void secondSubscriber_isRejected() {
+        final K2JFlowProcessor<String, String> processor = K2JFlowProcessor.builder((String it) -> it).build();
+        processor.subscribe(new TestSubscriber<>());
+
+        final TestSubscriber<String> second = new TestSubscriber<>();
+        processor.subscribe(second);
+
+        Assert.assertTrue(second.error() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void executor_runsTheChainOffTheSignallingThread() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final AtomicReference<Thread> chainThread = new AtomicReference<>();
+            final ManualPublisher<String> upstream = new ManualPublisher<>();
+            final K2JFlowProcessor<String, String> processor = K2JFlowProcessor.builder((String it) -> {
+                chainThread.set(Thread.currentThread());
+                return it;
+            }).executor(executor).build();
+            final TestSubscriber<String> subscriber = new TestSubscriber<>();
+            upstream.subscribe(processor);
+            processor.subscribe(subscriber);
+            subscriber.request(1);
+
+            upstream.emit("a");
+            upstream.complete();
+
+            Assert.assertTrue(subscriber.await());
+            Assert.assertEquals(Collections.singletonList("a"), subscriber.items());
+            Assert.assertNotSame(Thread.currentThread(), chainThread.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void burstyAsyncUpstream_deliversEveryResultInOrder() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // closed by hand below, as closing is what completes the stream
+            final SubmissionPublisher<Integer> upstream = new SubmissionPublisher<>(executor, 64);
+            final K2JFlowProcessor<Integer, Integer> processor = K2JFlowProcessor.builder(
+                    (Integer it) -> take(it)._takeUnless((value) -> value % 3 == 0).unwrap())
+                    .prefetch(16)
+                    .executor(executor)
+                    .build();
+            final TestSubscriber<Integer> subscriber = new TestSubscriber<>(7);
+            upstream.subscribe(processor);
+            processor.subscribe(subscriber);
+
+            final int count = 50_000;
+            for (int i = 1; i <= count; i++) {
+                upstream.submit(i);
+            }
+            upstream.close();
+
+            Assert.assertTrue(subscriber.await());
+            Assert.assertNull(subscriber.error());
+            final List<Integer> items = subscriber.items();
+            Assert.assertEquals(count - count / 3, items.size());
+            int previous = 0;
+            for (final int item : items) {
+                Assert.assertTrue(item > previous && item % 3 != 0);
+                previous = item;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Publisher emitting on the calling thread, whatever was requested.
+     */
+    static final class ManualPublisher<T> implements Flow.Publisher<T> {
+        final AtomicLong requested = new AtomicLong();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        private Flow.Subscriber<? super T> subscriber;
+
+        @Override
+        public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                    requested.addAndGet(n);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.set(true);
+                }
+            });
+        }
+
+        void emit(final T item) {
+            if (!cancelled.get()) {
+                subscriber.onNext(item);
+            }
+        }
+
+        void complete() {
+            subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Records what it receives. With a batch size, requests that many more every time it has
+     * received them all.
+     */
+    static final class TestSubscriber<T> implements Flow.Subscriber<T> {
+        private final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final int batch;
+        private volatile Throwable error;
+        private long outstanding;
+        Flow.Subscription subscription;
+
+        TestSubscriber() {
+            this(0);
+        }
+
+        TestSubscriber(final int batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) {
+                outstanding = batch;
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onNext(final T item) {
+            items.add(item);
+            if (batch > 0 && --outstanding == 0) {
+                outstanding = batch;
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        void request(final long n) {
+            subscription.request(n);
+        }
+
+        List<T> items() {
+            synchronized (items) {
+                return new ArrayList<>(items);
+            }
+        }
+
+        Throwable error() {
+            return error;
+        }
+
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(30, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.flow;
+
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class K2JReactiveStreamsTest {
+
+    @Test
+    public void processor_appliesTheChainWithBackpressure() {
+        final Processor<String, Integer> processor = K2JReactiveStreams.processor(
+                K2JPipeline.<String>start()._takeIf((it) -> it.matches("[0-9]+"))._let(Integer::parseInt));
+        final List<Integer> received = new ArrayList<>();
+        final boolean[] completed = new boolean[1];
+        final Subscription[] downstream = new Subscription[1];
+
+        processor.subscribe(new Subscriber<Integer>() {
+            @Override
+            public void onSubscribe(final Subscription subscription) {
+                downstream[0] = subscription;
+            }
+
+            @Override
+            public void onNext(final Integer item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                Assert.fail(throwable.toString());
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+        final long[] upstreamRequested = new long[1];
+        processor.onSubscribe(new Subscription() {
+            @Override
+            public void request(final long n) {
+                upstreamRequested[0] += n;
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        Assert.assertEquals(128, upstreamRequested[0]);
+        processor.onNext("1");
+        processor.onNext("x");
+        processor.onNext("3");
+        processor.onComplete();
+        Assert.assertEquals(new ArrayList<Integer>(), received);
+
+        downstream[0].request(5);
+        Assert.assertEquals(Arrays.asList(1, 3), received);
+        Assert.assertTrue(completed[0]);
+    }
+}
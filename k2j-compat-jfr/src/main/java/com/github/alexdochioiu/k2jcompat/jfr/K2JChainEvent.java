@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One run of a chain recorded with {@link K2JFlightRecorder#record(String, com.github.alexdochioiu.k2jcompat.K2JPipeline)}.
+ * Disabled unless the recording turns it on.
+ */
+@Name(K2JChainEvent.NAME)
+@Label("K2J Chain")
+@Description("One run of a K2J chain")
+@Category("K2J")
+@Enabled(false)
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JChainEvent extends Event {
+    public static final String NAME = "com.github.alexdochioiu.k2jcompat.Chain";
+
+    @Label("Chain")
+    String chain;
+
+    @Label("Stages")
+    int stageCount;
+
+    @Label("Short-Circuited At")
+    @Description("Index of the stage which turned the value null and skipped the rest of the chain, -1 if none did")
+    int shortCircuitedAt = -1;
+
+    @Label("Short-Circuited By")
+    @Description("Implementation class of the function of that stage")
+    Class<?> shortCircuitedBy;
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.jfr;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import java.util.Objects;
+
+/**
+ * Reports K2J chains to Java Flight Recorder as {@link K2JChainEvent}s and {@link K2JStageEvent}s.
+ * Both are disabled by default; on Java 17+ turn them on with
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start +com.github.alexdochioiu.k2jcompat.Chain#enabled=true +com.github.alexdochioiu.k2jcompat.Stage#enabled=true
+ * </pre>
+ * (the same options work in {@code -XX:StartFlightRecording}), or before that in a {@code .jfc}
+ * settings file as shown in the README.
+ * While they are off (or JFR is not running) a recorded chain runs the same fused function as
+ * {@link K2JPipeline#build()}, after one enabled check per run.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JFlightRecorder {
+
+    private K2JFlightRecorder() {
+    }
+
+    /**
+     * @return {@code pipeline} built into a single function which emits a {@link K2JChainEvent}
+     * per run and a {@link K2JStageEvent} per stage, all under {@code name}
+     */
+    public static <T, R> ILet<T, R> record(final String name, final K2JPipeline<T, R> pipeline) {
+        return Objects.requireNonNull(pipeline).build(probe(name));
+    }
+
+    /**
+     * @return a probe emitting the events, for {@link K2JPipeline#build(K2JPipeline.Probe)}
+     */
+    public static K2JPipeline.Probe probe(final String name) {
+        return new EventProbe(Objects.requireNonNull(name));
+    }
+
+    /**
+     * @return {@code iLet} emitting a {@link K2JStageEvent} per call, for stages of a
+     * {@code take(...)} chain
+     */
+    public static <T, Y> ILet<T, Y> recordedLet(final String name, final ILet<T, Y> iLet) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(iLet);
+        return new ILet<T, Y>() {
+            @Override
+            public Y doLet(final T object) {
+                final K2JStageEvent event = new K2JStageEvent();
+                if (!event.isEnabled()) {
+                    return iLet.doLet(object);
+                }
+                begin(event, name, "let", iLet);
+                final Y result = iLet.doLet(object);
+                event.commit();
+                return result;
+            }
+        };
+    }
+
+    public static <T> ITake<T> recordedTake(final String name, final ITake<T> iTake) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(iTake);
+        return new ITake<T>() {
+            @Override
+            public boolean doTake(final T object) {
+                final K2JStageEvent event = new K2JStageEvent();
+                if (!event.isEnabled()) {
+                    return iTake.doTake(object);
+                }
+                begin(event, name, "take", iTake);
+                final boolean result = iTake.doTake(object);
+                event.commit();
+                return result;
+            }
+        };
+    }
+
+    public static <T> IAlso<T> recordedAlso(final String name, final IAlso<T> iAlso) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(iAlso);
+        return new IAlso<T>() {
+            @Override
+            public void doAlso(final T object) {
+                final K2JStageEvent event = new K2JStageEvent();
+                if (!event.isEnabled()) {
+                    iAlso.doAlso(object);
+                    return;
+                }
+                begin(event, name, "also", iAlso);
+                iAlso.doAlso(object);
+                event.commit();
+            }
+        };
+    }
+
+    private static void begin(final K2JStageEvent event, final String name, final String operation, final Object function) {
+        event.chain = name;
+        event.index = -1;
+        event.operation = operation;
+        event.implementation = function.getClass();
+        event.begin();
+    }
+
+    private static final class EventProbe implements K2JPipeline.Probe {
+        private final String name;
+
+        EventProbe(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object beginChain(final int stageCount) {
+            final K2JChainEvent chain = new K2JChainEvent();
+            final boolean stagesEnabled = new K2JStageEvent().isEnabled();
+            if (!chain.isEnabled() && !stagesEnabled) {
+                return null;
+            }
+
+            final Run run = new Run(chain.isEnabled() ? chain : null, stagesEnabled);
+            if (run.event != null) {
+                run.event.chain = name;
+                run.event.stageCount = stageCount;
+                run.event.begin();
+            }
+            return run;
+        }
+
+        @Override
+        public Object beginStage(final Object chain, final int index, final String operation, final Object function) {
+            final Run run = (Run) chain;
+            run.function = function;
+            if (!run.stagesEnabled) {
+                return null;
+            }
+
+            final K2JStageEvent event = new K2JStageEvent();
+            event.chain = name;
+            event.index = index;
+            event.operation = operation;
+            event.implementation = function.getClass();
+            event.begin();
+            return event;
+        }
+
+        @Override
+        public void endStage(final Object chain, final Object stage, final boolean shortCircuited) {
+            if (stage != null) {
+                final K2JStageEvent event = (K2JStageEvent) stage;
+                event.shortCircuited = shortCircuited;
+                event.commit();
+            }
+        }
+
+        @Override
+        public void endChain(final Object chain, final int shortCircuitedAt) {
+            final Run run = (Run) chain;
+            if (run.event != null) {
+                run.event.shortCircuitedAt = shortCircuitedAt;
+                if (shortCircuitedAt >= 0) {
+                    run.event.shortCircuitedBy = run.function.getClass();
+                }
+                run.event.commit();
+            }
+        }
+    }
+
+    /**
+     * State of one recorded run. {@code function} is the function of the latest stage, which is the
+     * one that short-circuited if any did.
+     */
+    private static final class Run {
+        final K2JChainEvent event;
+        final boolean stagesEnabled;
+        Object function;
+
+        Run(final K2JChainEvent event, final boolean stagesEnabled) {
+            this.event = event;
+            this.stagesEnabled = stagesEnabled;
+        }
+    }
+}
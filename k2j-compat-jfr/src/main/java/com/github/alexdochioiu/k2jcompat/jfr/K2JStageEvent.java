@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One stage of a recorded chain, named after the implementation class of its function so lambdas
+ * can be told apart. Disabled unless the recording turns it on, and recorded without a stack trace
+ * since there is one per stage.
+ */
+@Name(K2JStageEvent.NAME)
+@Label("K2J Stage")
+@Description("One stage of a K2J chain")
+@Category("K2J")
+@Enabled(false)
+@StackTrace(false)
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JStageEvent extends Event {
+    public static final String NAME = "com.github.alexdochioiu.k2jcompat.Stage";
+
+    @Label("Chain")
+    String chain;
+
+    @Label("Index")
+    @Description("Index of the stage in its chain, -1 for a stage recorded on its own")
+    int index;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Implementation")
+    @Description("Class of the ILet, ITake or IAlso, for a lambda the class generated for it")
+    Class<?> implementation;
+
+    @Label("Short-Circuited")
+    boolean shortCircuited;
+}
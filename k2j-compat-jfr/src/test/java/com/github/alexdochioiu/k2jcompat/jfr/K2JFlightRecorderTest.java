@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.jfr;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JFlightRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ILet<String, Integer> parse = K2JFlightRecorder.record("parse", K2JPipeline.<String>start()
+            ._let(String::trim)
+            ._takeUnless(String::isEmpty)
+            ._let(Integer::parseInt));
+
+    @Test
+    public void eventsOff_resultsUnchanged() {
+        Assert.assertEquals(Integer.valueOf(12), parse.doLet(" 12 "));
+        Assert.assertNull(parse.doLet("  "));
+        Assert.assertNull(parse.doLet(null));
+    }
+
+    @Test
+    public void chainEvents_recordLengthAndShortCircuit() throws IOException {
+        final List<RecordedEvent> events = record(true, false, () -> {
+            parse.doLet(" 12 ");
+            parse.doLet("  ");
+        });
+
+        Assert.assertEquals(2, events.size());
+        final RecordedEvent passed = events.get(0);
+        Assert.assertEquals(K2JChainEvent.NAME, passed.getEventType().getName());
+        Assert.assertEquals("parse", passed.getString("chain"));
+        Assert.assertEquals(3, passed.getInt("stageCount"));
+        Assert.assertEquals(-1, passed.getInt("shortCircuitedAt"));
+        Assert.assertNull(passed.getClass("shortCircuitedBy"));
+
+        final RecordedEvent filtered = events.get(1);
+        Assert.assertEquals(1, filtered.getInt("shortCircuitedAt"));
+        Assert.assertNotNull(filtered.getClass("shortCircuitedBy"));
+        Assert.assertNotNull(filtered.getStackTrace());
+    }
+
+    @Test
+    public void stageEvents_recordEachStageAndItsImplementation() throws IOException {
+        final List<RecordedEvent> events = record(false, true, () -> parse.doLet("  "));
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(0, events.get(0).getInt("index"));
+        Assert.assertEquals("_let", events.get(0).getString("operation"));
+        Assert.assertFalse(events.get(0).getBoolean("shortCircuited"));
+        Assert.assertEquals("_takeUnless", events.get(1).getString("operation"));
+        Assert.assertTrue(events.get(1).getBoolean("shortCircuited"));
+        Assert.assertTrue(events.get(1).getClass("implementation").getName(),
+                events.get(1).getClass("implementation").getName().startsWith(K2JFlightRecorderTest.class.getName()));
+        Assert.assertNull(events.get(1).getStackTrace());
+    }
+
+    @Test
+    public void recordedLet_emitsAStageEventPerCall() throws IOException {
+        final ILet<String, String> upper = K2JFlightRecorder.recordedLet("upper", String::toUpperCase);
+        final List<RecordedEvent> events = record(false, true, () -> {
+            Assert.assertEquals("AB", take("ab")
+                    ._let(upper)
+                    ._takeIf(K2JFlightRecorder.recordedTake("notEmpty", (String it) -> !it.isEmpty()))
+                    .unwrap());
+        });
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("upper", events.get(0).getString("chain"));
+        Assert.assertEquals(-1, events.get(0).getInt("index"));
+        Assert.assertEquals("let", events.get(0).getString("operation"));
+        Assert.assertEquals("notEmpty", events.get(1).getString("chain"));
+    }
+
+    @Test
+    public void eventsDisabledByDefault() throws IOException {
+        try (Recording recording = new Recording()) {
+            recording.start();
+            parse.doLet(" 12 ");
+            recording.stop();
+            Assert.assertTrue(read(recording).isEmpty());
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void record_crashOnNullName() {
+        K2JFlightRecorder.record(null, K2JPipeline.<String>start());
+    }
+
+    private List<RecordedEvent> record(final boolean chains, final boolean stages, final Runnable runnable) throws IOException {
+        try (Recording recording = new Recording()) {
+            if (chains) {
+                recording.enable(K2JChainEvent.NAME);
+            }
+            if (stages) {
+                recording.enable(K2JStageEvent.NAME);
+            }
+            recording.start();
+            runnable.run();
+            recording.stop();
+            return read(recording);
+        }
+    }
+
+    private List<RecordedEvent> read(final Recording recording) throws IOException {
+        final File file = folder.newFile();
+        recording.dump(file.toPath());
+        final List<RecordedEvent> events = new ArrayList<>();
+        for (final RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().startsWith("com.github.alexdochioiu.k2jcompat.")) {
+                events.add(event);
+            }
+        }
+        events.sort((first, second) -> first.getStartTime().compareTo(second.getStartTime()));
+        return events;
+    }
+}
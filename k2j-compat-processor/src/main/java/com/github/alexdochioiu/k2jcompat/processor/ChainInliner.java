@@ -0,0 +1,486 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.processor;
+
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeParameterTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.SourcePositions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+/**
+ * Turns the body of a {@code @K2JInline} method into straight-line code. For
+ * <pre>
+ * static Integer parse(String input) {
+ *     return take(input)._let((it) -&gt; it.trim())._takeIf(Checks::isNumber).unwrap();
+ * }
+ * </pre>
+ * it generates
+ * <pre>
+ * static Integer parse(final String input) {
+ *     final String k2j$0 = input;
+ *     final String k2j$1;
+ *     if (k2j$0 != null) {
+ *         final String it = k2j$0;
+ *         k2j$1 = it.trim();
+ *     } else {
+ *         k2j$1 = null;
+ *     }
+ *     final String k2j$2;
+ *     if (k2j$1 != null) {
+ *         k2j$2 = ((ITake&lt;String&gt;) Checks::isNumber).doTake(k2j$1) ? k2j$1 : null;
+ *     ...
+ * </pre>
+ * Expression lambdas are copied in place, with their parameter bound to the current value. Block
+ * lambdas become private static helpers, which also receive the method parameters the lambda may
+ * capture. Anything else (method references, fields) is evaluated when its stage runs and called
+ * through its interface, from a call site of its own.
+ * <p>
+ * The processor runs before javac attributes method bodies, so the type of each value comes from
+ * the source: the lambda parameter types, the type of the {@code take} argument if it is a method
+ * parameter, and the return type, carried across the stages that do not change the value.
+ */
+final class ChainInliner {
+    private static final String VALUE = "k2j$";
+    private static final String K2J_COMPAT = "com.github.alexdochioiu.k2jcompat.K2JCompat";
+    private static final String INDENT = "        ";
+
+    private final Types types;
+    private final SourcePositions positions;
+    private final CompilationUnitTree unit;
+    private final CharSequence source;
+    private int helpers;
+
+    ChainInliner(final Types types,
+                 final SourcePositions positions,
+                 final CompilationUnitTree unit,
+                 final CharSequence source) {
+        this.types = types;
+        this.positions = positions;
+        this.unit = unit;
+        this.source = source;
+    }
+
+    /**
+     * Appends the inlined method, and its helpers, to {@code out}.
+     */
+    void inline(final ExecutableElement method, final MethodTree tree, final StringBuilder out) throws InlineException {
+        if (!method.getModifiers().contains(Modifier.STATIC)) {
+            throw new InlineException("only static methods can be inlined", null);
+        }
+        if (method.getReturnType().getKind() == TypeKind.VOID) {
+            throw new InlineException("the method must return the unwrapped value", null);
+        }
+
+        final List<Stage> stages = new ArrayList<>();
+        final ExpressionTree taken = parse(returnedChain(tree), stages);
+        final String[] valueTypes = valueTypes(method, taken, stages);
+
+        final Signature signature = new Signature(method, tree);
+        final StringBuilder body = new StringBuilder();
+        final StringBuilder helperMethods = new StringBuilder();
+        body.append(INDENT).append("final ").append(valueTypes[0]).append(' ').append(VALUE).append(0)
+                .append(" = ").append(source(taken)).append(";\n");
+        for (int i = 0; i < stages.size(); i++) {
+            emit(stages.get(i), i, valueTypes, signature, body, helperMethods);
+        }
+        body.append(INDENT).append("return ").append(VALUE).append(stages.size()).append(";\n");
+
+        out.append('\n')
+                .append("    /**\n")
+                .append("     * Inlined {@code ").append(method.getSimpleName()).append("}.\n")
+                .append("     */\n")
+                .append("    ").append(method.getModifiers().contains(Modifier.PUBLIC) ? "public " : "")
+                .append("static ").append(signature.typeParameters).append(method.getReturnType()).append(' ')
+                .append(method.getSimpleName()).append('(').append(signature.parameters).append(')')
+                .append(signature.throwsClause).append(" {\n")
+                .append(body)
+                .append("    }\n")
+                .append(helperMethods);
+    }
+
+    private static ExpressionTree returnedChain(final MethodTree tree) throws InlineException {
+        final BlockTree body = tree.getBody();
+        if (body == null || body.getStatements().size() != 1) {
+            throw new InlineException("the body must be a single 'return take(...)...unwrap();'", body);
+        }
+        final StatementTree statement = body.getStatements().get(0);
+        if (!(statement instanceof ReturnTree)) {
+            throw new InlineException("the body must be a single 'return take(...)...unwrap();'", statement);
+        }
+        return ((ReturnTree) statement).getExpression();
+    }
+
+    /**
+     * Fills {@code stages} in chain order and returns the argument of {@code take}.
+     */
+    private static ExpressionTree parse(final ExpressionTree chain, final List<Stage> stages) throws InlineException {
+        if (!isCall(chain, "unwrap", 0) || !(((MethodInvocationTree) chain).getMethodSelect() instanceof MemberSelectTree)) {
+            throw new InlineException("the chain must end with unwrap()", chain);
+        }
+
+        ExpressionTree current = ((MemberSelectTree) ((MethodInvocationTree) chain).getMethodSelect()).getExpression();
+        while (true) {
+            if (isCall(current, "take", 1)) {
+                Collections.reverse(stages);
+                return ((MethodInvocationTree) current).getArguments().get(0);
+            }
+            final Stage stage = Stage.of(current);
+            if (stage == null) {
+                throw new InlineException("only take, let, _let, also, _also, takeIf, _takeIf, takeUnless and "
+                        + "_takeUnless can be inlined", current);
+            }
+            stages.add(stage);
+            current = ((MemberSelectTree) ((MethodInvocationTree) current).getMethodSelect()).getExpression();
+        }
+    }
+
+    private static boolean isCall(final Tree tree, final String name, final int arguments) {
+        return tree instanceof MethodInvocationTree
+                && name.equals(calledName((MethodInvocationTree) tree))
+                && ((MethodInvocationTree) tree).getArguments().size() == arguments;
+    }
+
+    private static String calledName(final MethodInvocationTree call) {
+        final ExpressionTree select = call.getMethodSelect();
+        if (select instanceof MemberSelectTree) {
+            return ((MemberSelectTree) select).getIdentifier().toString();
+        }
+        if (select instanceof IdentifierTree) {
+            return ((IdentifierTree) select).getName().toString();
+        }
+        return null;
+    }
+
+    /**
+     * @return the type of the value before every stage, and of the result at the end
+     */
+    private String[] valueTypes(final ExecutableElement method,
+                                final ExpressionTree taken,
+                                final List<Stage> stages) throws InlineException {
+        final String[] valueTypes = new String[stages.size() + 1];
+
+        if (taken instanceof IdentifierTree) {
+            for (final VariableElement parameter : method.getParameters()) {
+                if (parameter.getSimpleName().contentEquals(((IdentifierTree) taken).getName())) {
+                    if (parameter.asType().getKind().isPrimitive()) {
+                        throw new InlineException("take(primitive) chains cannot be inlined", taken);
+                    }
+                    valueTypes[0] = parameter.asType().toString();
+                }
+            }
+        }
+        for (int i = 0; i < stages.size(); i++) {
+            // implicitly typed lambda parameters have no type tree until javac attributes the body
+            final VariableTree parameter = stages.get(i).lambdaParameter();
+            if (parameter != null && parameter.getType() != null) {
+                valueTypes[i] = source(parameter.getType());
+            }
+        }
+
+        propagate(stages, valueTypes);
+        if (valueTypes[stages.size()] == null) {
+            // last, as the declared return type may be wider than what the chain produces
+            valueTypes[stages.size()] = boxed(method.getReturnType()).toString();
+            propagate(stages, valueTypes);
+        }
+
+        for (int i = 0; i < stages.size(); i++) {
+            if (valueTypes[i] == null) {
+                throw new InlineException("cannot tell the type of the value given to " + stages.get(i).name
+                        + "; give the lambda an explicit parameter type", stages.get(i).argument);
+            }
+        }
+        return valueTypes;
+    }
+
+    /**
+     * also, takeIf and takeUnless hand on a value of the type they received.
+     */
+    private static void propagate(final List<Stage> stages, final String[] valueTypes) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < stages.size(); i++) {
+                if (stages.get(i).kind == Kind.LET) {
+                    continue;
+                }
+                if (valueTypes[i] == null && valueTypes[i + 1] != null) {
+                    valueTypes[i] = valueTypes[i + 1];
+                    changed = true;
+                } else if (valueTypes[i] != null && valueTypes[i + 1] == null) {
+                    valueTypes[i + 1] = valueTypes[i];
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private TypeMirror boxed(final TypeMirror type) {
+        return type.getKind().isPrimitive() ? types.boxedClass((PrimitiveType) type).asType() : type;
+    }
+
+    private void emit(final Stage stage,
+                      final int index,
+                      final String[] valueTypes,
+                      final Signature signature,
+                      final StringBuilder body,
+                      final StringBuilder helperMethods) {
+        final String in = VALUE + index;
+        final String out = VALUE + (index + 1);
+        final String call = call(stage, in, valueTypes[index], valueTypes[index + 1], signature, helperMethods);
+
+        final String statement;
+        switch (stage.kind) {
+            case LET:
+                statement = out + " = " + call + ";";
+                break;
+            case TAKE_IF:
+                statement = out + " = (" + call + ") ? " + in + " : null;";
+                break;
+            case TAKE_UNLESS:
+                statement = out + " = (" + call + ") ? null : " + in + ";";
+                break;
+            default:
+                statement = call + ";";
+        }
+        final String binding = binding(stage, in, valueTypes[index]);
+
+        if (stage.kind != Kind.ALSO) {
+            body.append(INDENT).append("final ").append(valueTypes[index + 1]).append(' ').append(out).append(";\n");
+        }
+        if (stage.nullSafe) {
+            body.append(INDENT).append("if (").append(in).append(" != null) {\n");
+            appendIndented(body, binding);
+            appendIndented(body, statement);
+            if (stage.kind != Kind.ALSO) {
+                body.append(INDENT).append("} else {\n");
+                appendIndented(body, out + " = null;");
+            }
+            body.append(INDENT).append("}\n");
+        } else if (binding != null) {
+            body.append(INDENT).append("{\n");
+            appendIndented(body, binding);
+            appendIndented(body, statement);
+            body.append(INDENT).append("}\n");
+        } else {
+            body.append(INDENT).append(statement).append('\n');
+        }
+        if (stage.kind == Kind.ALSO) {
+            body.append(INDENT).append("final ").append(valueTypes[index + 1]).append(' ').append(out)
+                    .append(" = ").append(in).append(";\n");
+        }
+    }
+
+    private static void appendIndented(final StringBuilder body, final String line) {
+        if (line != null) {
+            body.append(INDENT).append("    ").append(line).append('\n');
+        }
+    }
+
+    /**
+     * @return the declaration binding the parameter of an expression lambda to the current value
+     */
+    private String binding(final Stage stage, final String in, final String inType) {
+        if (stage.lambda() == null || stage.lambda().getBodyKind() != LambdaExpressionTree.BodyKind.EXPRESSION) {
+            return null;
+        }
+        return "final " + inType + " " + stage.lambdaParameter().getName() + " = " + in + ";";
+    }
+
+    /**
+     * @return the expression running the stage function on {@code in}
+     */
+    private String call(final Stage stage,
+                        final String in,
+                        final String inType,
+                        final String outType,
+                        final Signature signature,
+                        final StringBuilder helperMethods) {
+        final LambdaExpressionTree lambda = stage.lambda();
+        if (lambda == null) {
+            final String functionType = stage.kind == Kind.LET
+                    ? "ILet<" + inType + ", " + outType + ">"
+                    : stage.kind == Kind.ALSO ? "IAlso<" + inType + ">" : "ITake<" + inType + ">";
+            return "((" + K2J_COMPAT + "." + functionType + ") " + source(stage.argument) + ")."
+                    + stage.kind.method + "(" + in + ")";
+        }
+        if (lambda.getBodyKind() == LambdaExpressionTree.BodyKind.EXPRESSION) {
+            return source(lambda.getBody());
+        }
+
+        final String helper = VALUE + signature.name + "$" + (helpers++);
+        final String returnType = stage.kind == Kind.LET ? outType : stage.kind == Kind.ALSO ? "void" : "boolean";
+        helperMethods.append('\n')
+                .append("    private static ").append(signature.typeParameters).append(returnType).append(' ').append(helper)
+                .append("(final ").append(inType).append(' ').append(stage.lambdaParameter().getName())
+                .append(signature.parameters.length() > 0 ? ", " : "").append(signature.parameters).append(')')
+                .append(signature.throwsClause).append(' ')
+                .append(source(lambda.getBody())).append('\n');
+        return helper + "(" + in + (signature.arguments.length() > 0 ? ", " : "") + signature.arguments + ")";
+    }
+
+    private String source(final Tree tree) {
+        final long start = positions.getStartPosition(unit, tree);
+        final long end = positions.getEndPosition(unit, tree);
+        if (start < 0 || end < start) {
+            return tree.toString();
+        }
+        return source.subSequence((int) start, (int) end).toString();
+    }
+
+    private enum Kind {
+        LET("doLet"),
+        ALSO("doAlso"),
+        TAKE_IF("doTake"),
+        TAKE_UNLESS("doTake");
+
+        private final String method;
+
+        Kind(final String method) {
+            this.method = method;
+        }
+    }
+
+    private static final class Stage {
+        private final String name;
+        private final Kind kind;
+        private final boolean nullSafe;
+        private final ExpressionTree argument;
+
+        private Stage(final String name, final Kind kind, final boolean nullSafe, final ExpressionTree argument) {
+            this.name = name;
+            this.kind = kind;
+            this.nullSafe = nullSafe;
+            this.argument = argument;
+        }
+
+        static Stage of(final ExpressionTree tree) {
+            if (!(tree instanceof MethodInvocationTree)) {
+                return null;
+            }
+            final MethodInvocationTree call = (MethodInvocationTree) tree;
+            final String name = calledName(call);
+            if (name == null || !(call.getMethodSelect() instanceof MemberSelectTree) || call.getArguments().size() != 1) {
+                return null;
+            }
+
+            final boolean nullSafe = name.startsWith("_");
+            final Kind kind;
+            switch (nullSafe ? name.substring(1) : name) {
+                case "let":
+                    kind = Kind.LET;
+                    break;
+                case "also":
+                    kind = Kind.ALSO;
+                    break;
+                case "takeIf":
+                    kind = Kind.TAKE_IF;
+                    break;
+                case "takeUnless":
+                    kind = Kind.TAKE_UNLESS;
+                    break;
+                default:
+                    return null;
+            }
+            return new Stage(name, kind, nullSafe, call.getArguments().get(0));
+        }
+
+        LambdaExpressionTree lambda() {
+            return argument instanceof LambdaExpressionTree ? (LambdaExpressionTree) argument : null;
+        }
+
+        VariableTree lambdaParameter() {
+            final LambdaExpressionTree lambda = lambda();
+            return lambda != null && lambda.getParameters().size() == 1 ? lambda.getParameters().get(0) : null;
+        }
+    }
+
+    /**
+     * The pieces of the annotated method signature repeated by the generated methods.
+     */
+    private final class Signature {
+        private final String name;
+        private final String typeParameters;
+        private final String parameters;
+        private final String arguments;
+        private final String throwsClause;
+
+        Signature(final ExecutableElement method, final MethodTree tree) {
+            this.name = method.getSimpleName().toString();
+
+            final StringBuilder typeParameters = new StringBuilder();
+            for (final TypeParameterTree typeParameter : tree.getTypeParameters()) {
+                typeParameters.append(typeParameters.length() == 0 ? "<" : ", ").append(source(typeParameter));
+            }
+            this.typeParameters = typeParameters.length() == 0 ? "" : typeParameters.append("> ").toString();
+
+            final StringBuilder parameters = new StringBuilder();
+            final StringBuilder arguments = new StringBuilder();
+            final List<? extends VariableElement> elements = method.getParameters();
+            for (int i = 0; i < elements.size(); i++) {
+                final TypeMirror type = elements.get(i).asType();
+                final String typeName = method.isVarArgs() && i == elements.size() - 1
+                        ? ((ArrayType) type).getComponentType() + "..."
+                        : type.toString();
+                parameters.append(i == 0 ? "" : ", ").append("final ").append(typeName).append(' ')
+                        .append(elements.get(i).getSimpleName());
+                arguments.append(i == 0 ? "" : ", ").append(elements.get(i).getSimpleName());
+            }
+            this.parameters = parameters.toString();
+            this.arguments = arguments.toString();
+
+            final StringBuilder throwsClause = new StringBuilder();
+            for (final TypeMirror thrown : method.getThrownTypes()) {
+                throwsClause.append(throwsClause.length() == 0 ? " throws " : ", ").append(thrown);
+            }
+            this.throwsClause = throwsClause.toString();
+        }
+    }
+
+    static final class InlineException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final Tree tree;
+
+        InlineException(final String message, final Tree tree) {
+            super(message);
+            this.tree = tree;
+        }
+    }
+}
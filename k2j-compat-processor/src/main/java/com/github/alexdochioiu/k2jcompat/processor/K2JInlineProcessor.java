@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.processor;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.util.Trees;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates {@code <Class>_K2JInlined} for every class with {@code @K2JInline} methods. See
+ * {@link ChainInliner} for what the generated methods look like.
+ */
+@SupportedAnnotationTypes(K2JInlineProcessor.ANNOTATION)
+public final class K2JInlineProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "com.github.alexdochioiu.k2jcompat.K2JInline";
+    static final String SUFFIX = "_K2JInlined";
+
+    private Trees trees;
+
+    @Override
+    public synchronized void init(final ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        trees = Trees.instance(processingEnv);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final Map<TypeElement, List<ExecutableElement>> methodsByType = new LinkedHashMap<>();
+        for (final TypeElement annotation : annotations) {
+            for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    methodsByType.computeIfAbsent((TypeElement) element.getEnclosingElement(), (type) -> new ArrayList<>())
+                            .add((ExecutableElement) element);
+                }
+            }
+        }
+
+        for (final Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByType.entrySet()) {
+            generate(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    private void generate(final TypeElement type, final List<ExecutableElement> methods) {
+        final CompilationUnitTree unit = trees.getPath(type).getCompilationUnit();
+        final ChainInliner inliner;
+        try {
+            inliner = new ChainInliner(processingEnv.getTypeUtils(), trees.getSourcePositions(), unit,
+                    unit.getSourceFile().getCharContent(true));
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot read the source: " + e, type);
+            return;
+        }
+
+        final StringBuilder members = new StringBuilder();
+        boolean failed = false;
+        for (final ExecutableElement method : methods) {
+            final MethodTree tree = trees.getTree(method);
+            try {
+                inliner.inline(method, tree, members);
+            } catch (ChainInliner.InlineException e) {
+                trees.printMessage(Diagnostic.Kind.ERROR, "@K2JInline: " + e.getMessage(),
+                        e.tree != null ? e.tree : tree, unit);
+                failed = true;
+            }
+        }
+        if (failed) {
+            return;
+        }
+
+        final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final String simpleName = generatedSimpleName(type);
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type)
+                .openWriter()) {
+            writer.write(source(type, unit, packageName, simpleName, members));
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + simpleName + ": " + e, type);
+        }
+    }
+
+    private static String generatedSimpleName(final TypeElement type) {
+        final StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element enclosing = type.getEnclosingElement();
+             enclosing instanceof TypeElement;
+             enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    private static String source(final TypeElement type,
+                                 final CompilationUnitTree unit,
+                                 final String packageName,
+                                 final String simpleName,
+                                 final CharSequence members) {
+        final StringBuilder source = new StringBuilder();
+        source.append("// Generated by K2JInlineProcessor from ").append(type.getQualifiedName()).append(". Do not edit.\n");
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n");
+        }
+        source.append('\n');
+
+        // the chains were written against the imports of their own file and the members of their class
+        for (final ImportTree importTree : unit.getImports()) {
+            source.append("import ").append(importTree.isStatic() ? "static " : "")
+                    .append(importTree.getQualifiedIdentifier()).append(";\n");
+        }
+        if (!packageName.isEmpty()) {
+            for (Element enclosing = type; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+                final String name = ((TypeElement) enclosing).getQualifiedName().toString();
+                source.append("import ").append(name).append(".*;\n");
+                source.append("import static ").append(name).append(".*;\n");
+            }
+        }
+
+        source.append('\n')
+                .append("/**\n")
+                .append(" * Straight-line versions of the {@code @K2JInline} methods of {@link ")
+                .append(type.getQualifiedName()).append("}.\n")
+                .append(" */\n")
+                .append(isPublic(type) ? "public " : "").append("final class ").append(simpleName).append(" {\n")
+                .append('\n')
+                .append("    private ").append(simpleName).append("() {\n")
+                .append("    }\n")
+                .append(members)
+                .append("}\n");
+        return source.toString();
+    }
+
+    private static boolean isPublic(final TypeElement type) {
+        for (Element element = type; !(element instanceof PackageElement); element = element.getEnclosingElement()) {
+            if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.processor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+public class K2JInlineProcessorTest {
+    private static final String HEADER = "package sample;\n"
+            + "\n"
+            + "import com.github.alexdochioiu.k2jcompat.K2JCompat;\n"
+            + "import com.github.alexdochioiu.k2jcompat.K2JInline;\n"
+            + "import java.util.concurrent.atomic.AtomicInteger;\n"
+            + "\n"
+            + "import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;\n"
+            + "\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void inlinedChain_behavesLikeTheWrapperChain() throws Exception {
+        final Compilation compilation = compile("Parsing", HEADER
+                + "public class Parsing {\n"
+                + "    static final AtomicInteger SEEN = new AtomicInteger();\n"
+                + "    static final K2JCompat.ITake<Integer> NEGATIVE = new K2JCompat.ITake<Integer>() {\n"
+                + "        @Override\n"
+                + "        public boolean doTake(Integer value) {\n"
+                + "            return value != null && value < 0;\n"
+                + "        }\n"
+                + "    };\n"
+                + "\n"
+                + "    @K2JInline\n"
+                + "    public static Integer parse(String input, int factor) {\n"
+                + "        return take(input)\n"
+                + "                ._let((it) -> it.trim())\n"
+                + "                ._takeUnless(String::isEmpty)\n"
+                + "                ._let((String it) -> {\n"
+                + "                    final int value = Integer.parseInt(it);\n"
+                + "                    return value * factor;\n"
+                + "                })\n"
+                + "                .takeUnless(NEGATIVE)\n"
+                + "                .also((Integer it) -> SEEN.incrementAndGet())\n"
+                + "                .let((Integer it) -> it == null ? -1 : it)\n"
+                + "                ._takeIf((it) -> it != 0)\n"
+                + "                .unwrap();\n"
+                + "    }\n"
+                + "}\n");
+        compilation.assertSucceeded();
+
+        final Method original = compilation.load("sample.Parsing").getMethod("parse", String.class, int.class);
+        final Method inlined = compilation.load("sample.Parsing_K2JInlined").getMethod("parse", String.class, int.class);
+        final AtomicInteger seen = (AtomicInteger) field(compilation.load("sample.Parsing"), "SEEN");
+
+        for (final String input : Arrays.asList(null, "", "  ", " 21 ", "-4", "0")) {
+            seen.set(0);
+            final Object expected = original.invoke(null, input, 2);
+            final int expectedSeen = seen.getAndSet(0);
+
+            Assert.assertEquals("input " + input, expected, inlined.invoke(null, input, 2));
+            Assert.assertEquals("side effects for input " + input, expectedSeen, seen.get());
+        }
+    }
+
+    @Test
+    public void inlinedChain_hasNoWrapperAndNoLambdaDispatch() throws Exception {
+        final Compilation compilation = compile("Names", HEADER
+                + "public class Names {\n"
+                + "    @K2JInline\n"
+                + "    static String initials(String first, String last) {\n"
+                + "        return take(first)\n"
+                + "                ._takeIf((String it) -> !it.isEmpty())\n"
+                + "                ._let((String it) -> it.charAt(0) + \".\" + last.charAt(0) + \".\")\n"
+                + "                .unwrap();\n"
+                + "    }\n"
+                + "}\n");
+        compilation.assertSucceeded();
+
+        final String generated = compilation.generated("sample/Names_K2JInlined.java");
+        Assert.assertFalse(generated, generated.contains("take("));
+        Assert.assertFalse(generated, generated.contains("unwrap("));
+        Assert.assertFalse(generated, generated.contains(".do"));
+
+        final Method inlined = compilation.load("sample.Names_K2JInlined").getDeclaredMethod("initials", String.class, String.class);
+        inlined.setAccessible(true);
+        Assert.assertEquals("J.D.", inlined.invoke(null, "John", "Doe"));
+        Assert.assertNull(inlined.invoke(null, "", "Doe"));
+        Assert.assertNull(inlined.invoke(null, null, "Doe"));
+    }
+
+    @Test
+    public void genericAndVarargsSignatures_areKept() throws Exception {
+        final Compilation compilation = compile("Generic", HEADER
+                + "public class Generic {\n"
+                + "    @K2JInline\n"
+                + "    public static <T extends CharSequence> Integer firstLength(T... values) {\n"
+                + "        return take(values)\n"
+                + "                ._takeIf((T[] it) -> it.length > 0)\n"
+                + "                ._let((T[] it) -> it[0].length())\n"
+                + "                .unwrap();\n"
+                + "    }\n"
+                + "}\n");
+        compilation.assertSucceeded();
+
+        final Method inlined = compilation.load("sample.Generic_K2JInlined").getMethod("firstLength", CharSequence[].class);
+        Assert.assertTrue(inlined.isVarArgs());
+        Assert.assertEquals(5, inlined.invoke(null, (Object) new String[]{"Hello", "World"}));
+        Assert.assertNull(inlined.invoke(null, (Object) new String[0]));
+    }
+
+    @Test
+    public void instanceMethod_isRejected() throws Exception {
+        final Compilation compilation = compile("Instance", HEADER
+                + "public class Instance {\n"
+                + "    @K2JInline\n"
+                + "    String trim(String input) {\n"
+                + "        return take(input)._let((String it) -> it.trim()).unwrap();\n"
+                + "    }\n"
+                + "}\n");
+
+        compilation.assertFailedWith("only static methods can be inlined");
+    }
+
+    @Test
+    public void unknownValueType_isRejected() throws Exception {
+        final Compilation compilation = compile("Unknown", HEADER
+                + "public class Unknown {\n"
+                + "    @K2JInline\n"
+                + "    static Object length(String input) {\n"
+                + "        return take(input)._let((it) -> it.length())._let((it) -> it + 1)._let((Integer it) -> it).unwrap();\n"
+                + "    }\n"
+                + "}\n");
+
+        compilation.assertFailedWith("cannot tell the type of the value given to _let");
+    }
+
+    @Test
+    public void otherStatements_areRejected() throws Exception {
+        final Compilation compilation = compile("Statements", HEADER
+                + "public class Statements {\n"
+                + "    @K2JInline\n"
+                + "    static String trim(String input) {\n"
+                + "        final String copy = input;\n"
+                + "        return take(copy)._let((String it) -> it.trim()).unwrap();\n"
+                + "    }\n"
+                + "}\n");
+
+        compilation.assertFailedWith("the body must be a single");
+    }
+
+    private static Object field(final Class<?> type, final String name) throws ReflectiveOperationException {
+        final Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(null);
+    }
+
+    private Compilation compile(final String className, final String source) throws IOException {
+        final File sources = folder.newFolder();
+        final File classes = folder.newFolder();
+        final File generated = folder.newFolder();
+        final File file = new File(new File(sources, "sample"), className + ".java");
+        Assert.assertTrue(file.getParentFile().mkdirs());
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)) {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList(
+                            "-classpath", System.getProperty("java.class.path"),
+                            "-d", classes.getPath(),
+                            "-s", generated.getPath()),
+                    null,
+                    fileManager.getJavaFileObjectsFromFiles(Collections.singletonList(file)));
+            task.setProcessors(Collections.singletonList(new K2JInlineProcessor()));
+            final boolean success = task.call();
+            return new Compilation(success, diagnostics, classes, generated);
+        }
+    }
+
+    private static final class Compilation {
+        private final boolean success;
+        private final DiagnosticCollector<JavaFileObject> diagnostics;
+        private final File generated;
+        private final ClassLoader loader;
+
+        Compilation(final boolean success,
+                    final DiagnosticCollector<JavaFileObject> diagnostics,
+                    final File classes,
+                    final File generated) throws IOException {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.generated = generated;
+            this.loader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, K2JInlineProcessorTest.class.getClassLoader());
+        }
+
+        void assertSucceeded() {
+            Assert.assertTrue(describe(), success);
+        }
+
+        void assertFailedWith(final String message) {
+            Assert.assertFalse(describe(), success);
+            for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(Locale.ROOT).contains(message)) {
+                    return;
+                }
+            }
+            Assert.fail("no error containing '" + message + "' in " + describe());
+        }
+
+        Class<?> load(final String name) throws ClassNotFoundException {
+            return loader.loadClass(name);
+        }
+
+        String generated(final String path) throws IOException {
+            return new String(Files.readAllBytes(new File(generated, path).toPath()), StandardCharsets.UTF_8);
+        }
+
+        private String describe() {
+            final StringBuilder description = new StringBuilder();
+            for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                description.append(diagnostic).append('\n');
+            }
+            return description.toString();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.shrink;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a {@code classes.dex} the shrink report needs: the classes it defines and the
+ * methods it references, which is what counts towards the 64K method limit. Read straight from
+ * the header and the id tables, so no Android tooling is needed.
+ */
+final class DexFile {
+    private static final int HEADER_SIZE = 0x70;
+    private static final int STRING_IDS_SIZE = 56;
+    private static final int TYPE_IDS_SIZE = 64;
+    private static final int METHOD_IDS_SIZE = 88;
+    private static final int CLASS_DEFS_SIZE = 96;
+    private static final int METHOD_ID_ITEM_SIZE = 8;
+    private static final int CLASS_DEF_ITEM_SIZE = 32;
+
+    private final List<String> classes;
+    private final List<String> methodOwners;
+
+    private DexFile(final List<String> classes, final List<String> methodOwners) {
+        this.classes = classes;
+        this.methodOwners = methodOwners;
+    }
+
+    static DexFile read(final Path path) throws IOException {
+        return parse(Files.readAllBytes(path));
+    }
+
+    static DexFile parse(final byte[] bytes) throws IOException {
+        if (bytes.length < HEADER_SIZE || bytes[0] != 'd' || bytes[1] != 'e' || bytes[2] != 'x' || bytes[3] != '\n') {
+            throw new IOException("Not a dex file");
+        }
+        final ByteBuffer dex = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final int stringCount = dex.getInt(STRING_IDS_SIZE);
+        final int stringIds = dex.getInt(STRING_IDS_SIZE + 4);
+        final int typeIds = dex.getInt(TYPE_IDS_SIZE + 4);
+        final int methodCount = dex.getInt(METHOD_IDS_SIZE);
+        final int methodIds = dex.getInt(METHOD_IDS_SIZE + 4);
+        final int classCount = dex.getInt(CLASS_DEFS_SIZE);
+        final int classDefs = dex.getInt(CLASS_DEFS_SIZE + 4);
+
+        final List<String> classes = new ArrayList<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            classes.add(typeName(dex, stringIds, stringCount, typeIds, dex.getInt(classDefs + i * CLASS_DEF_ITEM_SIZE)));
+        }
+        final List<String> methodOwners = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            final int owner = dex.getShort(methodIds + i * METHOD_ID_ITEM_SIZE) & 0xFFFF;
+            methodOwners.add(typeName(dex, stringIds, stringCount, typeIds, owner));
+        }
+        return new DexFile(Collections.unmodifiableList(classes), Collections.unmodifiableList(methodOwners));
+    }
+
+    /**
+     * @return the binary names of the classes defined in this file
+     */
+    List<String> classes() {
+        return classes;
+    }
+
+    int classCount(final String packagePrefix) {
+        return count(classes, packagePrefix);
+    }
+
+    int methodCount() {
+        return methodOwners.size();
+    }
+
+    /**
+     * @return the number of referenced methods declared by classes in {@code packagePrefix}
+     */
+    int methodCount(final String packagePrefix) {
+        return count(methodOwners, packagePrefix);
+    }
+
+    private static int count(final List<String> names, final String packagePrefix) {
+        int count = 0;
+        for (final String name : names) {
+            if (name.startsWith(packagePrefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String typeName(final ByteBuffer dex,
+                                   final int stringIds,
+                                   final int stringCount,
+                                   final int typeIds,
+                                   final int type) throws IOException {
+        final int descriptor = dex.getInt(typeIds + type * 4);
+        if (descriptor < 0 || descriptor >= stringCount) {
+            throw new IOException("Bad string index " + descriptor + " for type " + type);
+        }
+        final String name = string(dex, dex.getInt(stringIds + descriptor * 4));
+        // Lcom/example/Foo; -> com.example.Foo, arrays and primitives are left as they are
+        return name.startsWith("L") && name.endsWith(";")
+                ? name.substring(1, name.length() - 1).replace('/', '.')
+                : name;
+    }
+
+    /**
+     * Reads a string_data_item: the length in UTF-16 units as uleb128, then MUTF-8 bytes up to a
+     * terminating zero.
+     */
+    private static String string(final ByteBuffer dex, final int offset) throws IOException {
+        // the uleb128 length is skipped, the zero terminator is what bounds the data
+        int position = offset;
+        while ((dex.get(position) & 0x80) != 0) {
+            position++;
+        }
+        position++;
+        int end = position;
+        while (dex.get(end) != 0) {
+            end++;
+        }
+        final int length = end - position;
+        // DataInputStream reads MUTF-8 after a two byte big endian length
+        final byte[] utf = new byte[length + 2];
+        utf[0] = (byte) (length >>> 8);
+        utf[1] = (byte) length;
+        for (int i = 0; i < length; i++) {
+            utf[i + 2] = dex.get(position + i);
+        }
+        return new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.shrink;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the sample app before and after R8: classes and method references in its dex, and the
+ * classes the JVM loads to run it. Run by the {@code shrinkReport} task, see the build file.
+ * <pre>
+ * --before-dex DIR --before-jar JAR --after-dex DIR --after-jar JAR --main CLASS
+ * --library PREFIX --app PREFIX [--max-library-classes N]
+ * </pre>
+ * With {@code --max-library-classes}, exits with status 1 if the shrunk dex still defines more
+ * than {@code N} library classes.
+ */
+public final class ShrinkReport {
+
+    private ShrinkReport() {
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final Map<String, String> options = options(args);
+        final String library = required(options, "--library");
+        final String app = required(options, "--app");
+        final String main = required(options, "--main");
+
+        final Column before = measure(Paths.get(required(options, "--before-dex")),
+                required(options, "--before-jar"), main, library, app);
+        final Column after = measure(Paths.get(required(options, "--after-dex")),
+                required(options, "--after-jar"), main, library, app);
+
+        System.out.println("library: " + library + "*, app: " + app + "*");
+        System.out.printf("%-32s%12s%12s%n", "", "before R8", "after R8");
+        row("dex classes", before.classes, after.classes);
+        row("  from the library", before.libraryClasses, after.libraryClasses);
+        row("dex method references", before.methods, after.methods);
+        row("  to the library", before.libraryMethods, after.libraryMethods);
+        row("classes loaded to run the app", before.loaded, after.loaded);
+        row("  from the library", before.libraryLoaded, after.libraryLoaded);
+        row("  from the app, with lambdas", before.appLoaded, after.appLoaded);
+
+        if (options.containsKey("--max-library-classes")) {
+            final int max = Integer.parseInt(options.get("--max-library-classes"));
+            if (after.libraryClasses > max) {
+                System.out.println("FAILED: the shrunk dex still defines " + after.libraryClasses
+                        + " classes from " + library + ", at most " + max + " expected: " + after.library);
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * @return the name of the class a {@code -verbose:class} line reports as loaded, or null if
+     * the line is about something else. Understands both the Java 8 and the unified logging format.
+     */
+    static String loadedClassName(final String line) {
+        final int start;
+        if (line.startsWith("[Loaded ")) {
+            start = "[Loaded ".length();
+        } else {
+            final int tag = line.indexOf("[class,load] ");
+            if (tag < 0) {
+                return null;
+            }
+            start = tag + "[class,load] ".length();
+        }
+        final int end = line.indexOf(' ', start);
+        return end < 0 ? null : line.substring(start, end);
+    }
+
+    private static Column measure(final Path dexDirectory,
+                                  final String jar,
+                                  final String main,
+                                  final String library,
+                                  final String app) throws IOException, InterruptedException {
+        final Column column = new Column();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dexDirectory, "classes*.dex")) {
+            for (final Path file : files) {
+                final DexFile dex = DexFile.read(file);
+                column.classes += dex.classes().size();
+                column.libraryClasses += dex.classCount(library);
+                column.methods += dex.methodCount();
+                column.libraryMethods += dex.methodCount(library);
+                for (final String name : dex.classes()) {
+                    if (name.startsWith(library)) {
+                        column.library.add(name);
+                    }
+                }
+            }
+        }
+
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final Process process = new ProcessBuilder(java, "-verbose:class", "-cp", jar, main)
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String name = loadedClassName(line);
+                if (name != null) {
+                    column.loaded++;
+                    column.libraryLoaded += name.startsWith(library) ? 1 : 0;
+                    column.appLoaded += name.startsWith(app) ? 1 : 0;
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(main + " failed when run from " + jar);
+        }
+        return column;
+    }
+
+    private static void row(final String label, final int before, final int after) {
+        System.out.printf("%-32s%12d%12d%n", label, before, after);
+    }
+
+    private static Map<String, String> options(final String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i], args[i + 1]);
+        }
+        return options;
+    }
+
+    private static String required(final Map<String, String> options, final String name) {
+        final String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    private static final class Column {
+        int classes;
+        int libraryClasses;
+        int methods;
+        int libraryMethods;
+        int loaded;
+        int libraryLoaded;
+        int appLoaded;
+        final List<String> library = new ArrayList<>();
+    }
+}
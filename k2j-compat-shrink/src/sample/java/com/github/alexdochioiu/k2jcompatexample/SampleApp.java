@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompatexample;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+/**
+ * A typical use of the library, as an app would ship it. The shrink report checks how much of
+ * k2j-compat is left in this app once R8 has run.
+ */
+public final class SampleApp {
+
+    private SampleApp() {
+    }
+
+    public static void main(final String[] args) {
+        final String input = args.length > 0 ? args[0] : " 42 ";
+
+        final Integer parsed = take(input)
+                ._let((it) -> it.trim())
+                ._takeUnless(String::isEmpty)
+                ._let(Integer::valueOf)
+                ._also((it) -> System.out.println("parsed " + it))
+                ._takeIf((it) -> it > 0)
+                .unwrap();
+
+        final int doubled = take(parsed != null ? parsed : 0)
+                .takeUnless((it) -> it > 1_000)
+                .let((it) -> it * 2)
+                .unwrapOr(-1);
+
+        System.out.println(doubled);
+    }
+}
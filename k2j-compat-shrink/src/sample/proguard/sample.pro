@@ -0,0 +1,7 @@
+# The app side of the shrink report: keep the entry point, as an app keeps its activities.
+-keep class com.github.alexdochioiu.k2jcompatexample.SampleApp {
+    public static void main(java.lang.String[]);
+}
+
+# Names are kept only so the report can tell which classes come from k2j-compat.
+-dontobfuscate
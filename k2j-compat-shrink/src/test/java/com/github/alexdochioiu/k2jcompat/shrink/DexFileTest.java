@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.shrink;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class DexFileTest {
+
+    @Test
+    public void parse_readsDefinedClassesAndMethodOwners() throws IOException {
+        final DexFile dex = DexFile.parse(dex(
+                new String[]{"Lcom/github/alexdochioiu/k2jcompat/K2JCompat;", "Lcom/example/App;", "Ljava/lang/Object;", "I"},
+                new int[]{0, 1},
+                new int[]{0, 1, 1, 2}));
+
+        Assert.assertEquals(Arrays.asList("com.github.alexdochioiu.k2jcompat.K2JCompat", "com.example.App"), dex.classes());
+        Assert.assertEquals(1, dex.classCount("com.github.alexdochioiu.k2jcompat."));
+        Assert.assertEquals(4, dex.methodCount());
+        Assert.assertEquals(1, dex.methodCount("com.github.alexdochioiu.k2jcompat."));
+        Assert.assertEquals(2, dex.methodCount("com.example."));
+    }
+
+    @Test
+    public void parse_decodesNonAsciiNames() throws IOException {
+        final DexFile dex = DexFile.parse(dex(new String[]{"Lcom/example/Caf\u00e9;"}, new int[]{0}, new int[0]));
+
+        Assert.assertEquals("com.example.Caf\u00e9", dex.classes().get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsOtherFiles() throws IOException {
+        DexFile.parse(new byte[0x70]);
+    }
+
+    /**
+     * A dex file with just the tables the parser reads: one type per string, the given class
+     * definitions and methods owned by the given types.
+     */
+    private static byte[] dex(final String[] descriptors, final int[] classTypes, final int[] methodOwners) throws IOException {
+        final int stringIds = 0x70;
+        final int typeIds = stringIds + 4 * descriptors.length;
+        final int methodIds = typeIds + 4 * descriptors.length;
+        final int classDefs = methodIds + 8 * methodOwners.length;
+        final int data = classDefs + 32 * classTypes.length;
+
+        final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        final int[] stringOffsets = new int[descriptors.length];
+        for (int i = 0; i < descriptors.length; i++) {
+            stringOffsets[i] = data + strings.size();
+            final byte[] utf = descriptors[i].getBytes(StandardCharsets.UTF_8);
+            strings.write(descriptors[i].length());
+            strings.write(utf);
+            strings.write(0);
+        }
+
+        final ByteBuffer dex = ByteBuffer.allocate(data + strings.size()).order(ByteOrder.LITTLE_ENDIAN);
+        dex.put("dex\n035\0".getBytes(StandardCharsets.US_ASCII));
+        dex.putInt(56, descriptors.length).putInt(60, stringIds);
+        dex.putInt(64, descriptors.length).putInt(68, typeIds);
+        dex.putInt(88, methodOwners.length).putInt(92, methodIds);
+        dex.putInt(96, classTypes.length).putInt(100, classDefs);
+        for (int i = 0; i < descriptors.length; i++) {
+            dex.putInt(stringIds + 4 * i, stringOffsets[i]);
+            dex.putInt(typeIds + 4 * i, i);
+        }
+        for (int i = 0; i < methodOwners.length; i++) {
+            dex.putShort(methodIds + 8 * i, (short) methodOwners[i]);
+        }
+        for (int i = 0; i < classTypes.length; i++) {
+            dex.putInt(classDefs + 32 * i, classTypes[i]);
+        }
+        dex.position(data);
+        dex.put(strings.toByteArray());
+        return dex.array();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.shrink;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShrinkReportTest {
+
+    @Test
+    public void loadedClassName_readsJava8Format() {
+        Assert.assertEquals("com.example.App",
+                ShrinkReport.loadedClassName("[Loaded com.example.App from file:/tmp/sample.jar]"));
+    }
+
+    @Test
+    public void loadedClassName_readsUnifiedLoggingFormat() {
+        Assert.assertEquals("com.example.App$$Lambda$14/0x0000000800c03000",
+                ShrinkReport.loadedClassName("[0.051s][info][class,load] com.example.App$$Lambda$14/0x0000000800c03000 source: com.example.App"));
+    }
+
+    @Test
+    public void loadedClassName_ignoresOtherLines() {
+        Assert.assertNull(ShrinkReport.loadedClassName("parsed 42"));
+        Assert.assertNull(ShrinkReport.loadedClassName("[0.051s][info][class,init] com.example.App"));
+    }
+}
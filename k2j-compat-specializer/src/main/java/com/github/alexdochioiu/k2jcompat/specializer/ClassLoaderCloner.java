@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+/**
+ * Defines every copy in a class loader of its own, under the name of its template. Works on any
+ * JVM that can define classes at runtime, at the cost of a class loader per copy.
+ */
+final class ClassLoaderCloner extends Cloner {
+
+    @Override
+    Class<?> copy(final Class<?> template, final byte[] bytes) {
+        return new CopyLoader(template.getClassLoader()).define(template.getName(), bytes);
+    }
+
+    @Override
+    K2JSpecializer.Strategy strategy() {
+        return K2JSpecializer.Strategy.CLASS_LOADERS;
+    }
+
+    /**
+     * Holds one copy and delegates everything else, such as the K2JCompat interfaces the copy
+     * refers to, to the loader of the template.
+     */
+    private static final class CopyLoader extends ClassLoader {
+
+        CopyLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(final String name, final byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+/**
+ * Defines copies of the stage templates. A copy runs the same bytecode as its template, but the
+ * JIT profiles it, and so inlines into it, on its own.
+ */
+abstract class Cloner {
+
+    /**
+     * @param bytes the class file of {@code template}
+     */
+    abstract Class<?> copy(Class<?> template, byte[] bytes) throws ReflectiveOperationException;
+
+    abstract K2JSpecializer.Strategy strategy();
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+/**
+ * Picks the {@link Cloner}. This version runs before Java 15 and always picks the
+ * {@link ClassLoaderCloner}; {@code META-INF/versions/15} holds the one which picks hidden classes.
+ */
+final class ClonerLoader {
+
+    private ClonerLoader() {
+    }
+
+    static Cloner load() {
+        return new ClassLoaderCloner();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds pipelines whose call sites stay monomorphic however many lambdas the application has.
+ * <p>
+ * Every stage of {@link K2JPipeline#build()} calls its function from the same bytecode, shared by
+ * all the pipelines of the application. Once that call site has seen more than two lambda classes
+ * the JIT stops inlining through it. {@link #specialize(K2JPipeline)} gives every stage a copy of
+ * its stage class instead, one per lambda class and next stage, so each call site only ever sees
+ * one receiver and the whole chain can be inlined into its caller.
+ * <p>
+ * The copies are hidden classes on Java 15+, and classes in a class loader of their own before
+ * that. Where classes cannot be defined at runtime (Android, a restrictive security manager), with
+ * {@code -D}{@value #PROPERTY}{@code =false}, or after {@value #MAX_CLASSES_PROPERTY} copies
+ * (default 4096), stages run on the shared classes, just like {@link K2JPipeline#build()}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JSpecializer {
+    public static final String PROPERTY = "k2j.specializer";
+    public static final String MAX_CLASSES_PROPERTY = "k2j.specializer.maxClasses";
+
+    public enum Strategy {
+        HIDDEN_CLASSES,
+        CLASS_LOADERS,
+        /**
+         * No copies, the stages share their classes.
+         */
+        NONE
+    }
+
+    private static final int MAX_CLASSES = Integer.getInteger(MAX_CLASSES_PROPERTY, 4096);
+    private static final AtomicInteger CLASSES = new AtomicInteger();
+
+    /**
+     * Copies made so far, by the class of the stage function. Pipelines built again from the same
+     * lambdas reuse them.
+     */
+    private static final ClassValue<ConcurrentMap<Shape, Constructor<?>>> COPIES =
+            new ClassValue<ConcurrentMap<Shape, Constructor<?>>>() {
+                @Override
+                protected ConcurrentMap<Shape, Constructor<?>> computeValue(final Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * Null once copying is turned off, or has failed.
+     */
+    private static volatile Cloner cloner = "false".equals(System.getProperty(PROPERTY)) ? null : ClonerLoader.load();
+
+    private K2JSpecializer() {
+    }
+
+    /**
+     * @return the same function as {@code pipeline.build()}, made of stage classes of its own
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> ILet<T, R> specialize(final K2JPipeline<T, R> pipeline) {
+        if (Objects.requireNonNull(pipeline).size() == 0) {
+            return pipeline.build();
+        }
+
+        ILet<Object, Object> next = null;
+        boolean nullSkipsRest = true;
+        for (int i = pipeline.size() - 1; i >= 0; i--) {
+            final String operation = pipeline.operation(i);
+            final Template template = Template.of(operation);
+            final Object function = pipeline.function(i);
+            next = template.newStage(constructor(template, function.getClass(), next),
+                    next, nullSkipsRest, function, operation.endsWith("If"));
+            nullSkipsRest = nullSkipsRest && operation.startsWith("_");
+        }
+        return (ILet<T, R>) next;
+    }
+
+    public static Strategy strategy() {
+        final Cloner current = cloner;
+        return current != null ? current.strategy() : Strategy.NONE;
+    }
+
+    /**
+     * @return the number of stage classes defined so far
+     */
+    public static int specializedClasses() {
+        return CLASSES.get();
+    }
+
+    private static Constructor<?> constructor(final Template template, final Class<?> functionType, final Object next) {
+        final Cloner current = cloner;
+        if (current == null) {
+            return template.constructor;
+        }
+
+        final ConcurrentMap<Shape, Constructor<?>> copies = COPIES.get(functionType);
+        final Shape shape = new Shape(template, next != null ? next.getClass() : null);
+        final Constructor<?> existing = copies.get(shape);
+        if (existing != null) {
+            return existing;
+        }
+        final Constructor<?> copy = copy(current, template);
+        final Constructor<?> raced = copies.putIfAbsent(shape, copy);
+        return raced != null ? raced : copy;
+    }
+
+    private static Constructor<?> copy(final Cloner current, final Template template) {
+        if (CLASSES.incrementAndGet() > MAX_CLASSES) {
+            CLASSES.decrementAndGet();
+            return template.constructor;
+        }
+        try {
+            final Constructor<?> constructor = current.copy(template.type, template.bytes())
+                    .getDeclaredConstructor(template.constructor.getParameterTypes());
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | IOException | RuntimeException | LinkageError e) {
+            // this runtime cannot define classes, so stop trying
+            CLASSES.decrementAndGet();
+            cloner = null;
+            return template.constructor;
+        }
+    }
+
+    private enum Template {
+        LET(LetStage.class, false),
+        NULL_SAFE_LET(NullSafeLetStage.class, false),
+        ALSO(AlsoStage.class, false),
+        NULL_SAFE_ALSO(NullSafeAlsoStage.class, false),
+        TAKE(TakeStage.class, true),
+        NULL_SAFE_TAKE(NullSafeTakeStage.class, true);
+
+        final Class<?> type;
+        final Constructor<?> constructor;
+        private final boolean take;
+        private volatile byte[] bytes;
+
+        Template(final Class<?> type, final boolean take) {
+            this.type = type;
+            this.take = take;
+            try {
+                this.constructor = take
+                        ? type.getDeclaredConstructor(ILet.class, boolean.class, Object.class, boolean.class)
+                        : type.getDeclaredConstructor(ILet.class, boolean.class, Object.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static Template of(final String operation) {
+            switch (operation) {
+                case "let":
+                    return LET;
+                case "_let":
+                    return NULL_SAFE_LET;
+                case "also":
+                    return ALSO;
+                case "_also":
+                    return NULL_SAFE_ALSO;
+                case "takeIf":
+                case "takeUnless":
+                    return TAKE;
+                case "_takeIf":
+                case "_takeUnless":
+                    return NULL_SAFE_TAKE;
+                default:
+                    throw new IllegalStateException("Unknown stage " + operation);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        ILet<Object, Object> newStage(final Constructor<?> constructor,
+                                      final ILet<Object, Object> next,
+                                      final boolean nullSkipsRest,
+                                      final Object function,
+                                      final boolean keepWhen) {
+            try {
+                return (ILet<Object, Object>) (take
+                        ? constructor.newInstance(next, nullSkipsRest, function, keepWhen)
+                        : constructor.newInstance(next, nullSkipsRest, function));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        byte[] bytes() throws IOException {
+            byte[] read = bytes;
+            if (read == null) {
+                try (InputStream input = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+                    if (input == null) {
+                        throw new IOException("Cannot read the class file of " + type.getName());
+                    }
+                    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[4096];
+                    for (int count = input.read(buffer); count >= 0; count = input.read(buffer)) {
+                        output.write(buffer, 0, count);
+                    }
+                    read = output.toByteArray();
+                }
+                bytes = read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * What a copy is made for, besides the class of the stage function.
+     */
+    private static final class Shape {
+        private final Template template;
+        private final Class<?> nextType;
+
+        Shape(final Template template, final Class<?> nextType) {
+            this.template = template;
+            this.nextType = nextType;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Shape)) {
+                return false;
+            }
+            final Shape shape = (Shape) other;
+            return template == shape.template && nextType == shape.nextType;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * template.hashCode() + (nextType != null ? nextType.hashCode() : 0);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+/**
+ * Template of a {@code let} stage. See {@link K2JSpecializer} for why every stage of a specialized
+ * chain runs on its own copy of this class, and why it does not share its code with the others.
+ */
+final class LetStage implements ILet<Object, Object> {
+    private final ILet<Object, Object> next;
+    private final boolean nullSkipsRest;
+    private final ILet<Object, Object> iLet;
+
+    @SuppressWarnings("unchecked")
+    public LetStage(final ILet<Object, Object> next, final boolean nullSkipsRest, final Object iLet) {
+        this.next = next;
+        this.nullSkipsRest = nullSkipsRest;
+        this.iLet = (ILet<Object, Object>) iLet;
+    }
+
+    @Override
+    public Object doLet(final Object object) {
+        final Object value = iLet.doLet(object);
+        if (next == null || (value == null && nullSkipsRest)) {
+            return value;
+        }
+        return next.doLet(value);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+/**
+ * Template of an {@code _also} stage, see {@link LetStage}.
+ */
+final class NullSafeAlsoStage implements ILet<Object, Object> {
+    private final ILet<Object, Object> next;
+    private final boolean nullSkipsRest;
+    private final IAlso<Object> iAlso;
+
+    @SuppressWarnings("unchecked")
+    public NullSafeAlsoStage(final ILet<Object, Object> next, final boolean nullSkipsRest, final Object iAlso) {
+        this.next = next;
+        this.nullSkipsRest = nullSkipsRest;
+        this.iAlso = (IAlso<Object>) iAlso;
+    }
+
+    @Override
+    public Object doLet(final Object object) {
+        if (object != null) {
+            iAlso.doAlso(object);
+        }
+        if (next == null || (object == null && nullSkipsRest)) {
+            return object;
+        }
+        return next.doLet(object);
+    }
+}
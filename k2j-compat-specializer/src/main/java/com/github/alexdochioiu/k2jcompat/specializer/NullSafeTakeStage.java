@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+/**
+ * Template of a {@code _takeIf} / {@code _takeUnless} stage, see {@link LetStage}.
+ */
+final class NullSafeTakeStage implements ILet<Object, Object> {
+    private final ILet<Object, Object> next;
+    private final boolean nullSkipsRest;
+    private final ITake<Object> iTake;
+    private final boolean keepWhen;
+
+    @SuppressWarnings("unchecked")
+    public NullSafeTakeStage(final ILet<Object, Object> next, final boolean nullSkipsRest, final Object iTake, final boolean keepWhen) {
+        this.next = next;
+        this.nullSkipsRest = nullSkipsRest;
+        this.iTake = (ITake<Object>) iTake;
+        this.keepWhen = keepWhen;
+    }
+
+    @Override
+    public Object doLet(final Object object) {
+        final Object value = object != null && iTake.doTake(object) == keepWhen ? object : null;
+        if (next == null || (value == null && nullSkipsRest)) {
+            return value;
+        }
+        return next.doLet(value);
+    }
+}
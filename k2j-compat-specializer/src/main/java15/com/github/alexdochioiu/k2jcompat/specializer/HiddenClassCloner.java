@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Defines every copy as a hidden class next to its template, without a class loader of its own.
+ */
+final class HiddenClassCloner extends Cloner {
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    @Override
+    Class<?> copy(final Class<?> template, final byte[] bytes) throws IllegalAccessException {
+        return lookup.defineHiddenClass(bytes, false).lookupClass();
+    }
+
+    @Override
+    K2JSpecializer.Strategy strategy() {
+        return K2JSpecializer.Strategy.HIDDEN_CLASSES;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.specializer;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class K2JSpecializerTest {
+
+    @Test
+    public void specialized_matchesBuild() {
+        final AtomicInteger built = new AtomicInteger();
+        final AtomicInteger specialized = new AtomicInteger();
+        for (final AtomicInteger alsoCalls : Arrays.asList(built, specialized)) {
+            final K2JPipeline<String, String> pipeline = K2JPipeline.<String>start()
+                    .also((it) -> alsoCalls.incrementAndGet())
+                    ._let(String::trim)
+                    ._takeUnless(String::isEmpty)
+                    .let((it) -> it == null ? "-" : it)
+                    .takeIf((it) -> !it.startsWith("x"))
+                    ._also((it) -> alsoCalls.incrementAndGet())
+                    .takeUnless((it) -> it != null && it.length() > 5)
+                    ._takeIf((it) -> !it.equals("-"))
+                    ._let(String::toUpperCase);
+            final ILet<String, String> function = alsoCalls == built
+                    ? pipeline.build()
+                    : K2JSpecializer.specialize(pipeline);
+
+            final List<String> results = new ArrayList<>();
+            for (final String input : Arrays.asList(null, "", "  ", " ab ", "xab", "abcdefg", "-")) {
+                results.add(function.doLet(input));
+            }
+            Assert.assertEquals(Arrays.asList(null, null, null, "AB", null, null, null), results);
+        }
+        Assert.assertEquals(built.get(), specialized.get());
+    }
+
+    @Test
+    public void everyStage_getsAClassOfItsOwn() {
+        Assert.assertNotEquals(K2JSpecializer.Strategy.NONE, K2JSpecializer.strategy());
+
+        final ILet<String, String> trim = K2JSpecializer.specialize(K2JPipeline.<String>start()._let(String::trim));
+        final ILet<String, String> upper = K2JSpecializer.specialize(K2JPipeline.<String>start()._let(String::toUpperCase));
+
+        Assert.assertEquals("ab", trim.doLet(" ab "));
+        Assert.assertEquals("AB", upper.doLet("ab"));
+        Assert.assertNotSame(NullSafeLetStage.class, trim.getClass());
+        Assert.assertNotSame(NullSafeLetStage.class, upper.getClass());
+        Assert.assertNotSame(trim.getClass(), upper.getClass());
+    }
+
+    @Test
+    public void sameLambdas_reuseTheirClasses() {
+        final List<ILet<Integer, Integer>> functions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            functions.add(K2JSpecializer.specialize(K2JPipeline.<Integer>start()
+                    ._let((it) -> it + 1)
+                    ._takeIf((it) -> it > 0)));
+        }
+        final int classes = K2JSpecializer.specializedClasses();
+        functions.add(K2JSpecializer.specialize(K2JPipeline.<Integer>start()
+                ._let((it) -> it + 1)
+                ._takeIf((it) -> it > 0)));
+
+        Assert.assertSame(functions.get(0).getClass(), functions.get(1).getClass());
+        Assert.assertSame(functions.get(0).getClass(), functions.get(2).getClass());
+        Assert.assertTrue(classes + 2 <= K2JSpecializer.specializedClasses());
+        Assert.assertEquals(Integer.valueOf(2), functions.get(0).doLet(1));
+        Assert.assertNull(functions.get(0).doLet(-1));
+    }
+
+    @Test
+    public void emptyPipeline_returnsInput() {
+        final Object input = new Object();
+        Assert.assertSame(input, K2JSpecializer.specialize(K2JPipeline.start()).doLet(input));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void specialize_crashOnNullPipeline() {
+        K2JSpecializer.specialize(null);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+import static com.github.alexdochioiu.k2jcompat.vector.K2JExpr.requireNonNull;
+
+/**
+ * A comparison of {@link K2JExpr}s, or a combination of other conditions, used as the predicate
+ * of {@link K2JVector#takeIf(int[], K2JCondition)} and friends.
+ * <pre>
+ * x().gt(0).and(x().mul(3).lt(limit)).not()
+ * </pre>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JCondition {
+    static final int AND = -1;
+    static final int OR = -2;
+    static final int NOT = -3;
+
+    /**
+     * One of the {@link Program} comparisons, or {@link #AND}, {@link #OR} or {@link #NOT}.
+     */
+    final int kind;
+    final K2JExpr leftValue;
+    final K2JExpr rightValue;
+    final K2JCondition left;
+    final K2JCondition right;
+
+    private volatile Program program;
+
+    private K2JCondition(final int kind,
+                         final K2JExpr leftValue,
+                         final K2JExpr rightValue,
+                         final K2JCondition left,
+                         final K2JCondition right) {
+        this.kind = kind;
+        this.leftValue = leftValue;
+        this.rightValue = rightValue;
+        this.left = left;
+        this.right = right;
+    }
+
+    static K2JCondition compare(final int comparison, final K2JExpr left, final K2JExpr right) {
+        return new K2JCondition(comparison, left, right, null, null);
+    }
+
+    public K2JCondition and(final K2JCondition other) {
+        return new K2JCondition(AND, null, null, this, requireNonNull(other));
+    }
+
+    public K2JCondition or(final K2JCondition other) {
+        return new K2JCondition(OR, null, null, this, requireNonNull(other));
+    }
+
+    public K2JCondition not() {
+        return new K2JCondition(NOT, null, null, this, null);
+    }
+
+    Program program() {
+        Program compiled = program;
+        if (compiled == null) {
+            // racing threads compile equal programs, so either one can be kept
+            compiled = Program.compile(this);
+            program = compiled;
+        }
+        return compiled;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case AND:
+                return "(" + left + " && " + right + ")";
+            case OR:
+                return "(" + left + " || " + right + ")";
+            case NOT:
+                return "!" + left;
+            default:
+                return leftValue + " " + Program.comparisonName(kind) + " " + rightValue;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+/**
+ * Arithmetic over the current element, {@link K2JVector#x()}, and constants. Built with
+ * {@link K2JVector}, immutable, and evaluated lanewise on {@code int}, {@code long} or
+ * {@code double} values with Java's usual arithmetic (integer overflow wraps around).
+ * <p>
+ * Constants given as {@code long} can be used with every array type, as long as they fit in
+ * the element type. Constants given as {@code double} can only be used with {@code double[]}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JExpr {
+    static final int X = -1;
+    static final int CONSTANT = -2;
+
+    final int kind;
+    final K2JExpr left;
+    final K2JExpr right;
+    private final boolean integral;
+    private final long longValue;
+    private final double doubleValue;
+
+    private volatile Program program;
+
+    private K2JExpr(final int kind,
+                    final K2JExpr left,
+                    final K2JExpr right,
+                    final boolean integral,
+                    final long longValue,
+                    final double doubleValue) {
+        this.kind = kind;
+        this.left = left;
+        this.right = right;
+        this.integral = integral;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+    }
+
+    static K2JExpr x() {
+        return new K2JExpr(X, null, null, false, 0, 0);
+    }
+
+    static K2JExpr constant(final long value) {
+        return new K2JExpr(CONSTANT, null, null, true, value, value);
+    }
+
+    static K2JExpr constant(final double value) {
+        return new K2JExpr(CONSTANT, null, null, false, 0, value);
+    }
+
+    public K2JExpr add(final K2JExpr other) {
+        return binary(Program.ADD, other);
+    }
+
+    public K2JExpr add(final long constant) {
+        return binary(Program.ADD, constant(constant));
+    }
+
+    public K2JExpr add(final double constant) {
+        return binary(Program.ADD, constant(constant));
+    }
+
+    public K2JExpr sub(final K2JExpr other) {
+        return binary(Program.SUB, other);
+    }
+
+    public K2JExpr sub(final long constant) {
+        return binary(Program.SUB, constant(constant));
+    }
+
+    public K2JExpr sub(final double constant) {
+        return binary(Program.SUB, constant(constant));
+    }
+
+    public K2JExpr mul(final K2JExpr other) {
+        return binary(Program.MUL, other);
+    }
+
+    public K2JExpr mul(final long constant) {
+        return binary(Program.MUL, constant(constant));
+    }
+
+    public K2JExpr mul(final double constant) {
+        return binary(Program.MUL, constant(constant));
+    }
+
+    public K2JExpr min(final K2JExpr other) {
+        return binary(Program.MIN, other);
+    }
+
+    public K2JExpr min(final long constant) {
+        return binary(Program.MIN, constant(constant));
+    }
+
+    public K2JExpr min(final double constant) {
+        return binary(Program.MIN, constant(constant));
+    }
+
+    public K2JExpr max(final K2JExpr other) {
+        return binary(Program.MAX, other);
+    }
+
+    public K2JExpr max(final long constant) {
+        return binary(Program.MAX, constant(constant));
+    }
+
+    public K2JExpr max(final double constant) {
+        return binary(Program.MAX, constant(constant));
+    }
+
+    public K2JExpr neg() {
+        return new K2JExpr(Program.NEG, this, null, false, 0, 0);
+    }
+
+    public K2JExpr abs() {
+        return new K2JExpr(Program.ABS, this, null, false, 0, 0);
+    }
+
+    public K2JCondition eq(final K2JExpr other) {
+        return K2JCondition.compare(Program.EQ, this, requireNonNull(other));
+    }
+
+    public K2JCondition eq(final long constant) {
+        return K2JCondition.compare(Program.EQ, this, constant(constant));
+    }
+
+    public K2JCondition eq(final double constant) {
+        return K2JCondition.compare(Program.EQ, this, constant(constant));
+    }
+
+    public K2JCondition ne(final K2JExpr other) {
+        return K2JCondition.compare(Program.NE, this, requireNonNull(other));
+    }
+
+    public K2JCondition ne(final long constant) {
+        return K2JCondition.compare(Program.NE, this, constant(constant));
+    }
+
+    public K2JCondition ne(final double constant) {
+        return K2JCondition.compare(Program.NE, this, constant(constant));
+    }
+
+    public K2JCondition lt(final K2JExpr other) {
+        return K2JCondition.compare(Program.LT, this, requireNonNull(other));
+    }
+
+    public K2JCondition lt(final long constant) {
+        return K2JCondition.compare(Program.LT, this, constant(constant));
+    }
+
+    public K2JCondition lt(final double constant) {
+        return K2JCondition.compare(Program.LT, this, constant(constant));
+    }
+
+    public K2JCondition le(final K2JExpr other) {
+        return K2JCondition.compare(Program.LE, this, requireNonNull(other));
+    }
+
+    public K2JCondition le(final long constant) {
+        return K2JCondition.compare(Program.LE, this, constant(constant));
+    }
+
+    public K2JCondition le(final double constant) {
+        return K2JCondition.compare(Program.LE, this, constant(constant));
+    }
+
+    public K2JCondition gt(final K2JExpr other) {
+        return K2JCondition.compare(Program.GT, this, requireNonNull(other));
+    }
+
+    public K2JCondition gt(final long constant) {
+        return K2JCondition.compare(Program.GT, this, constant(constant));
+    }
+
+    public K2JCondition gt(final double constant) {
+        return K2JCondition.compare(Program.GT, this, constant(constant));
+    }
+
+    public K2JCondition ge(final K2JExpr other) {
+        return K2JCondition.compare(Program.GE, this, requireNonNull(other));
+    }
+
+    public K2JCondition ge(final long constant) {
+        return K2JCondition.compare(Program.GE, this, constant(constant));
+    }
+
+    public K2JCondition ge(final double constant) {
+        return K2JCondition.compare(Program.GE, this, constant(constant));
+    }
+
+    /**
+     * @throws IllegalArgumentException if this constant does not fit in an {@code int}
+     */
+    int intValue() {
+        if (!integral || longValue != (int) longValue) {
+            throw new IllegalArgumentException("Constant " + this + " cannot be used with int values");
+        }
+        return (int) longValue;
+    }
+
+    /**
+     * @throws IllegalArgumentException if this constant was given as a {@code double}
+     */
+    long longValue() {
+        if (!integral) {
+            throw new IllegalArgumentException("Constant " + this + " cannot be used with long values");
+        }
+        return longValue;
+    }
+
+    double doubleValue() {
+        return doubleValue;
+    }
+
+    Program program() {
+        Program compiled = program;
+        if (compiled == null) {
+            // racing threads compile equal programs, so either one can be kept
+            compiled = Program.compile(this);
+            program = compiled;
+        }
+        return compiled;
+    }
+
+    private K2JExpr binary(final int operation, final K2JExpr other) {
+        return new K2JExpr(operation, this, requireNonNull(other), false, 0, 0);
+    }
+
+    static <T> T requireNonNull(final T object) {
+        if (object == null) {
+            throw new NullPointerException();
+        }
+        return object;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case X:
+                return "x";
+            case CONSTANT:
+                return integral ? Long.toString(longValue) : Double.toString(doubleValue);
+            case Program.NEG:
+                return "-(" + left + ")";
+            case Program.ABS:
+                return "|" + left + "|";
+            default:
+                return Program.binaryName(kind) + "(" + left + ", " + right + ")";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+import java.util.Arrays;
+
+import static com.github.alexdochioiu.k2jcompat.vector.K2JExpr.requireNonNull;
+
+/**
+ * Bulk {@code let} / {@code takeIf} / {@code takeUnless} over {@code int[]}, {@code long[]} and
+ * {@code double[]}, with the stages given as {@link K2JExpr}s and {@link K2JCondition}s instead of
+ * lambdas so they can run on whole blocks of values at once:
+ * <pre>
+ * int[] small = K2JVector.takeIf(values, x().gt(0).and(x().mul(3).lt(100)));
+ * double[] scaled = K2JVector.let(prices, x().mul(1.2).max(0.0));
+ * </pre>
+ * On Java 16+ with {@code --add-modules jdk.incubator.vector} the blocks run on the Vector API
+ * (see {@link #isVectorized()}), otherwise on plain loops. Both give exactly the same results.
+ * Setting the system property {@value #PROPERTY} to {@code false} forces the plain loops.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JVector {
+    public static final String PROPERTY = "k2j.vector";
+
+    private static final K2JExpr X = K2JExpr.x();
+
+    private K2JVector() {
+    }
+
+    /**
+     * @return the current element
+     */
+    public static K2JExpr x() {
+        return X;
+    }
+
+    public static K2JExpr constant(final long value) {
+        return K2JExpr.constant(value);
+    }
+
+    /**
+     * @return a constant which can only be used with {@code double[]}
+     */
+    public static K2JExpr constant(final double value) {
+        return K2JExpr.constant(value);
+    }
+
+    /**
+     * @return true if the bulk operations run on the Vector API
+     */
+    public static boolean isVectorized() {
+        return Kernels.CURRENT.vectorized;
+    }
+
+    public static int[] let(final int[] values, final K2JExpr expr) {
+        final int[] out = new int[requireNonNull(values).length];
+        letInto(values, expr, out);
+        return out;
+    }
+
+    /**
+     * Writes {@code expr} of {@code values[i]} to {@code out[i]}. {@code out} may be {@code values}.
+     *
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code values},
+     *                                  or a constant does not fit in an {@code int}
+     */
+    public static void letInto(final int[] values, final K2JExpr expr, final int[] out) {
+        checkCapacity(requireNonNull(values).length, requireNonNull(out).length);
+        requireNonNull(expr).program().let(Kernels.CURRENT.ints, values, out, values.length);
+    }
+
+    public static int[] takeIf(final int[] values, final K2JCondition condition) {
+        final int[] out = new int[requireNonNull(values).length];
+        return Arrays.copyOf(out, takeIfInto(values, condition, out));
+    }
+
+    /**
+     * Moves the values for which {@code condition} holds, in order, to the front of {@code out},
+     * which may be {@code values}. The rest of {@code out} is left with unspecified content.
+     *
+     * @return the number of values kept
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code values},
+     *                                  or a constant does not fit in an {@code int}
+     */
+    public static int takeIfInto(final int[] values, final K2JCondition condition, final int[] out) {
+        checkCapacity(requireNonNull(values).length, requireNonNull(out).length);
+        return requireNonNull(condition).program().takeIf(Kernels.CURRENT.ints, values, out, values.length);
+    }
+
+    public static int[] takeUnless(final int[] values, final K2JCondition condition) {
+        return takeIf(values, requireNonNull(condition).not());
+    }
+
+    public static int takeUnlessInto(final int[] values, final K2JCondition condition, final int[] out) {
+        return takeIfInto(values, requireNonNull(condition).not(), out);
+    }
+
+    public static long[] let(final long[] values, final K2JExpr expr) {
+        final long[] out = new long[requireNonNull(values).length];
+        letInto(values, expr, out);
+        return out;
+    }
+
+    /**
+     * Writes {@code expr} of {@code values[i]} to {@code out[i]}. {@code out} may be {@code values}.
+     *
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code values},
+     *                                  or a constant is a {@code double}
+     */
+    public static void letInto(final long[] values, final K2JExpr expr, final long[] out) {
+        checkCapacity(requireNonNull(values).length, requireNonNull(out).length);
+        requireNonNull(expr).program().let(Kernels.CURRENT.longs, values, out, values.length);
+    }
+
+    public static long[] takeIf(final long[] values, final K2JCondition condition) {
+        final long[] out = new long[requireNonNull(values).length];
+        return Arrays.copyOf(out, takeIfInto(values, condition, out));
+    }
+
+    /**
+     * Moves the values for which {@code condition} holds, in order, to the front of {@code out},
+     * which may be {@code values}. The rest of {@code out} is left with unspecified content.
+     *
+     * @return the number of values kept
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code values},
+     *                                  or a constant is a {@code double}
+     */
+    public static int takeIfInto(final long[] values, final K2JCondition condition, final long[] out) {
+        checkCapacity(requireNonNull(values).length, requireNonNull(out).length);
+        return requireNonNull(condition).program().takeIf(Kernels.CURRENT.longs, values, out, values.length);
+    }
+
+    public static long[] takeUnless(final long[] values, final K2JCondition condition) {
+        return takeIf(values, requireNonNull(condition).not());
+    }
+
+    public static int takeUnlessInto(final long[] values, final K2JCondition condition, final long[] out) {
+        return takeIfInto(values, requireNonNull(condition).not(), out);
+    }
+
+    public static double[] let(final double[] values, final K2JExpr expr) {
+        final double[] out = new double[requireNonNull(values).length];
+        letInto(values, expr, out);
+        return out;
+    }
+
+    /**
+     * Writes {@code expr} of {@code values[i]} to {@code out[i]}. {@code out} may be {@code values}.
+     *
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code values}
+     */
+    public static void letInto(final double[] values, final K2JExpr expr, final double[] out) {
+        checkCapacity(requireNonNull(values).length, requireNonNull(out).length);
+        requireNonNull(expr).program().let(Kernels.CURRENT.doubles, values, out, values.length);
+    }
+
+    public static double[] takeIf(final double[] values, final K2JCondition condition) {
+        final double[] out = new double[requireNonNull(values).length];
+        return Arrays.copyOf(out, takeIfInto(values, condition, out));
+    }
+
+    /**
+     * Moves the values for which {@code condition} holds, in order, to the front of {@code out},
+     * which may be {@code values}. The rest of {@code out} is left with unspecified content.
+     *
+     * @return the number of values kept
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code values}
+     */
+    public static int takeIfInto(final double[] values, final K2JCondition condition, final double[] out) {
+        checkCapacity(requireNonNull(values).length, requireNonNull(out).length);
+        return requireNonNull(condition).program().takeIf(Kernels.CURRENT.doubles, values, out, values.length);
+    }
+
+    public static double[] takeUnless(final double[] values, final K2JCondition condition) {
+        return takeIf(values, requireNonNull(condition).not());
+    }
+
+    public static int takeUnlessInto(final double[] values, final K2JCondition condition, final double[] out) {
+        return takeIfInto(values, requireNonNull(condition).not(), out);
+    }
+
+    private static void checkCapacity(final int length, final int capacity) {
+        if (capacity < length) {
+            throw new IllegalArgumentException("out has room for " + capacity + " values, needs " + length);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+/**
+ * The {@link Lanes} in use for each array type.
+ */
+final class Kernels {
+    static final Kernels SCALAR = new Kernels(new ScalarLanes.Ints(), new ScalarLanes.Longs(), new ScalarLanes.Doubles(), false);
+    static final Kernels CURRENT = KernelsLoader.load();
+
+    final Lanes<int[]> ints;
+    final Lanes<long[]> longs;
+    final Lanes<double[]> doubles;
+    final boolean vectorized;
+
+    Kernels(final Lanes<int[]> ints, final Lanes<long[]> longs, final Lanes<double[]> doubles, final boolean vectorized) {
+        this.ints = ints;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.vectorized = vectorized;
+    }
+}
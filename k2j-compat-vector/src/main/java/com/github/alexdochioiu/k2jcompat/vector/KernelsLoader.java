@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+/**
+ * Picks the {@link Kernels}. This version runs before Java 16 and always picks the scalar ones;
+ * {@code META-INF/versions/16} holds the one which can pick the Vector API.
+ */
+final class KernelsLoader {
+
+    private KernelsLoader() {
+    }
+
+    static Kernels load() {
+        return Kernels.SCALAR;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+/**
+ * Lanewise kernels for one primitive array type {@code A}. Every kernel works on the index range
+ * {@code [from, to)} of its arrays, so a SIMD implementation can handle the bulk of the range and
+ * pass the tail to the scalar one.
+ */
+abstract class Lanes<A> {
+
+    abstract A newArray(int length);
+
+    /**
+     * @throws IllegalArgumentException if {@code constant} cannot be represented by this type
+     */
+    abstract void fill(A array, K2JExpr constant);
+
+    abstract void binary(int operation, A a, A b, A destination, int from, int to);
+
+    abstract void unary(int operation, A a, A destination, int from, int to);
+
+    abstract void compare(int comparison, A a, A b, boolean[] destination, int from, int to);
+
+    /**
+     * Copies {@code in[inFrom + i]} to {@code out}, starting at {@code outFrom}, for every
+     * {@code i < count} with {@code keep[i]}. {@code outFrom} must not be above {@code inFrom}.
+     *
+     * @return the index after the last element copied
+     */
+    abstract int compact(A in, int inFrom, boolean[] keep, A out, int outFrom, int count);
+}
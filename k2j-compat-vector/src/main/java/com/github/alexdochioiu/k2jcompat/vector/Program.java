@@ -0,0 +1,322 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link K2JExpr} or {@link K2JCondition} flattened into register instructions. Each
+ * instruction runs over a whole block of elements before the next one starts, so every
+ * {@link Lanes} call is one tight loop over primitive arrays which the JIT (or the Vector API)
+ * can keep in SIMD registers.
+ */
+final class Program {
+    // binary operations
+    static final int ADD = 0;
+    static final int SUB = 1;
+    static final int MUL = 2;
+    static final int MIN = 3;
+    static final int MAX = 4;
+    // unary operations
+    static final int NEG = 5;
+    static final int ABS = 6;
+    // comparisons
+    static final int EQ = 0;
+    static final int NE = 1;
+    static final int LT = 2;
+    static final int LE = 3;
+    static final int GT = 4;
+    static final int GE = 5;
+
+    private static final String[] BINARY_NAMES = {"add", "sub", "mul", "min", "max"};
+    private static final String[] COMPARISON_NAMES = {"==", "!=", "<", "<=", ">", ">="};
+
+    /**
+     * Elements per block. Small enough for all registers of a typical program to stay in L1.
+     */
+    static final int BLOCK = 1024;
+
+    // instructions, each one {opcode, operation, destination, a, b}
+    private static final int BINARY = 0;
+    private static final int UNARY = 1;
+    private static final int COMPARE = 2;
+    private static final int AND = 3;
+    private static final int OR = 4;
+    private static final int NOT = 5;
+    private static final int WIDTH = 5;
+
+    /**
+     * Value register holding the current elements.
+     */
+    private static final int X_REGISTER = 0;
+
+    private final int[] code;
+    private final int valueRegisters;
+    private final int maskRegisters;
+    private final int[] constantRegisters;
+    private final K2JExpr[] constants;
+    private final int result;
+    private final boolean condition;
+    private final ThreadLocal<Registers> registers = new ThreadLocal<>();
+
+    private Program(final int[] code,
+                    final int valueRegisters,
+                    final int maskRegisters,
+                    final int[] constantRegisters,
+                    final K2JExpr[] constants,
+                    final int result,
+                    final boolean condition) {
+        this.code = code;
+        this.valueRegisters = valueRegisters;
+        this.maskRegisters = maskRegisters;
+        this.constantRegisters = constantRegisters;
+        this.constants = constants;
+        this.result = result;
+        this.condition = condition;
+    }
+
+    static Program compile(final K2JExpr expr) {
+        final Compiler compiler = new Compiler();
+        return compiler.build(compiler.value(expr), false);
+    }
+
+    static Program compile(final K2JCondition condition) {
+        final Compiler compiler = new Compiler();
+        return compiler.build(compiler.mask(condition), true);
+    }
+
+    static String binaryName(final int operation) {
+        return BINARY_NAMES[operation];
+    }
+
+    static String comparisonName(final int comparison) {
+        return COMPARISON_NAMES[comparison];
+    }
+
+    /**
+     * Writes the value of this expression for {@code in[i]} to {@code out[i]}, for every
+     * {@code i < length}. {@code out} may be {@code in}.
+     */
+    <A> void let(final Lanes<A> lanes, final A in, final A out, final int length) {
+        if (condition) {
+            throw new IllegalStateException("Not an expression");
+        }
+        final Registers registers = registers(lanes);
+        final Object[] values = registers.values;
+        final boolean[][] masks = registers.masks;
+        for (int from = 0; from < length; from += BLOCK) {
+            final int count = Math.min(BLOCK, length - from);
+            execute(lanes, in, from, count, values, masks);
+            System.arraycopy(values[result], 0, out, from, count);
+        }
+    }
+
+    /**
+     * Moves the elements of {@code in} for which this condition holds, in order, to the front of
+     * {@code out}. {@code out} may be {@code in}.
+     *
+     * @return the number of elements kept
+     */
+    <A> int takeIf(final Lanes<A> lanes, final A in, final A out, final int length) {
+        if (!condition) {
+            throw new IllegalStateException("Not a condition");
+        }
+        final Registers registers = registers(lanes);
+        final Object[] values = registers.values;
+        final boolean[][] masks = registers.masks;
+        int kept = 0;
+        for (int from = 0; from < length; from += BLOCK) {
+            final int count = Math.min(BLOCK, length - from);
+            execute(lanes, in, from, count, values, masks);
+            kept = lanes.compact(in, from, masks[result], out, kept, count);
+        }
+        return kept;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A> Registers registers(final Lanes<A> lanes) {
+        Registers current = registers.get();
+        if (current == null || current.lanes != lanes) {
+            final Object[] values = new Object[valueRegisters];
+            for (int i = 0; i < valueRegisters; i++) {
+                values[i] = lanes.newArray(BLOCK);
+            }
+            // constants are the same in every block and every call, so they are only filled once
+            for (int i = 0; i < constants.length; i++) {
+                lanes.fill((A) values[constantRegisters[i]], constants[i]);
+            }
+            current = new Registers(lanes, values, new boolean[maskRegisters][BLOCK]);
+            registers.set(current);
+        }
+        return current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A> void execute(final Lanes<A> lanes,
+                             final A in,
+                             final int from,
+                             final int count,
+                             final Object[] values,
+                             final boolean[][] masks) {
+        System.arraycopy(in, from, values[X_REGISTER], 0, count);
+        for (int pc = 0; pc < code.length; pc += WIDTH) {
+            final int operation = code[pc + 1];
+            final int destination = code[pc + 2];
+            final int a = code[pc + 3];
+            final int b = code[pc + 4];
+            switch (code[pc]) {
+                case BINARY:
+                    lanes.binary(operation, (A) values[a], (A) values[b], (A) values[destination], 0, count);
+                    break;
+                case UNARY:
+                    lanes.unary(operation, (A) values[a], (A) values[destination], 0, count);
+                    break;
+                case COMPARE:
+                    lanes.compare(operation, (A) values[a], (A) values[b], masks[destination], 0, count);
+                    break;
+                case AND:
+                    and(masks[a], masks[b], masks[destination], count);
+                    break;
+                case OR:
+                    or(masks[a], masks[b], masks[destination], count);
+                    break;
+                case NOT:
+                    not(masks[a], masks[destination], count);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown instruction " + code[pc]);
+            }
+        }
+    }
+
+    private static void and(final boolean[] a, final boolean[] b, final boolean[] destination, final int count) {
+        for (int i = 0; i < count; i++) {
+            destination[i] = a[i] & b[i];
+        }
+    }
+
+    private static void or(final boolean[] a, final boolean[] b, final boolean[] destination, final int count) {
+        for (int i = 0; i < count; i++) {
+            destination[i] = a[i] | b[i];
+        }
+    }
+
+    private static void not(final boolean[] a, final boolean[] destination, final int count) {
+        for (int i = 0; i < count; i++) {
+            destination[i] = !a[i];
+        }
+    }
+
+    /**
+     * The registers of one thread, kept between calls since allocating and filling them costs more
+     * than running the whole program on a small array.
+     */
+    private static final class Registers {
+        final Lanes<?> lanes;
+        final Object[] values;
+        final boolean[][] masks;
+
+        Registers(final Lanes<?> lanes, final Object[] values, final boolean[][] masks) {
+            this.lanes = lanes;
+            this.values = values;
+            this.masks = masks;
+        }
+    }
+
+    private static final class Compiler {
+        private int[] code = new int[4 * WIDTH];
+        private int size;
+        private int valueRegisters = X_REGISTER + 1;
+        private int maskRegisters;
+        private final List<K2JExpr> constants = new ArrayList<>();
+        private final List<Integer> constantRegisters = new ArrayList<>();
+
+        int value(final K2JExpr expr) {
+            switch (expr.kind) {
+                case K2JExpr.X:
+                    return X_REGISTER;
+                case K2JExpr.CONSTANT: {
+                    final int register = valueRegisters++;
+                    constants.add(expr);
+                    constantRegisters.add(register);
+                    return register;
+                }
+                case NEG:
+                case ABS: {
+                    final int a = value(expr.left);
+                    final int destination = valueRegisters++;
+                    emit(UNARY, expr.kind, destination, a, 0);
+                    return destination;
+                }
+                default: {
+                    final int a = value(expr.left);
+                    final int b = value(expr.right);
+                    final int destination = valueRegisters++;
+                    emit(BINARY, expr.kind, destination, a, b);
+                    return destination;
+                }
+            }
+        }
+
+        int mask(final K2JCondition condition) {
+            switch (condition.kind) {
+                case K2JCondition.AND:
+                case K2JCondition.OR: {
+                    final int a = mask(condition.left);
+                    final int b = mask(condition.right);
+                    final int destination = maskRegisters++;
+                    emit(condition.kind == K2JCondition.AND ? AND : OR, 0, destination, a, b);
+                    return destination;
+                }
+                case K2JCondition.NOT: {
+                    final int a = mask(condition.left);
+                    final int destination = maskRegisters++;
+                    emit(NOT, 0, destination, a, 0);
+                    return destination;
+                }
+                default: {
+                    final int a = value(condition.leftValue);
+                    final int b = value(condition.rightValue);
+                    final int destination = maskRegisters++;
+                    emit(COMPARE, condition.kind, destination, a, b);
+                    return destination;
+                }
+            }
+        }
+
+        Program build(final int result, final boolean condition) {
+            final int[] registers = new int[constantRegisters.size()];
+            for (int i = 0; i < registers.length; i++) {
+                registers[i] = constantRegisters.get(i);
+            }
+            return new Program(Arrays.copyOf(code, size), valueRegisters, maskRegisters, registers,
+                    constants.toArray(new K2JExpr[0]), result, condition);
+        }
+
+        private void emit(final int opcode, final int operation, final int destination, final int a, final int b) {
+            if (size + WIDTH > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[size++] = opcode;
+            code[size++] = operation;
+            code[size++] = destination;
+            code[size++] = a;
+            code[size++] = b;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+import java.util.Arrays;
+
+/**
+ * Plain loop {@link Lanes}, used when the Vector API is not available and for the tails of the
+ * vectorized kernels. Kept simple enough for C2 to auto-vectorize most of them.
+ */
+final class ScalarLanes {
+
+    private ScalarLanes() {
+    }
+
+    static class Ints extends Lanes<int[]> {
+
+        @Override
+        final int[] newArray(final int length) {
+            return new int[length];
+        }
+
+        @Override
+        final void fill(final int[] array, final K2JExpr constant) {
+            Arrays.fill(array, constant.intValue());
+        }
+
+        @Override
+        void binary(final int operation, final int[] a, final int[] b, final int[] destination, final int from, final int to) {
+            switch (operation) {
+                case Program.ADD:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] + b[i];
+                    }
+                    break;
+                case Program.SUB:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] - b[i];
+                    }
+                    break;
+                case Program.MUL:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] * b[i];
+                    }
+                    break;
+                case Program.MIN:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.min(a[i], b[i]);
+                    }
+                    break;
+                case Program.MAX:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.max(a[i], b[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        @Override
+        void unary(final int operation, final int[] a, final int[] destination, final int from, final int to) {
+            switch (operation) {
+                case Program.NEG:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = -a[i];
+                    }
+                    break;
+                case Program.ABS:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.abs(a[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        @Override
+        void compare(final int comparison, final int[] a, final int[] b, final boolean[] destination, final int from, final int to) {
+            switch (comparison) {
+                case Program.EQ:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] == b[i];
+                    }
+                    break;
+                case Program.NE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] != b[i];
+                    }
+                    break;
+                case Program.LT:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] < b[i];
+                    }
+                    break;
+                case Program.LE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] <= b[i];
+                    }
+                    break;
+                case Program.GT:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] > b[i];
+                    }
+                    break;
+                case Program.GE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] >= b[i];
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown comparison " + comparison);
+            }
+        }
+
+        @Override
+        final int compact(final int[] in, final int inFrom, final boolean[] keep, final int[] out, final int outFrom, final int count) {
+            int next = outFrom;
+            for (int i = 0; i < count; i++) {
+                // branchless: always write, only advance past the elements kept
+                out[next] = in[inFrom + i];
+                next += keep[i] ? 1 : 0;
+            }
+            return next;
+        }
+    }
+
+    static class Longs extends Lanes<long[]> {
+
+        @Override
+        final long[] newArray(final int length) {
+            return new long[length];
+        }
+
+        @Override
+        final void fill(final long[] array, final K2JExpr constant) {
+            Arrays.fill(array, constant.longValue());
+        }
+
+        @Override
+        void binary(final int operation, final long[] a, final long[] b, final long[] destination, final int from, final int to) {
+            switch (operation) {
+                case Program.ADD:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] + b[i];
+                    }
+                    break;
+                case Program.SUB:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] - b[i];
+                    }
+                    break;
+                case Program.MUL:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] * b[i];
+                    }
+                    break;
+                case Program.MIN:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.min(a[i], b[i]);
+                    }
+                    break;
+                case Program.MAX:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.max(a[i], b[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        @Override
+        void unary(final int operation, final long[] a, final long[] destination, final int from, final int to) {
+            switch (operation) {
+                case Program.NEG:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = -a[i];
+                    }
+                    break;
+                case Program.ABS:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.abs(a[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        @Override
+        void compare(final int comparison, final long[] a, final long[] b, final boolean[] destination, final int from, final int to) {
+            switch (comparison) {
+                case Program.EQ:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] == b[i];
+                    }
+                    break;
+                case Program.NE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] != b[i];
+                    }
+                    break;
+                case Program.LT:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] < b[i];
+                    }
+                    break;
+                case Program.LE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] <= b[i];
+                    }
+                    break;
+                case Program.GT:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] > b[i];
+                    }
+                    break;
+                case Program.GE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] >= b[i];
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown comparison " + comparison);
+            }
+        }
+
+        @Override
+        final int compact(final long[] in, final int inFrom, final boolean[] keep, final long[] out, final int outFrom, final int count) {
+            int next = outFrom;
+            for (int i = 0; i < count; i++) {
+                // branchless: always write, only advance past the elements kept
+                out[next] = in[inFrom + i];
+                next += keep[i] ? 1 : 0;
+            }
+            return next;
+        }
+    }
+
+    static class Doubles extends Lanes<double[]> {
+
+        @Override
+        final double[] newArray(final int length) {
+            return new double[length];
+        }
+
+        @Override
+        final void fill(final double[] array, final K2JExpr constant) {
+            Arrays.fill(array, constant.doubleValue());
+        }
+
+        @Override
+        void binary(final int operation, final double[] a, final double[] b, final double[] destination, final int from, final int to) {
+            switch (operation) {
+                case Program.ADD:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] + b[i];
+                    }
+                    break;
+                case Program.SUB:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] - b[i];
+                    }
+                    break;
+                case Program.MUL:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] * b[i];
+                    }
+                    break;
+                case Program.MIN:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.min(a[i], b[i]);
+                    }
+                    break;
+                case Program.MAX:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.max(a[i], b[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        @Override
+        void unary(final int operation, final double[] a, final double[] destination, final int from, final int to) {
+            switch (operation) {
+                case Program.NEG:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = -a[i];
+                    }
+                    break;
+                case Program.ABS:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = Math.abs(a[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        @Override
+        void compare(final int comparison, final double[] a, final double[] b, final boolean[] destination, final int from, final int to) {
+            switch (comparison) {
+                case Program.EQ:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] == b[i];
+                    }
+                    break;
+                case Program.NE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] != b[i];
+                    }
+                    break;
+                case Program.LT:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] < b[i];
+                    }
+                    break;
+                case Program.LE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] <= b[i];
+                    }
+                    break;
+                case Program.GT:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] > b[i];
+                    }
+                    break;
+                case Program.GE:
+                    for (int i = from; i < to; i++) {
+                        destination[i] = a[i] >= b[i];
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown comparison " + comparison);
+            }
+        }
+
+        @Override
+        final int compact(final double[] in, final int inFrom, final boolean[] keep, final double[] out, final int outFrom, final int count) {
+            int next = outFrom;
+            for (int i = 0; i < count; i++) {
+                // branchless: always write, only advance past the elements kept
+                out[next] = in[inFrom + i];
+                next += keep[i] ? 1 : 0;
+            }
+            return next;
+        }
+    }
+}
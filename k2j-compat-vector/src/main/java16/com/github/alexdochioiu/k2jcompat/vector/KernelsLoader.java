@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+/**
+ * Picks the {@link VectorLanes} when {@code jdk.incubator.vector} was added to the boot layer
+ * and {@value K2JVector#PROPERTY} is not {@code false}, the {@link ScalarLanes} otherwise.
+ */
+final class KernelsLoader {
+
+    private KernelsLoader() {
+    }
+
+    static Kernels load() {
+        if ("false".equals(System.getProperty(K2JVector.PROPERTY))
+                || !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return Kernels.SCALAR;
+        }
+        try {
+            return VectorLanes.kernels();
+        } catch (LinkageError e) {
+            // the incubator API changed under us, the scalar kernels give the same results
+            return Kernels.SCALAR;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Lanes} running on the Vector API with the preferred species of the CPU. Every operation
+ * is its own loop with a constant operator, which C2 compiles to plain SIMD instructions; the
+ * tails shorter than a vector go to {@link ScalarLanes}.
+ */
+final class VectorLanes {
+
+    private VectorLanes() {
+    }
+
+    static Kernels kernels() {
+        return new Kernels(new Ints(), new Longs(), new Doubles(), true);
+    }
+
+    static final class Ints extends ScalarLanes.Ints {
+        private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+        @Override
+        void binary(final int operation, final int[] a, final int[] b, final int[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (operation) {
+                case Program.ADD:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.ADD, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.SUB:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.SUB, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MUL:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MUL, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MIN:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MIN, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MAX:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MAX, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.binary(operation, a, b, destination, i, to);
+        }
+
+        @Override
+        void unary(final int operation, final int[] a, final int[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (operation) {
+                case Program.NEG:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.NEG)
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.ABS:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.ABS)
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.unary(operation, a, destination, i, to);
+        }
+
+        @Override
+        void compare(final int comparison, final int[] a, final int[] b, final boolean[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (comparison) {
+                case Program.EQ:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.EQ, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.NE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.NE, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.LT:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.LT, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.LE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.LE, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.GT:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.GT, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.GE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        IntVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.GE, IntVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.compare(comparison, a, b, destination, i, to);
+        }
+    }
+
+    static final class Longs extends ScalarLanes.Longs {
+        private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+        @Override
+        void binary(final int operation, final long[] a, final long[] b, final long[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (operation) {
+                case Program.ADD:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.ADD, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.SUB:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.SUB, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MUL:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MUL, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MIN:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MIN, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MAX:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MAX, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.binary(operation, a, b, destination, i, to);
+        }
+
+        @Override
+        void unary(final int operation, final long[] a, final long[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (operation) {
+                case Program.NEG:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.NEG)
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.ABS:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.ABS)
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.unary(operation, a, destination, i, to);
+        }
+
+        @Override
+        void compare(final int comparison, final long[] a, final long[] b, final boolean[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (comparison) {
+                case Program.EQ:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.EQ, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.NE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.NE, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.LT:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.LT, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.LE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.LE, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.GT:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.GT, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.GE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        LongVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.GE, LongVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.compare(comparison, a, b, destination, i, to);
+        }
+    }
+
+    static final class Doubles extends ScalarLanes.Doubles {
+        private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+        @Override
+        void binary(final int operation, final double[] a, final double[] b, final double[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (operation) {
+                case Program.ADD:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.ADD, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.SUB:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.SUB, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MUL:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MUL, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MIN:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MIN, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.MAX:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.MAX, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.binary(operation, a, b, destination, i, to);
+        }
+
+        @Override
+        void unary(final int operation, final double[] a, final double[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (operation) {
+                case Program.NEG:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.NEG)
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.ABS:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .lanewise(VectorOperators.ABS)
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.unary(operation, a, destination, i, to);
+        }
+
+        @Override
+        void compare(final int comparison, final double[] a, final double[] b, final boolean[] destination, final int from, final int to) {
+            final int bound = from + SPECIES.loopBound(to - from);
+            int i = from;
+            switch (comparison) {
+                case Program.EQ:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.EQ, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.NE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.NE, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.LT:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.LT, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.LE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.LE, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.GT:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.GT, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                case Program.GE:
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector.fromArray(SPECIES, a, i)
+                                .compare(VectorOperators.GE, DoubleVector.fromArray(SPECIES, b, i))
+                                .intoArray(destination, i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            super.compare(comparison, a, b, destination, i, to);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.vector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongPredicate;
+
+import static com.github.alexdochioiu.k2jcompat.vector.K2JVector.constant;
+import static com.github.alexdochioiu.k2jcompat.vector.K2JVector.x;
+
+public class K2JVectorTest {
+    // crosses the block size and leaves tails shorter than any vector
+    private static final int[] LENGTHS = {0, 1, 7, 64, Program.BLOCK - 1, Program.BLOCK, Program.BLOCK + 3, 3 * Program.BLOCK + 17};
+
+    @Test
+    public void letInt_matchesLoop() {
+        for (final int length : LENGTHS) {
+            final int[] values = randomInts(length, 1);
+            assertLet(values, x().mul(3).add(7), (it) -> it * 3 + 7);
+            assertLet(values, x().sub(x().abs()).neg(), (it) -> -(it - Math.abs(it)));
+            assertLet(values, x().min(100).max(-100), (it) -> Math.max(Math.min(it, 100), -100));
+            assertLet(values, constant(5), (it) -> 5);
+            assertLet(values, x(), (it) -> it);
+        }
+    }
+
+    @Test
+    public void letInt_wrapsAroundOnOverflow() {
+        final int[] values = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+        Assert.assertArrayEquals(new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE + 1}, K2JVector.let(values, x().add(1)));
+        Assert.assertArrayEquals(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE}, K2JVector.let(values, x().abs()));
+    }
+
+    @Test
+    public void letLong_matchesLoop() {
+        final long[] values = randomLongs(2000, 2);
+        final long[] expected = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            expected[i] = Math.max(values[i] * 31 - (1L << 40), values[i]);
+        }
+
+        Assert.assertArrayEquals(expected, K2JVector.let(values, x().mul(31).sub(1L << 40).max(x())));
+    }
+
+    @Test
+    public void letDouble_matchesLoop() {
+        final double[] values = randomDoubles(2000, 3);
+        final double[] expected = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            expected[i] = Math.abs(values[i] * 1.5 - 2) + Math.min(values[i], 0.25);
+        }
+
+        Assert.assertArrayEquals(expected, K2JVector.let(values, x().mul(1.5).sub(2).abs().add(x().min(0.25))), 0);
+    }
+
+    @Test
+    public void takeIfInt_matchesLoop() {
+        for (final int length : LENGTHS) {
+            final int[] values = randomInts(length, 4);
+            assertTakeIf(values, x().gt(0), (it) -> it > 0);
+            assertTakeIf(values, x().ge(-10).and(x().le(10)), (it) -> it >= -10 && it <= 10);
+            assertTakeIf(values, x().mul(3).lt(x().add(5)).or(x().eq(0)), (it) -> it * 3 < it + 5 || it == 0);
+            assertTakeIf(values, x().ne(1).not(), (it) -> it == 1);
+            assertTakeIf(values, constant(1).eq(1), (it) -> true);
+        }
+    }
+
+    @Test
+    public void takeUnlessInt_keepsTheOthers() {
+        final int[] values = randomInts(5000, 5);
+        final int[] expected = Arrays.stream(values).filter((it) -> !(it > 0 && it < 500)).toArray();
+
+        Assert.assertArrayEquals(expected, K2JVector.takeUnless(values, x().gt(0).and(x().lt(500))));
+    }
+
+    @Test
+    public void takeIfLong_matchesLoop() {
+        final long[] values = randomLongs(3000, 6);
+        assertTakeIf(values, x().lt(0).or(x().gt(Long.MAX_VALUE / 2)), (it) -> it < 0 || it > Long.MAX_VALUE / 2);
+        assertTakeIf(values, x().neg().ge(x()), (it) -> -it >= it);
+    }
+
+    @Test
+    public void takeIfDouble_handlesNaNLikeJava() {
+        final double[] values = {1, Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, 3.5, Double.NaN};
+
+        assertTakeIf(values, x().lt(2.0), (it) -> it < 2.0);
+        assertTakeIf(values, x().ne(x()), (it) -> it != it);
+        assertTakeIf(values, x().eq(0.0), (it) -> it == 0.0);
+        assertTakeIf(values, x().lt(2.0).not(), (it) -> !(it < 2.0));
+        Assert.assertArrayEquals(new double[]{1, 3.5}, K2JVector.takeUnless(values, x().le(0).or(x().ne(x()))), 0);
+    }
+
+    @Test
+    public void into_canReuseTheInputArray() {
+        final int[] values = {5, -1, 8, -3, 2};
+
+        K2JVector.letInto(values, x().mul(2), values);
+        Assert.assertArrayEquals(new int[]{10, -2, 16, -6, 4}, values);
+
+        final int kept = K2JVector.takeIfInto(values, x().gt(0), values);
+        Assert.assertEquals(3, kept);
+        Assert.assertArrayEquals(new int[]{10, 16, 4}, Arrays.copyOf(values, kept));
+
+        Assert.assertEquals(2, K2JVector.takeUnlessInto(Arrays.copyOf(values, kept), x().eq(16), values));
+        Assert.assertArrayEquals(new int[]{10, 4}, Arrays.copyOf(values, 2));
+    }
+
+    @Test
+    public void shortOutput_isRejected() {
+        try {
+            K2JVector.takeIfInto(new long[4], x().gt(0), new long[3]);
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void constantsWhichDoNotFit_areRejected() {
+        assertRejected(() -> K2JVector.let(new int[1], x().add(1.5)));
+        assertRejected(() -> K2JVector.let(new int[1], x().add(1L << 32)));
+        assertRejected(() -> K2JVector.takeIf(new long[1], x().lt(2.0)));
+
+        Assert.assertArrayEquals(new long[]{(1L << 32) + 1}, K2JVector.let(new long[]{1}, x().add(1L << 32)));
+        Assert.assertArrayEquals(new double[]{3}, K2JVector.let(new double[]{1}, x().add(2)), 0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullExpression_throws() {
+        K2JVector.let(new int[1], null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullOperand_throws() {
+        x().add((K2JExpr) null);
+    }
+
+    @Test
+    public void toString_isReadable() {
+        Assert.assertEquals("(add(x, 1) > 0 && !|x| < 2.5)", x().add(1).gt(0).and(x().abs().lt(2.5).not()).toString());
+    }
+
+    @Test
+    public void loadedKernels_matchScalarKernels() {
+        final Kernels loaded = Kernels.CURRENT;
+        final Kernels scalar = Kernels.SCALAR;
+        final int length = 1000;
+        final int[] intsA = randomInts(length, 7);
+        final int[] intsB = randomInts(length, 8);
+        final long[] longsA = randomLongs(length, 9);
+        final long[] longsB = randomLongs(length, 10);
+        final double[] doublesA = randomDoubles(length, 11);
+        final double[] doublesB = randomDoubles(length, 12);
+        // equal lanes, so comparisons see both outcomes
+        System.arraycopy(intsA, 0, intsB, 0, 100);
+        System.arraycopy(longsA, 0, longsB, 0, 100);
+        System.arraycopy(doublesA, 0, doublesB, 0, 100);
+
+        for (int operation = Program.ADD; operation <= Program.MAX; operation++) {
+            Assert.assertArrayEquals(binary(scalar.ints, operation, intsA, intsB), binary(loaded.ints, operation, intsA, intsB));
+            Assert.assertArrayEquals(binary(scalar.longs, operation, longsA, longsB), binary(loaded.longs, operation, longsA, longsB));
+            Assert.assertArrayEquals(binary(scalar.doubles, operation, doublesA, doublesB), binary(loaded.doubles, operation, doublesA, doublesB), 0);
+        }
+        for (int operation = Program.NEG; operation <= Program.ABS; operation++) {
+            Assert.assertArrayEquals(unary(scalar.ints, operation, intsA), unary(loaded.ints, operation, intsA));
+            Assert.assertArrayEquals(unary(scalar.longs, operation, longsA), unary(loaded.longs, operation, longsA));
+            Assert.assertArrayEquals(unary(scalar.doubles, operation, doublesA), unary(loaded.doubles, operation, doublesA), 0);
+        }
+        for (int comparison = Program.EQ; comparison <= Program.GE; comparison++) {
+            Assert.assertArrayEquals(compare(scalar.ints, comparison, intsA, intsB), compare(loaded.ints, comparison, intsA, intsB));
+            Assert.assertArrayEquals(compare(scalar.longs, comparison, longsA, longsB), compare(loaded.longs, comparison, longsA, longsB));
+            Assert.assertArrayEquals(compare(scalar.doubles, comparison, doublesA, doublesB), compare(loaded.doubles, comparison, doublesA, doublesB));
+        }
+    }
+
+    private static <A> A binary(final Lanes<A> lanes, final int operation, final A a, final A b) {
+        final A destination = lanes.newArray(Array.getLength(a));
+        lanes.binary(operation, a, b, destination, 3, Array.getLength(a));
+        return destination;
+    }
+
+    private static <A> A unary(final Lanes<A> lanes, final int operation, final A a) {
+        final A destination = lanes.newArray(Array.getLength(a));
+        lanes.unary(operation, a, destination, 3, Array.getLength(a));
+        return destination;
+    }
+
+    private static <A> boolean[] compare(final Lanes<A> lanes, final int comparison, final A a, final A b) {
+        final boolean[] destination = new boolean[Array.getLength(a)];
+        lanes.compare(comparison, a, b, destination, 3, destination.length);
+        return destination;
+    }
+
+    private static void assertLet(final int[] values, final K2JExpr expr, final IntUnaryOperator expected) {
+        Assert.assertArrayEquals(expr.toString(), Arrays.stream(values).map(expected).toArray(), K2JVector.let(values, expr));
+    }
+
+    private static void assertTakeIf(final int[] values, final K2JCondition condition, final IntPredicate expected) {
+        Assert.assertArrayEquals(condition.toString(), Arrays.stream(values).filter(expected).toArray(), K2JVector.takeIf(values, condition));
+        Assert.assertArrayEquals(condition.toString(), Arrays.stream(values).filter(expected.negate()).toArray(), K2JVector.takeUnless(values, condition));
+    }
+
+    private static void assertTakeIf(final long[] values, final K2JCondition condition, final LongPredicate expected) {
+        Assert.assertArrayEquals(condition.toString(), Arrays.stream(values).filter(expected).toArray(), K2JVector.takeIf(values, condition));
+    }
+
+    private static void assertTakeIf(final double[] values, final K2JCondition condition, final DoublePredicate expected) {
+        Assert.assertArrayEquals(condition.toString(), Arrays.stream(values).filter(expected).toArray(), K2JVector.takeIf(values, condition), 0);
+    }
+
+    private static void assertRejected(final Runnable runnable) {
+        try {
+            runnable.run();
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    private static int[] randomInts(final int length, final long seed) {
+        final int[] values = new Random(seed).ints(length, -1000, 1000).toArray();
+        if (length > 2) {
+            values[0] = Integer.MIN_VALUE;
+            values[1] = Integer.MAX_VALUE;
+        }
+        return values;
+    }
+
+    private static long[] randomLongs(final int length, final long seed) {
+        final long[] values = new Random(seed).longs(length).toArray();
+        if (length > 2) {
+            values[0] = Long.MIN_VALUE;
+            values[1] = 0;
+        }
+        return values;
+    }
+
+    private static double[] randomDoubles(final int length, final long seed) {
+        final double[] values = new Random(seed).doubles(length, -10, 10).toArray();
+        if (length > 4) {
+            values[0] = Double.NaN;
+            values[1] = -0.0;
+            values[2] = 0.0;
+            values[3] = Double.NEGATIVE_INFINITY;
+        }
+        return values;
+    }
+}
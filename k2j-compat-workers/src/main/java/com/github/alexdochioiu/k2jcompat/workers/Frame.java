@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message between the parent and a worker, sent over the worker's loopback connection: a tag, a
+ * batch id and a length-prefixed payload. Values travel as one serialized {@code Object[]} per
+ * batch, so every batch starts from a fresh object stream.
+ * <p>
+ * A connection starts with a preamble from the worker, holding {@link #MAGIC}, the token the
+ * parent wrote to its stdin and its index, so the parent never takes anything else for a worker.
+ */
+final class Frame {
+    /** Parent to worker: the plan, written by {@link K2JPlan#writeTo}. */
+    static final byte PLAN = 1;
+    /** Parent to worker: the inputs of a batch. */
+    static final byte BATCH = 2;
+    /** Parent to worker: no more batches. */
+    static final byte SHUTDOWN = 3;
+    /** Worker to parent: the plan was built. */
+    static final byte READY = 4;
+    /** Worker to parent: the results of a batch, in the order of its inputs. */
+    static final byte RESULT = 5;
+    /** Worker to parent: the plan or a batch failed, with the stack trace as the payload. */
+    static final byte ERROR = 6;
+
+    /** Batch id of the frames which are not about a batch. */
+    static final int NO_BATCH = -1;
+
+    /** "K2JW", first in the preamble. */
+    static final int MAGIC = 0x4B324A57;
+    /** Payloads above this size are refused, so a corrupt length never becomes a huge allocation. */
+    static final int MAX_PAYLOAD = 1 << 30;
+
+    final byte tag;
+    final int batch;
+    final byte[] payload;
+
+    private Frame(final byte tag, final int batch, final byte[] payload) {
+        this.tag = tag;
+        this.batch = batch;
+        this.payload = payload;
+    }
+
+    static void write(final DataOutputStream out, final byte tag, final int batch, final byte[] payload) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(batch);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * @return the next frame, or null if the other side closed the stream between frames
+     */
+    static Frame read(final DataInputStream in) throws IOException {
+        final int tag = in.read();
+        if (tag < 0) {
+            return null;
+        }
+        if (tag < PLAN || tag > ERROR) {
+            throw new IOException("unknown frame tag " + tag);
+        }
+        final int batch = in.readInt();
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("frame length out of range: " + length);
+        }
+        final byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame((byte) tag, batch, payload);
+    }
+
+    static void writePreamble(final DataOutputStream out, final long token, final int index) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(token);
+        out.writeInt(index);
+        out.flush();
+    }
+
+    /**
+     * @return the worker index from the preamble
+     * @throws IOException if the other side is not a worker given {@code token}
+     */
+    static int readPreamble(final DataInputStream in, final long token) throws IOException {
+        if (in.readInt() != MAGIC || in.readLong() != token) {
+            throw new IOException("not a K2J worker");
+        }
+        return in.readInt();
+    }
+
+    static byte[] serialize(final Object[] values) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(values);
+        }
+        if (bytes.size() > MAX_PAYLOAD) {
+            throw new IOException("a batch takes " + bytes.size() + " bytes serialized, above the limit of " + MAX_PAYLOAD);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object[] deserialize(final byte[] payload) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (Object[]) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("cannot read a batch", e);
+        }
+    }
+
+    static byte[] text(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] stackTrace(final Throwable error) {
+        final StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace, true));
+        return text(trace.toString());
+    }
+
+    String payloadText() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
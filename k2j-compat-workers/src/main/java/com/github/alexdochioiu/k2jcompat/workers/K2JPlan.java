@@ -0,0 +1,281 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+import com.github.alexdochioiu.k2jcompat.K2JPipeline;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.ServiceLoader;
+
+/**
+ * A {@link K2JPipeline} written down as stage names and string parameters instead of lambdas, so
+ * it can be sent to another JVM and built there.
+ * <pre>
+ * final K2JPlan&lt;String, Integer&gt; plan = K2JPlan.&lt;String&gt;start()
+ *         .&lt;String&gt;_let("trim")
+ *         ._takeIf("longerThan", "3")
+ *         .&lt;Integer&gt;_let("parseInt");
+ * </pre>
+ * The names are looked up in the {@link K2JStageLibrary}s of the JVM that builds the plan, by
+ * {@link #toPipeline()}. Every operation has the same null semantics as its {@link K2JPipeline}
+ * counterpart. Plans are immutable, so a partially built plan can be shared and extended.
+ *
+ * @param <T> the input type
+ * @param <R> the result type
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JPlan<T, R> {
+    private static final int LET = 0;
+    private static final int NULL_SAFE_LET = 1;
+    private static final int ALSO = 2;
+    private static final int NULL_SAFE_ALSO = 3;
+    private static final int TAKE_IF = 4;
+    private static final int NULL_SAFE_TAKE_IF = 5;
+    private static final int TAKE_UNLESS = 6;
+    private static final int NULL_SAFE_TAKE_UNLESS = 7;
+
+    private static final String[] OPERATIONS = {
+            "let", "_let", "also", "_also", "takeIf", "_takeIf", "takeUnless", "_takeUnless"};
+
+    private static final K2JPlan<?, ?> START = new K2JPlan<>(new Step[0]);
+
+    private final Step[] steps;
+
+    private K2JPlan(final Step[] steps) {
+        this.steps = steps;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> K2JPlan<T, T> start() {
+        return (K2JPlan<T, T>) START;
+    }
+
+    public final <Y> K2JPlan<T, Y> let(final String name, final String... parameters) {
+        return then(LET, name, parameters);
+    }
+
+    public final <Y> K2JPlan<T, Y> _let(final String name, final String... parameters) {
+        return then(NULL_SAFE_LET, name, parameters);
+    }
+
+    public final K2JPlan<T, R> also(final String name, final String... parameters) {
+        return then(ALSO, name, parameters);
+    }
+
+    public final K2JPlan<T, R> _also(final String name, final String... parameters) {
+        return then(NULL_SAFE_ALSO, name, parameters);
+    }
+
+    public final K2JPlan<T, R> takeIf(final String name, final String... parameters) {
+        return then(TAKE_IF, name, parameters);
+    }
+
+    public final K2JPlan<T, R> _takeIf(final String name, final String... parameters) {
+        return then(NULL_SAFE_TAKE_IF, name, parameters);
+    }
+
+    public final K2JPlan<T, R> takeUnless(final String name, final String... parameters) {
+        return then(TAKE_UNLESS, name, parameters);
+    }
+
+    public final K2JPlan<T, R> _takeUnless(final String name, final String... parameters) {
+        return then(NULL_SAFE_TAKE_UNLESS, name, parameters);
+    }
+
+    /**
+     * @return the pipeline with the functions the {@link K2JStageLibrary}s of this JVM give for the
+     * stage names
+     * @throws IllegalArgumentException if no library knows a stage, or a stage is not the kind of
+     *                                  function its operation needs
+     */
+    public final K2JPipeline<T, R> toPipeline() {
+        final List<K2JStageLibrary> libraries = new ArrayList<>();
+        for (final K2JStageLibrary library : ServiceLoader.load(K2JStageLibrary.class)) {
+            libraries.add(library);
+        }
+        return toPipeline(libraries);
+    }
+
+    /**
+     * Same as {@link #toPipeline()}, with the given libraries instead of the ones of this JVM.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public final K2JPipeline<T, R> toPipeline(final Iterable<? extends K2JStageLibrary> libraries) {
+        Objects.requireNonNull(libraries);
+        K2JPipeline pipeline = K2JPipeline.start();
+        for (final Step step : steps) {
+            final Object function = lookUp(libraries, step);
+            switch (step.operation) {
+                case LET:
+                    pipeline = pipeline.let(expect(ILet.class, function, step));
+                    break;
+                case NULL_SAFE_LET:
+                    pipeline = pipeline._let(expect(ILet.class, function, step));
+                    break;
+                case ALSO:
+                    pipeline = pipeline.also(expect(IAlso.class, function, step));
+                    break;
+                case NULL_SAFE_ALSO:
+                    pipeline = pipeline._also(expect(IAlso.class, function, step));
+                    break;
+                case TAKE_IF:
+                    pipeline = pipeline.takeIf(expect(ITake.class, function, step));
+                    break;
+                case NULL_SAFE_TAKE_IF:
+                    pipeline = pipeline._takeIf(expect(ITake.class, function, step));
+                    break;
+                case TAKE_UNLESS:
+                    pipeline = pipeline.takeUnless(expect(ITake.class, function, step));
+                    break;
+                case NULL_SAFE_TAKE_UNLESS:
+                default:
+                    pipeline = pipeline._takeUnless(expect(ITake.class, function, step));
+                    break;
+            }
+        }
+        return (K2JPipeline<T, R>) pipeline;
+    }
+
+    public final int size() {
+        return steps.length;
+    }
+
+    public final void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(steps.length);
+        for (final Step step : steps) {
+            out.writeByte(step.operation);
+            out.writeUTF(step.name);
+            out.writeInt(step.parameters.size());
+            for (final String parameter : step.parameters) {
+                out.writeUTF(parameter);
+            }
+        }
+    }
+
+    /**
+     * @return the plan written by {@link #writeTo(DataOutput)}
+     */
+    public static K2JPlan<Object, Object> readFrom(final DataInput in) throws IOException {
+        final Step[] steps = new Step[in.readInt()];
+        for (int i = 0; i < steps.length; i++) {
+            final int operation = in.readByte();
+            if (operation < 0 || operation >= OPERATIONS.length) {
+                throw new IOException("unknown operation " + operation);
+            }
+            final String name = in.readUTF();
+            final String[] parameters = new String[in.readInt()];
+            for (int p = 0; p < parameters.length; p++) {
+                parameters[p] = in.readUTF();
+            }
+            steps[i] = new Step(operation, name, parameters);
+        }
+        return new K2JPlan<>(steps);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof K2JPlan && Arrays.equals(steps, ((K2JPlan<?, ?>) other).steps);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(steps);
+    }
+
+    /**
+     * @return the stages, such as {@code _let(trim)._takeIf(longerThan, 3)}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder description = new StringBuilder();
+        for (final Step step : steps) {
+            description.append(description.length() > 0 ? "." : "").append(step);
+        }
+        return description.toString();
+    }
+
+    private <Y> K2JPlan<T, Y> then(final int operation, final String name, final String[] parameters) {
+        final Step[] extended = Arrays.copyOf(steps, steps.length + 1);
+        extended[steps.length] = new Step(operation, Objects.requireNonNull(name), parameters.clone());
+        return new K2JPlan<>(extended);
+    }
+
+    private static Object lookUp(final Iterable<? extends K2JStageLibrary> libraries, final Step step) {
+        for (final K2JStageLibrary library : libraries) {
+            final Object function = library.stage(step.name, step.parameters);
+            if (function != null) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException("no K2JStageLibrary has a stage named '" + step.name + "'");
+    }
+
+    private static <F> F expect(final Class<F> type, final Object function, final Step step) {
+        if (!type.isInstance(function)) {
+            throw new IllegalArgumentException("stage '" + step.name + "' is a " + function.getClass().getName()
+                    + ", but " + OPERATIONS[step.operation] + " needs an " + type.getSimpleName());
+        }
+        return type.cast(function);
+    }
+
+    private static final class Step {
+        private final int operation;
+        private final String name;
+        private final List<String> parameters;
+
+        Step(final int operation, final String name, final String[] parameters) {
+            for (final String parameter : parameters) {
+                Objects.requireNonNull(parameter);
+            }
+            this.operation = operation;
+            this.name = name;
+            this.parameters = Collections.unmodifiableList(Arrays.asList(parameters));
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Step)) {
+                return false;
+            }
+            final Step step = (Step) other;
+            return operation == step.operation && name.equals(step.name) && parameters.equals(step.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operation, name, parameters);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder description = new StringBuilder(OPERATIONS[operation]).append('(').append(name);
+            for (final String parameter : parameters) {
+                description.append(", ").append(parameter);
+            }
+            return description.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import java.util.List;
+
+/**
+ * Turns the stage names of a {@link K2JPlan} into functions. Implementations are found with
+ * {@link java.util.ServiceLoader}, so list them in
+ * {@code META-INF/services/com.github.alexdochioiu.k2jcompat.workers.K2JStageLibrary}. They need a
+ * public no-argument constructor, and must be on the classpath of the worker JVMs as well.
+ */
+public interface K2JStageLibrary {
+
+    /**
+     * @return the {@link ILet}, {@link ITake} or {@link IAlso} named {@code name}, set up with
+     * {@code parameters}, or null if this library has no stage of that name
+     * @throws IllegalArgumentException if the stage exists but the parameters are wrong for it
+     */
+    Object stage(String name, List<String> parameters);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.workers;
+
+/**
+ * Thrown by {@link K2JWorkers} when a stage throws in a worker JVM, or a worker can not be
+ * reached. A stage's own exception stays in the worker, so its stack trace is in the message.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class K2JWorkerException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public K2JWorkerException(final String message) {
+        super(message);
+    }
+
+    public K2JWorkerException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Entry point of the worker JVMs started by {@link K2JWorkers}; not meant to be run by hand.
+ * <p>
+ * Reads a token from stdin, connects to the parent on the loopback port given as the first
+ * argument and sends the token and the index given as the second, then reads the plan and batches
+ * and writes the results over that connection, one batch at a time. The token is kept off the
+ * command line, which any user of the machine can read. Stdout is left to the JVM, so options such as {@code -Xlog}
+ * can not corrupt the results, and {@code System.out} is pointed at stderr so stages which print
+ * stay apart from it. The worker exits when the parent says so or closes the connection, which
+ * also happens when the parent JVM dies.
+ */
+public final class K2JWorkerMain {
+
+    private K2JWorkerMain() {
+    }
+
+    public static void main(final String[] args) {
+        int status = 1;
+        try {
+            if (args.length != 2) {
+                System.err.println("usage: K2JWorkerMain <port> <index>, with the token on stdin");
+                status = 2;
+                return;
+            }
+            final long token = new DataInputStream(System.in).readLong();
+            final Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+            socket.setTcpNoDelay(true);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Frame.writePreamble(out, token, Integer.parseInt(args[1]));
+            System.setOut(System.err);
+
+            status = serve(in, out);
+            out.flush();
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            // stages may have started threads of their own
+            System.exit(status);
+        }
+    }
+
+    /**
+     * @return the exit status
+     */
+    private static int serve(final DataInputStream in, final DataOutputStream out) throws IOException {
+        final Frame planFrame = Frame.read(in);
+        if (planFrame == null || planFrame.tag != Frame.PLAN) {
+            return 2;
+        }
+        final ILet<Object, Object> chain;
+        try {
+            chain = K2JPlan.readFrom(new DataInputStream(new ByteArrayInputStream(planFrame.payload))).toPipeline().build();
+        } catch (Throwable e) {
+            Frame.write(out, Frame.ERROR, Frame.NO_BATCH, Frame.stackTrace(e));
+            return 1;
+        }
+        Frame.write(out, Frame.READY, Frame.NO_BATCH, new byte[0]);
+
+        for (Frame frame = Frame.read(in); frame != null && frame.tag == Frame.BATCH; frame = Frame.read(in)) {
+            byte[] results;
+            byte tag = Frame.RESULT;
+            try {
+                final Object[] values = Frame.deserialize(frame.payload);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = chain.doLet(values[i]);
+                }
+                results = Frame.serialize(values);
+            } catch (Throwable e) {
+                // a StackOverflowError or OutOfMemoryError fails the batch, not the worker
+                results = Frame.stackTrace(e);
+                tag = Frame.ERROR;
+            }
+            Frame.write(out, tag, frame.batch, results);
+        }
+        return 0;
+    }
+}
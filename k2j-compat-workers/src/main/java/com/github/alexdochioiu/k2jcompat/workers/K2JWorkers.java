@@ -0,0 +1,643 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link K2JPlan} in child JVMs on this machine, for chains whose stages are heavy enough
+ * that several small heaps do better than one large one.
+ * <pre>
+ * try (K2JWorkers&lt;String, Integer&gt; workers = K2JWorkers.builder(plan)
+ *         .workers(4)
+ *         .jvmOptions("-Xmx256m")
+ *         .build()) {
+ *     final List&lt;Integer&gt; results = workers.map(lines);
+ * }
+ * </pre>
+ * Each worker runs {@link K2JWorkerMain} with the classpath of this JVM, connects back to this
+ * one over the loopback interface, builds the plan from its own {@link K2JStageLibrary}s and then
+ * takes batches of inputs over that connection. The worker's stdout and stderr are left to the
+ * JVM and the stages, and show up on this process's own. Batches go to the least busy worker, at
+ * most two at a time each, and their results come back in input order. Inputs and results must be
+ * {@link java.io.Serializable}.
+ * <p>
+ * If a stage throws, the call fails with a {@link K2JWorkerException} and the workers carry on.
+ * A worker which exits is dropped, and the calls which had batches on it fail. Calls from several
+ * threads run one after the other.
+ *
+ * @param <T> the input type
+ * @param <R> the result type
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JWorkers<T, R> implements AutoCloseable {
+    private static final int BATCHES_IN_FLIGHT_PER_WORKER = 2;
+    private static final long SHUTDOWN_GRACE_MILLIS = 5_000;
+
+    private final int batchSize;
+    private final Object callLock = new Object();
+
+    // guarded by this
+    private final List<Worker> workers = new ArrayList<>();
+    private final Map<Integer, Batch> pending = new HashMap<>();
+    private int nextBatch;
+    private boolean closed;
+
+    private K2JWorkers(final Builder<T, R> builder) {
+        this.batchSize = builder.batchSize;
+    }
+
+    public static <T, R> Builder<T, R> builder(final K2JPlan<T, R> plan) {
+        return new Builder<>(Objects.requireNonNull(plan));
+    }
+
+    /**
+     * @return the results for {@code inputs}, in order
+     */
+    public final List<R> map(final Iterable<? extends T> inputs) {
+        final List<R> results = new ArrayList<>();
+        forEach(inputs, new IAlso<R>() {
+            @Override
+            public void doAlso(final R result) {
+                results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Hands the result for every one of {@code inputs} to {@code sink}, in order, on this thread.
+     * Results are handed over as their batches come back, while later batches are still running,
+     * and at most two batches per worker are read from {@code inputs} ahead of {@code sink}.
+     *
+     * @throws K2JWorkerException if a stage threw or a worker exited; the results before the
+     *                            failing batch have been handed to {@code sink}
+     */
+    @SuppressWarnings("unchecked")
+    public final void forEach(final Iterable<? extends T> inputs, final IAlso<R> sink) {
+        Objects.requireNonNull(inputs);
+        Objects.requireNonNull(sink);
+        synchronized (callLock) {
+            final Iterator<? extends T> iterator = inputs.iterator();
+            final ArrayDeque<Batch> inFlight = new ArrayDeque<>();
+            try {
+                while (true) {
+                    while (iterator.hasNext()) {
+                        final Worker worker = leastBusyWorker(inFlight.isEmpty());
+                        if (worker == null) {
+                            break;
+                        }
+                        inFlight.add(send(worker, nextInputs(iterator)));
+                    }
+                    if (inFlight.isEmpty()) {
+                        return;
+                    }
+                    for (final Object result : await(inFlight.removeFirst())) {
+                        sink.doAlso((R) result);
+                    }
+                }
+            } finally {
+                abandon(inFlight);
+            }
+        }
+    }
+
+    /**
+     * @return the number of workers still running
+     */
+    public final synchronized int workers() {
+        return workers.size();
+    }
+
+    /**
+     * Tells the workers to exit, and kills the ones still running after a few seconds. Calls
+     * waiting for results fail with {@link IllegalStateException}.
+     */
+    @Override
+    public final void close() {
+        final List<Worker> stopping;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stopping = new ArrayList<>(workers);
+            workers.clear();
+            notifyAll();
+        }
+        for (final Worker worker : stopping) {
+            worker.shutdown();
+        }
+        for (final Worker worker : stopping) {
+            worker.awaitExit();
+        }
+    }
+
+    private Object[] nextInputs(final Iterator<? extends T> iterator) {
+        final List<Object> inputs = new ArrayList<>(batchSize);
+        while (inputs.size() < batchSize && iterator.hasNext()) {
+            inputs.add(iterator.next());
+        }
+        return inputs.toArray();
+    }
+
+    /**
+     * @return the running worker with the fewest batches, or null if all of them have as many as
+     * they may have and {@code wait} is false
+     */
+    private synchronized Worker leastBusyWorker(final boolean wait) {
+        while (true) {
+            checkOpen();
+            if (workers.isEmpty()) {
+                throw new K2JWorkerException("all workers have exited");
+            }
+            Worker leastBusy = workers.get(0);
+            for (final Worker worker : workers) {
+                if (worker.batches < leastBusy.batches) {
+                    leastBusy = worker;
+                }
+            }
+            if (leastBusy.batches < BATCHES_IN_FLIGHT_PER_WORKER) {
+                return leastBusy;
+            }
+            if (!wait) {
+                return null;
+            }
+            awaitChange();
+        }
+    }
+
+    private Batch send(final Worker worker, final Object[] inputs) {
+        final byte[] payload;
+        try {
+            payload = Frame.serialize(inputs);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("the inputs must be Serializable", e);
+        }
+
+        final Batch batch;
+        synchronized (this) {
+            batch = new Batch(nextBatch++, worker);
+            if (!workers.contains(worker)) {
+                // exited since it was picked
+                batch.fail(new K2JWorkerException("worker " + worker.index + " has exited"));
+                return batch;
+            }
+            pending.put(batch.id, batch);
+            worker.batches++;
+        }
+        try {
+            worker.send(Frame.BATCH, batch.id, payload);
+        } catch (IOException e) {
+            synchronized (this) {
+                if (pending.remove(batch.id) != null) {
+                    batch.fail(new K2JWorkerException("cannot send a batch to worker " + worker.index, e));
+                }
+            }
+        }
+        return batch;
+    }
+
+    private Object[] await(final Batch batch) {
+        synchronized (this) {
+            while (!batch.done) {
+                checkOpen();
+                awaitChange();
+            }
+        }
+        if (batch.failure != null) {
+            throw batch.failure;
+        }
+        try {
+            return Frame.deserialize(batch.results);
+        } catch (IOException e) {
+            throw new K2JWorkerException("cannot read the results of worker " + batch.worker.index, e);
+        }
+    }
+
+    /**
+     * Forgets the batches a failed call still had running; their results are dropped on arrival.
+     */
+    private synchronized void abandon(final Iterable<Batch> batches) {
+        for (final Batch batch : batches) {
+            pending.remove(batch.id);
+        }
+    }
+
+    private void awaitChange() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new K2JWorkerException("interrupted while waiting for the workers", e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("the workers were closed");
+        }
+    }
+
+    private synchronized void received(final Worker worker, final Frame frame) {
+        worker.batches--;
+        final Batch batch = pending.remove(frame.batch);
+        if (batch != null) {
+            if (frame.tag == Frame.RESULT) {
+                batch.complete(frame.payload);
+            } else {
+                batch.fail(new K2JWorkerException("a stage failed in worker " + worker.index + ":\n" + frame.payloadText()));
+            }
+        }
+        notifyAll();
+    }
+
+    private synchronized void exited(final Worker worker, final String reason) {
+        if (!workers.remove(worker)) {
+            return;
+        }
+        for (final Iterator<Batch> iterator = pending.values().iterator(); iterator.hasNext(); ) {
+            final Batch batch = iterator.next();
+            if (batch.worker == worker) {
+                iterator.remove();
+                batch.fail(new K2JWorkerException("worker " + worker.index + " " + reason));
+            }
+        }
+        notifyAll();
+    }
+
+    private final class Batch {
+        private final int id;
+        private final Worker worker;
+        // guarded by the K2JWorkers
+        private boolean done;
+        private byte[] results;
+        private K2JWorkerException failure;
+
+        Batch(final int id, final Worker worker) {
+            this.id = id;
+            this.worker = worker;
+        }
+
+        void complete(final byte[] results) {
+            this.results = results;
+            this.done = true;
+        }
+
+        void fail(final K2JWorkerException failure) {
+            this.failure = failure;
+            this.done = true;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final int index;
+        private final Process process;
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        // guarded by the K2JWorkers
+        private int batches;
+
+        Worker(final int index, final Process process, final Socket socket, final DataInputStream in) throws IOException {
+            this.index = index;
+            this.process = process;
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.in = in;
+        }
+
+        /**
+         * Sends the plan and waits until the worker has built it, or the socket's timeout passes.
+         */
+        void handshake(final byte[] plan) throws IOException {
+            send(Frame.PLAN, Frame.NO_BATCH, plan);
+            final Frame frame;
+            try {
+                frame = Frame.read(in);
+            } catch (SocketTimeoutException e) {
+                throw new K2JWorkerException("worker " + index + " did not build the plan in time", e);
+            }
+            if (frame == null) {
+                throw new K2JWorkerException("worker " + index + " " + exitReason());
+            }
+            if (frame.tag != Frame.READY) {
+                throw new K2JWorkerException("worker " + index + " cannot build the plan:\n" + frame.payloadText());
+            }
+            socket.setSoTimeout(0);
+        }
+
+        synchronized void send(final byte tag, final int batch, final byte[] payload) throws IOException {
+            Frame.write(out, tag, batch, payload);
+        }
+
+        /**
+         * Reads the answers of the worker until it exits.
+         */
+        @Override
+        public void run() {
+            String reason = "stopped answering";
+            try {
+                for (Frame frame = Frame.read(in); frame != null; frame = Frame.read(in)) {
+                    received(this, frame);
+                }
+                reason = exitReason();
+            } catch (Throwable e) {
+                reason = "cannot be read: " + e;
+            } finally {
+                closeQuietly(socket);
+                exited(this, reason);
+            }
+        }
+
+        void shutdown() {
+            try {
+                send(Frame.SHUTDOWN, Frame.NO_BATCH, new byte[0]);
+                socket.shutdownOutput();
+            } catch (IOException ignored) {
+                // it has exited already
+            }
+        }
+
+        void awaitExit() {
+            try {
+                if (!process.waitFor(SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+            closeQuietly(socket);
+        }
+
+        private String exitReason() {
+            try {
+                if (process.waitFor(SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return "exited with status " + process.exitValue();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "closed its connection";
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // nothing left to do with it
+        }
+    }
+
+    public static final class Builder<T, R> {
+        private final K2JPlan<T, R> plan;
+        private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int batchSize = 256;
+        private long handshakeTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+        private List<String> jvmOptions = new ArrayList<>();
+        private String classpath = System.getProperty("java.class.path");
+
+        private Builder(final K2JPlan<T, R> plan) {
+            this.plan = plan;
+        }
+
+        /**
+         * Defaults to half the processors, at least one.
+         *
+         * @throws IllegalArgumentException if {@code workers} is not positive
+         */
+        public Builder<T, R> workers(final int workers) {
+            if (workers <= 0) {
+                throw new IllegalArgumentException("workers must be positive, was " + workers);
+            }
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Inputs sent to a worker at a time. Defaults to 256.
+         *
+         * @throws IllegalArgumentException if {@code batchSize} is not positive
+         */
+        public Builder<T, R> batchSize(final int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize must be positive, was " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * How long {@link #build()} waits for all the workers to start, connect and build the
+         * plan. Defaults to 30 seconds.
+         *
+         * @throws IllegalArgumentException if {@code timeout} is not positive
+         */
+        public Builder<T, R> handshakeTimeout(final long timeout, final TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("timeout must be positive, was " + timeout);
+            }
+            this.handshakeTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Options for the worker JVMs, such as {@code -Xmx256m}, a garbage collector or
+         * {@code -Xlog}. The JVM's own output goes to the stdout and stderr of this process.
+         */
+        public Builder<T, R> jvmOptions(final String... jvmOptions) {
+            for (final String option : jvmOptions) {
+                Objects.requireNonNull(option);
+            }
+            this.jvmOptions = new ArrayList<>(Arrays.asList(jvmOptions));
+            return this;
+        }
+
+        /**
+         * The classpath of the worker JVMs, which needs this module, the stage libraries and the
+         * classes of the values. Defaults to the classpath of this JVM.
+         */
+        public Builder<T, R> classpath(final String classpath) {
+            this.classpath = Objects.requireNonNull(classpath);
+            return this;
+        }
+
+        /**
+         * Starts the workers and waits until all of them have connected and built the plan.
+         *
+         * @throws K2JWorkerException if a worker can not be started, does not connect or build
+         *                            the plan within the handshake timeout, or can not build it
+         */
+        public K2JWorkers<T, R> build() {
+            final byte[] encodedPlan = encode(plan);
+            final long token = new SecureRandom().nextLong();
+            final long deadline = System.nanoTime() + handshakeTimeoutNanos;
+            final K2JWorkers<T, R> pool = new K2JWorkers<>(this);
+            final Process[] processes = new Process[workers];
+            try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+                for (int i = 0; i < workers; i++) {
+                    processes[i] = start(server.getLocalPort(), token, i);
+                }
+                final List<K2JWorkers<T, R>.Worker> connected = new ArrayList<>();
+                while (connected.size() < workers) {
+                    final K2JWorkers<T, R>.Worker worker = accept(pool, server, processes, token, deadline);
+                    if (worker != null) {
+                        connected.add(worker);
+                        synchronized (pool) {
+                            pool.workers.add(worker);
+                        }
+                    }
+                }
+                for (final K2JWorkers<T, R>.Worker worker : connected) {
+                    worker.socket.setSoTimeout(remainingMillis(deadline));
+                    worker.handshake(encodedPlan);
+                }
+                for (final K2JWorkers<T, R>.Worker worker : connected) {
+                    final Thread reader = new Thread(worker, "k2j-worker-" + worker.index);
+                    reader.setDaemon(true);
+                    reader.start();
+                }
+            } catch (IOException | RuntimeException e) {
+                for (final Process process : processes) {
+                    if (process != null) {
+                        process.destroyForcibly();
+                    }
+                }
+                pool.close();
+                if (e instanceof K2JWorkerException) {
+                    throw (K2JWorkerException) e;
+                }
+                throw new K2JWorkerException("cannot start the workers", e);
+            }
+            return pool;
+        }
+
+        /**
+         * @return the next worker to connect, or null if the connection was not one of them
+         */
+        private static <T, R> K2JWorkers<T, R>.Worker accept(final K2JWorkers<T, R> pool,
+                                                            final ServerSocket server,
+                                                            final Process[] processes,
+                                                            final long token,
+                                                            final long deadline) throws IOException {
+            server.setSoTimeout(remainingMillis(deadline));
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketTimeoutException e) {
+                throw new K2JWorkerException("the workers did not connect in time" + exitedWorkers(processes), e);
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(remainingMillis(deadline));
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final int index = Frame.readPreamble(in, token);
+                if (index < 0 || index >= processes.length) {
+                    throw new IOException("unknown worker index " + index);
+                }
+                synchronized (pool) {
+                    for (final K2JWorkers<T, R>.Worker worker : pool.workers) {
+                        if (worker.index == index) {
+                            throw new IOException("worker " + index + " connected twice");
+                        }
+                    }
+                }
+                return pool.new Worker(index, processes[index], socket, in);
+            } catch (IOException e) {
+                // something else on this machine connected
+                closeQuietly(socket);
+                return null;
+            }
+        }
+
+        private static String exitedWorkers(final Process[] processes) {
+            final StringBuilder exited = new StringBuilder();
+            for (int i = 0; i < processes.length; i++) {
+                if (processes[i] != null && !processes[i].isAlive()) {
+                    exited.append(exited.length() == 0 ? "; exited: " : ", ")
+                            .append("worker ").append(i).append(" with status ").append(processes[i].exitValue());
+                }
+            }
+            return exited.toString();
+        }
+
+        private static int remainingMillis(final long deadline) {
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new K2JWorkerException("the workers did not start in time");
+            }
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        private Process start(final int port, final long token, final int index) throws IOException {
+            final List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(jvmOptions);
+            command.add("-cp");
+            command.add(classpath);
+            command.add(K2JWorkerMain.class.getName());
+            command.add(Integer.toString(port));
+            command.add(Integer.toString(index));
+            final Process process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            // over the pipe, as other users can read the command line; nothing else uses stdin
+            try (DataOutputStream stdin = new DataOutputStream(process.getOutputStream())) {
+                stdin.writeLong(token);
+            } catch (IOException e) {
+                process.destroyForcibly();
+                throw e;
+            }
+            return process;
+        }
+
+        private static byte[] encode(final K2JPlan<?, ?> plan) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                plan.writeTo(new DataOutputStream(bytes));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class FrameTest {
+
+    @Test
+    public void write_read_givesSameFrame() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Frame.write(new DataOutputStream(bytes), Frame.RESULT, 7, new byte[]{1, 2, 3});
+
+        final Frame frame = Frame.read(input(bytes.toByteArray()));
+
+        Assert.assertEquals(Frame.RESULT, frame.tag);
+        Assert.assertEquals(7, frame.batch);
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, frame.payload);
+    }
+
+    @Test
+    public void read_atEndOfStream_givesNull() throws IOException {
+        Assert.assertNull(Frame.read(input(new byte[0])));
+    }
+
+    @Test
+    public void read_unknownTag_throws() {
+        try {
+            Frame.read(input(new byte[]{'[', 0, 0, 0, 0, 0, 0, 0, 0}));
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("unknown frame tag 91", e.getMessage());
+        }
+    }
+
+    @Test
+    public void read_lengthOutOfRange_throws() {
+        try {
+            Frame.read(input(new byte[]{Frame.RESULT, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff}));
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("frame length out of range: -1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void readPreamble_givesIndex() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Frame.writePreamble(new DataOutputStream(bytes), 42L, 3);
+
+        Assert.assertEquals(3, Frame.readPreamble(input(bytes.toByteArray()), 42L));
+    }
+
+    @Test(expected = IOException.class)
+    public void readPreamble_wrongToken_throws() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Frame.writePreamble(new DataOutputStream(bytes), 42L, 3);
+
+        Frame.readPreamble(input(bytes.toByteArray()), 43L);
+    }
+
+    @Test(expected = IOException.class)
+    public void readPreamble_notAWorker_throws() throws IOException {
+        Frame.readPreamble(input("[0.004s][info][gc] Using G1".getBytes("UTF-8")), 42L);
+    }
+
+    private static DataInputStream input(final byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
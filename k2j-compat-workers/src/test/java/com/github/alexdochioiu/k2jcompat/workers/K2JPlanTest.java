@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+public class K2JPlanTest {
+    private static final K2JPlan<String, Integer> PLAN = K2JPlan.<String>start()
+            .<String>_let("trim")
+            ._takeIf("longerThan", "1")
+            .<Integer>_let("parseInt")
+            ._let("times", "3");
+
+    @Test
+    public void toPipeline_usesServiceLoaderLibraries() {
+        final ILet<String, Integer> chain = PLAN.toPipeline().build();
+
+        Assert.assertEquals(Integer.valueOf(126), chain.doLet(" 42 "));
+        Assert.assertNull(chain.doLet(" 4 "));
+        Assert.assertNull(chain.doLet(null));
+    }
+
+    @Test
+    public void writeTo_readFrom_givesEqualPlan() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PLAN.writeTo(new DataOutputStream(bytes));
+
+        final K2JPlan<Object, Object> read = K2JPlan.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assert.assertEquals(PLAN, read);
+        Assert.assertEquals(PLAN.hashCode(), read.hashCode());
+        Assert.assertEquals(Integer.valueOf(126), read.toPipeline().build().doLet(" 42 "));
+    }
+
+    @Test
+    public void toString_listsStages() {
+        Assert.assertEquals("_let(trim)._takeIf(longerThan, 1)._let(parseInt)._let(times, 3)", PLAN.toString());
+        Assert.assertEquals(4, PLAN.size());
+    }
+
+    @Test
+    public void plans_areImmutable() {
+        final K2JPlan<String, String> trimmed = K2JPlan.<String>start().let("trim");
+        final K2JPlan<String, Integer> parsed = trimmed.let("parseInt");
+
+        Assert.assertEquals(1, trimmed.size());
+        Assert.assertEquals(2, parsed.size());
+        Assert.assertEquals(0, K2JPlan.start().size());
+    }
+
+    @Test
+    public void unknownStage_throws() {
+        try {
+            K2JPlan.<String>start().let("missing").toPipeline();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("no K2JStageLibrary has a stage named 'missing'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void wrongKindOfStage_throws() {
+        try {
+            K2JPlan.<String>start().takeIf("trim").toPipeline();
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().endsWith("but takeIf needs an ITake"));
+        }
+    }
+
+    @Test
+    public void toPipeline_givenLibraries_ignoresServiceLoader() {
+        final K2JStageLibrary library = (name, parameters) -> (ILet<String, String>) (it) -> it + "!";
+
+        final ILet<String, String> chain = K2JPlan.<String>start()
+                .<String>let("anything")
+                .toPipeline(Collections.singletonList(library))
+                .build();
+
+        Assert.assertEquals("hi!", chain.doLet("hi"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullParameter_throws() {
+        K2JPlan.<String>start().let("times", (String) null);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class K2JWorkersTest {
+
+    @Test
+    public void map_givesResultsInOrder() {
+        final K2JPlan<String, Integer> plan = K2JPlan.<String>start()
+                .<String>_let("trim")
+                ._takeIf("longerThan", "1")
+                .<Integer>_let("parseInt")
+                ._let("times", "2");
+        final List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            inputs.add(i % 7 == 0 ? null : " " + i + " ");
+        }
+
+        final List<Integer> results;
+        try (K2JWorkers<String, Integer> workers = K2JWorkers.builder(plan).workers(3).batchSize(16).build()) {
+            results = workers.map(inputs);
+        }
+
+        final ILet<String, Integer> local = plan.toPipeline().build();
+        Assert.assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            Assert.assertEquals("input " + i, local.doLet(inputs.get(i)), results.get(i));
+        }
+    }
+
+    @Test
+    public void batches_spreadOverSeveralJvms() {
+        final Set<String> jvms;
+        try (K2JWorkers<Integer, String> workers = K2JWorkers.builder(K2JPlan.<Integer>start().<String>let("jvm"))
+                .workers(2)
+                .batchSize(1)
+                .build()) {
+            jvms = new HashSet<>(workers.map(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8)));
+        }
+
+        Assert.assertEquals(2, jvms.size());
+        Assert.assertFalse(jvms.contains(ManagementFactory.getRuntimeMXBean().getName()));
+    }
+
+    @Test
+    public void printingStage_doesNotCorruptResults() {
+        try (K2JWorkers<String, String> workers = K2JWorkers.builder(K2JPlan.<String>start().also("print").<String>let("trim"))
+                .workers(1)
+                .build()) {
+            Assert.assertEquals(Arrays.asList("a", "b"), workers.map(Arrays.asList(" a", "b ")));
+        }
+    }
+
+    @Test
+    public void jvmLoggingToStdout_doesNotCorruptResults() {
+        try (K2JWorkers<String, String> workers = K2JWorkers.builder(K2JPlan.<String>start().<String>let("trim"))
+                .workers(2)
+                .batchSize(1)
+                .jvmOptions("-Xlog:gc", "-XX:+UseSerialGC")
+                .build()) {
+            Assert.assertEquals(Arrays.asList("a", "b", "c"), workers.map(Arrays.asList(" a", "b ", " c ")));
+        }
+    }
+
+    @Test
+    public void token_isNotOnTheCommandLine() {
+        final List<String> commandLines;
+        try (K2JWorkers<Integer, String> workers = K2JWorkers.builder(K2JPlan.<Integer>start().<String>let("commandLine"))
+                .workers(1)
+                .build()) {
+            commandLines = workers.map(Arrays.asList(1));
+        }
+
+        // the main class, the port and the worker index
+        Assert.assertEquals(commandLines.get(0), 3, commandLines.get(0).split(" ").length);
+    }
+
+    @Test
+    public void forEach_streamsResultsInOrder() {
+        final List<Integer> seen = new ArrayList<>();
+        try (K2JWorkers<String, Integer> workers = K2JWorkers.builder(K2JPlan.<String>start().<Integer>let("parseInt"))
+                .workers(2)
+                .batchSize(3)
+                .build()) {
+            workers.forEach(Arrays.asList("1", "2", "3", "4", "5", "6", "7"), seen::add);
+        }
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), seen);
+    }
+
+    @Test
+    public void failingStage_throwsAndWorkersCarryOn() {
+        try (K2JWorkers<String, Integer> workers = K2JWorkers.builder(K2JPlan.<String>start().<Integer>let("parseInt"))
+                .workers(2)
+                .batchSize(2)
+                .build()) {
+            try {
+                workers.map(Arrays.asList("1", "2", "x", "4"));
+                Assert.fail();
+            } catch (K2JWorkerException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("NumberFormatException"));
+            }
+
+            Assert.assertEquals(2, workers.workers());
+            Assert.assertEquals(Arrays.asList(5, 6), workers.map(Arrays.asList("5", "6")));
+        }
+    }
+
+    @Test
+    public void stackOverflowInStage_failsBatchAndWorkerCarriesOn() {
+        try (K2JWorkers<String, Object> workers = K2JWorkers.builder(K2JPlan.<String>start()._takeIf("longerThan", "1")._let("overflow"))
+                .workers(1)
+                .build()) {
+            try {
+                workers.map(Arrays.asList("deep"));
+                Assert.fail();
+            } catch (K2JWorkerException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("StackOverflowError"));
+            }
+
+            Assert.assertEquals(1, workers.workers());
+            Assert.assertEquals(Arrays.asList(null, null), workers.map(Arrays.asList("a", "b")));
+        }
+    }
+
+    @Test
+    public void exitingWorker_failsItsBatchAndIsDropped() {
+        try (K2JWorkers<String, String> workers = K2JWorkers.builder(K2JPlan.<String>start().also("exitOn", "stop"))
+                .workers(2)
+                .batchSize(1)
+                .build()) {
+            try {
+                workers.map(Arrays.asList("a", "stop", "b"));
+                Assert.fail();
+            } catch (K2JWorkerException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("exited with status 3"));
+            }
+
+            Assert.assertEquals(1, workers.workers());
+            Assert.assertEquals(Arrays.asList("c", "d"), workers.map(Arrays.asList("c", "d")));
+        }
+    }
+
+    @Test
+    public void unknownStage_failsBuild() {
+        try {
+            K2JWorkers.builder(K2JPlan.<String>start().let("missing")).workers(1).build();
+            Assert.fail();
+        } catch (K2JWorkerException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("no K2JStageLibrary has a stage named 'missing'"));
+        }
+    }
+
+    @Test
+    public void slowHandshake_failsBuildWithinTimeout() {
+        final long start = System.nanoTime();
+        try {
+            K2JWorkers.builder(K2JPlan.<String>start().let("slowToBuild", "30000"))
+                    .workers(1)
+                    .handshakeTimeout(1, TimeUnit.SECONDS)
+                    .build();
+            Assert.fail();
+        } catch (K2JWorkerException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("in time"));
+        }
+
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 20);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void map_afterClose_throws() {
+        final K2JWorkers<String, String> workers = K2JWorkers.builder(K2JPlan.<String>start().<String>let("trim"))
+                .workers(1)
+                .build();
+        workers.close();
+
+        workers.map(Arrays.asList("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void workers_zero_throws() {
+        K2JWorkers.builder(K2JPlan.<String>start()).workers(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void handshakeTimeout_zero_throws() {
+        K2JWorkers.builder(K2JPlan.<String>start()).handshakeTimeout(0, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat.workers;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Stages for the tests, registered in {@code META-INF/services} of the test resources so the
+ * worker JVMs find them too.
+ */
+public class TestStages implements K2JStageLibrary {
+
+    @Override
+    public Object stage(final String name, final List<String> parameters) {
+        switch (name) {
+            case "trim":
+                return (ILet<String, String>) String::trim;
+            case "parseInt":
+                return (ILet<String, Integer>) Integer::parseInt;
+            case "times":
+                final int factor = Integer.parseInt(parameters.get(0));
+                return (ILet<Integer, Integer>) (it) -> it * factor;
+            case "longerThan":
+                final int length = Integer.parseInt(parameters.get(0));
+                return (ITake<String>) (it) -> it.length() > length;
+            case "print":
+                return (IAlso<Object>) System.out::println;
+            case "jvm":
+                return (ILet<Object, String>) (it) -> ManagementFactory.getRuntimeMXBean().getName();
+            case "exitOn":
+                final String trigger = parameters.get(0);
+                return (IAlso<String>) (it) -> {
+                    if (it.equals(trigger)) {
+                        System.exit(3);
+                    }
+                };
+            case "commandLine":
+                return (ILet<Object, String>) (it) -> System.getProperty("sun.java.command");
+            case "overflow":
+                return (ILet<Object, Object>) TestStages::overflow;
+            case "slowToBuild":
+                try {
+                    Thread.sleep(Long.parseLong(parameters.get(0)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return (ILet<String, String>) String::trim;
+            default:
+                return null;
+        }
+    }
+
+    private static Object overflow(final Object value) {
+        return overflow(value) == null ? null : value;
+    }
+}
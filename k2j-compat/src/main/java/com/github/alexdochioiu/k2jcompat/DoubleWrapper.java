@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.DoubleAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.DoubleLet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.DoubleLetObj;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.DoubleTake;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.K2JWrapper;
+
+import java.util.NoSuchElementException;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * {@link K2JWrapper} counterpart for {@code double} which never boxes the value.
+ * <p>
+ * A {@code double} cannot be null, so a filtered-out value becomes <b>absent</b> instead. There is
+ * nothing to hand to the function once the value is absent, so every operation skips the absent
+ * state, the same way the {@code _} operations of {@link K2JWrapper} skip null.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class DoubleWrapper {
+    private static final DoubleWrapper ABSENT = new DoubleWrapper(0D, false);
+
+    private final double wrappedValue;
+    private final boolean present;
+
+    private DoubleWrapper(final double wrappedValue, final boolean present) {
+        this.wrappedValue = wrappedValue;
+        this.present = present;
+    }
+
+    static DoubleWrapper of(final double value) {
+        return new DoubleWrapper(value, true);
+    }
+
+    static DoubleWrapper absent() {
+        return ABSENT;
+    }
+
+    public final DoubleWrapper let(final DoubleLet iLet) {
+        if (present) {
+            return of(requireNonNull(iLet).doLet(wrappedValue));
+        } else {
+            return ABSENT;
+        }
+    }
+
+    /**
+     * Leaves the primitive chain. An absent value becomes a wrapped null.
+     */
+    public final <Y> K2JWrapper<Y> letObj(final DoubleLetObj<Y> iLet) {
+        if (present) {
+            return K2JWrapper.of(requireNonNull(iLet).doLet(wrappedValue));
+        } else {
+            return K2JWrapper.empty();
+        }
+    }
+
+    public final DoubleWrapper also(final DoubleAlso iAlso) {
+        if (present) {
+            requireNonNull(iAlso).doAlso(wrappedValue);
+        }
+
+        return this;
+    }
+
+    public final DoubleWrapper takeIf(final DoubleTake iTake) {
+        if (present && requireNonNull(iTake).doTake(wrappedValue)) {
+            return this;
+        } else {
+            return ABSENT;
+        }
+    }
+
+    public final DoubleWrapper takeUnless(final DoubleTake iTake) {
+        if (present && !requireNonNull(iTake).doTake(wrappedValue)) {
+            return this;
+        } else {
+            return ABSENT;
+        }
+    }
+
+    public final boolean isPresent() {
+        return present;
+    }
+
+    /**
+     * @throws NoSuchElementException if the value is absent
+     */
+    public final double unwrap() {
+        if (!present) {
+            throw new NoSuchElementException("No value present");
+        }
+        return wrappedValue;
+    }
+
+    public final double unwrapOr(final double fallback) {
+        return present ? wrappedValue : fallback;
+    }
+}
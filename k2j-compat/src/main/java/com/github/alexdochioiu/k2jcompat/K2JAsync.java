@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Non-blocking K2J chains on top of {@link CompletableFuture}.
+ * <pre>
+ * K2JAsync.takeAsync(userId)
+ *         .letAsync(cache::lookup, ioExecutor)       // runs on ioExecutor
+ *         ._letAsync(Profile::render, cpuExecutor)   // skipped if the lookup gave null
+ *         .toFuture()
+ *         .thenAccept(response::send);
+ * </pre>
+ * Each {@code *Async} stage runs on the given executor once the previous stage completes. The
+ * {@code _} stages keep the null semantics of {@link K2JCompat.K2JWrapper}: a null value completes
+ * them straight away, without calling the function and without submitting to the executor. A
+ * failed stage fails the rest of the chain.
+ * <p>
+ * Unlike the rest of the library this class needs Java 8 (Android API 24).
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JAsync {
+    /**
+     * Shared by every short-circuited {@code _} stage. Only ever observed through
+     * {@code thenCompose}, which never hands it to the caller, so it cannot be completed again.
+     */
+    private static final CompletableFuture<Object> COMPLETED_NULL = CompletableFuture.completedFuture(null);
+
+    private K2JAsync() {
+    }
+
+    public static <T> K2JAsyncWrapper<T> takeAsync(final T object) {
+        return new K2JAsyncWrapper<>(CompletableFuture.completedFuture(object));
+    }
+
+    public static <T> K2JAsyncWrapper<T> takeFuture(final CompletableFuture<T> future) {
+        return new K2JAsyncWrapper<>(requireNonNull(future));
+    }
+
+    public static final class K2JAsyncWrapper<T> {
+        private final CompletableFuture<T> future;
+
+        private K2JAsyncWrapper(final CompletableFuture<T> future) {
+            this.future = future;
+        }
+
+        public final <Y> K2JAsyncWrapper<Y> letAsync(final ILet<T, Y> iLet, final Executor executor) {
+            requireNonNull(iLet);
+            return new K2JAsyncWrapper<>(future.thenApplyAsync(iLet::doLet, requireNonNull(executor)));
+        }
+
+        public final <Y> K2JAsyncWrapper<Y> _letAsync(final ILet<T, Y> iLet, final Executor executor) {
+            requireNonNull(iLet);
+            requireNonNull(executor);
+            return new K2JAsyncWrapper<>(future.thenCompose((value) -> {
+                if (value == null) {
+                    return completedNull();
+                }
+                return CompletableFuture.supplyAsync(() -> iLet.doLet(value), executor);
+            }));
+        }
+
+        public final K2JAsyncWrapper<T> alsoAsync(final IAlso<T> iAlso, final Executor executor) {
+            requireNonNull(iAlso);
+            return new K2JAsyncWrapper<>(future.thenApplyAsync((value) -> {
+                iAlso.doAlso(value);
+                return value;
+            }, requireNonNull(executor)));
+        }
+
+        public final K2JAsyncWrapper<T> _alsoAsync(final IAlso<T> iAlso, final Executor executor) {
+            requireNonNull(iAlso);
+            requireNonNull(executor);
+            return new K2JAsyncWrapper<>(future.thenCompose((value) -> {
+                if (value == null) {
+                    return completedNull();
+                }
+                return CompletableFuture.supplyAsync(() -> {
+                    iAlso.doAlso(value);
+                    return value;
+                }, executor);
+            }));
+        }
+
+        public final K2JAsyncWrapper<T> takeIfAsync(final ITake<T> iTake, final Executor executor) {
+            requireNonNull(iTake);
+            return new K2JAsyncWrapper<>(future.thenApplyAsync(
+                    (value) -> iTake.doTake(value) ? value : null,
+                    requireNonNull(executor)));
+        }
+
+        public final K2JAsyncWrapper<T> _takeIfAsync(final ITake<T> iTake, final Executor executor) {
+            requireNonNull(iTake);
+            requireNonNull(executor);
+            return new K2JAsyncWrapper<>(future.thenCompose((value) -> {
+                if (value == null) {
+                    return completedNull();
+                }
+                return CompletableFuture.supplyAsync(() -> iTake.doTake(value) ? value : null, executor);
+            }));
+        }
+
+        public final K2JAsyncWrapper<T> takeUnlessAsync(final ITake<T> iTake, final Executor executor) {
+            requireNonNull(iTake);
+            return new K2JAsyncWrapper<>(future.thenApplyAsync(
+                    (value) -> iTake.doTake(value) ? null : value,
+                    requireNonNull(executor)));
+        }
+
+        public final K2JAsyncWrapper<T> _takeUnlessAsync(final ITake<T> iTake, final Executor executor) {
+            requireNonNull(iTake);
+            requireNonNull(executor);
+            return new K2JAsyncWrapper<>(future.thenCompose((value) -> {
+                if (value == null) {
+                    return completedNull();
+                }
+                return CompletableFuture.supplyAsync(() -> iTake.doTake(value) ? null : value, executor);
+            }));
+        }
+
+        /**
+         * @return the future completing with the result of the chain
+         */
+        public final CompletableFuture<T> toFuture() {
+            return future;
+        }
+
+        /**
+         * Blocks until the chain completes.
+         *
+         * @throws java.util.concurrent.CompletionException if a stage failed
+         */
+        public final T unwrap() {
+            return future.join();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> completedNull() {
+        return (CompletableFuture<T>) COMPLETED_NULL;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * A K2J chain applied to every element of an array or a list, returned by
+ * {@link K2JCompat#takeAll(Object[])} and {@link K2JCompat#takeAll(List)}.
+ * <p>
+ * Operations only record the stage. Nothing runs until one of the {@code unwrapInto},
+ * {@code compactInto} or {@code toList} terminals, which fuse the stages (see {@link K2JPipeline})
+ * and run them over the whole input in a single loop.
+ * <p>
+ * After {@link #parallel()} the terminals split the input across a {@link ForkJoinPool} instead.
+ * Results still come back in input order, but the stages then run concurrently, so they must be
+ * thread-safe and {@code also} side effects can happen in any order.
+ *
+ * @param <T> the element type of the input
+ * @param <R> the element type of the result
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JBulk<T, R> {
+    private final T[] array;
+    private final List<T> list;
+    private final K2JPipeline<T, R> pipeline;
+    /**
+     * null when running sequentially
+     */
+    private final ForkJoinPool pool;
+    /**
+     * 0 when the threshold should be picked from the pool parallelism and the input size
+     */
+    private final int splitThreshold;
+
+    K2JBulk(final T[] array, final List<T> list, final K2JPipeline<T, R> pipeline) {
+        this(array, list, pipeline, null, 0);
+    }
+
+    private K2JBulk(final T[] array,
+                    final List<T> list,
+                    final K2JPipeline<T, R> pipeline,
+                    final ForkJoinPool pool,
+                    final int splitThreshold) {
+        this.array = array;
+        this.list = list;
+        this.pipeline = pipeline;
+        this.pool = pool;
+        this.splitThreshold = splitThreshold;
+    }
+
+    public final <Y> K2JBulk<T, Y> let(final ILet<R, Y> iLet) {
+        return with(pipeline.let(iLet));
+    }
+
+    public final <Y> K2JBulk<T, Y> _let(final ILet<R, Y> iLet) {
+        return with(pipeline._let(iLet));
+    }
+
+    public final K2JBulk<T, R> also(final IAlso<R> iAlso) {
+        return with(pipeline.also(iAlso));
+    }
+
+    public final K2JBulk<T, R> _also(final IAlso<R> iAlso) {
+        return with(pipeline._also(iAlso));
+    }
+
+    public final K2JBulk<T, R> takeIf(final ITake<R> iTake) {
+        return with(pipeline.takeIf(iTake));
+    }
+
+    public final K2JBulk<T, R> _takeIf(final ITake<R> iTake) {
+        return with(pipeline._takeIf(iTake));
+    }
+
+    public final K2JBulk<T, R> takeUnless(final ITake<R> iTake) {
+        return with(pipeline.takeUnless(iTake));
+    }
+
+    public final K2JBulk<T, R> _takeUnless(final ITake<R> iTake) {
+        return with(pipeline._takeUnless(iTake));
+    }
+
+    /**
+     * Runs the terminals on a shared {@link ForkJoinPool} sized to the available processors.
+     */
+    public final K2JBulk<T, R> parallel() {
+        return parallel(K2JParallel.defaultPool());
+    }
+
+    /**
+     * Runs the terminals on {@code pool}.
+     */
+    public final K2JBulk<T, R> parallel(final ForkJoinPool pool) {
+        return new K2JBulk<>(array, list, pipeline, requireNonNull(pool), splitThreshold);
+    }
+
+    public final K2JBulk<T, R> sequential() {
+        return new K2JBulk<>(array, list, pipeline, null, splitThreshold);
+    }
+
+    /**
+     * Chunks of at most {@code splitThreshold} elements are not split any further in parallel
+     * mode. By default the input is split into about four chunks per pool thread.
+     *
+     * @throws IllegalArgumentException if {@code splitThreshold} is not positive
+     */
+    public final K2JBulk<T, R> splitThreshold(final int splitThreshold) {
+        if (splitThreshold <= 0) {
+            throw new IllegalArgumentException("splitThreshold must be positive, was " + splitThreshold);
+        }
+        return new K2JBulk<>(array, list, pipeline, pool, splitThreshold);
+    }
+
+    public final int size() {
+        return array != null ? array.length : list.size();
+    }
+
+    /**
+     * Writes the result for input {@code i} to {@code out[i]}. Filtered-out elements become null.
+     *
+     * @return {@code out}
+     * @throws IllegalArgumentException if {@code out} is shorter than the input
+     */
+    public final R[] unwrapInto(final R[] out) {
+        checkCapacity(out);
+        if (pool != null) {
+            applyParallel(out);
+            return out;
+        }
+
+        final ILet<T, R> fused = pipeline.build();
+        if (array != null) {
+            final T[] in = array;
+            final int size = in.length;
+            for (int i = 0; i < size; i++) {
+                out[i] = fused.doLet(in[i]);
+            }
+        } else if (list instanceof RandomAccess) {
+            final List<T> in = list;
+            final int size = in.size();
+            for (int i = 0; i < size; i++) {
+                out[i] = fused.doLet(in.get(i));
+            }
+        } else {
+            int i = 0;
+            for (final Iterator<T> iterator = list.iterator(); iterator.hasNext(); i++) {
+                out[i] = fused.doLet(iterator.next());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Writes the non-null results to the start of {@code out}, keeping their order.
+     *
+     * @return the number of results written
+     * @throws IllegalArgumentException if {@code out} is shorter than the input
+     */
+    public final int compactInto(final R[] out) {
+        checkCapacity(out);
+        if (pool != null) {
+            final Object[] results = applyParallel(new Object[size()]);
+            return compact(results, out);
+        }
+
+        final ILet<T, R> fused = pipeline.build();
+        int count = 0;
+        if (array != null) {
+            final T[] in = array;
+            final int size = in.length;
+            for (int i = 0; i < size; i++) {
+                final R result = fused.doLet(in[i]);
+                if (result != null) {
+                    out[count++] = result;
+                }
+            }
+        } else if (list instanceof RandomAccess) {
+            final List<T> in = list;
+            final int size = in.size();
+            for (int i = 0; i < size; i++) {
+                final R result = fused.doLet(in.get(i));
+                if (result != null) {
+                    out[count++] = result;
+                }
+            }
+        } else {
+            for (final T element : list) {
+                final R result = fused.doLet(element);
+                if (result != null) {
+                    out[count++] = result;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the non-null results, in input order
+     */
+    @SuppressWarnings("unchecked")
+    public final List<R> toList() {
+        final List<R> out = new ArrayList<>(size());
+        if (pool != null) {
+            for (final Object result : applyParallel(new Object[size()])) {
+                if (result != null) {
+                    out.add((R) result);
+                }
+            }
+            return out;
+        }
+
+        final ILet<T, R> fused = pipeline.build();
+        if (array != null) {
+            for (final T element : array) {
+                final R result = fused.doLet(element);
+                if (result != null) {
+                    out.add(result);
+                }
+            }
+        } else {
+            for (final T element : list) {
+                final R result = fused.doLet(element);
+                if (result != null) {
+                    out.add(result);
+                }
+            }
+        }
+        return out;
+    }
+
+    private <Y> K2JBulk<T, Y> with(final K2JPipeline<T, Y> pipeline) {
+        return new K2JBulk<>(array, list, pipeline, pool, splitThreshold);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object[] applyParallel(final Object[] out) {
+        T[] arrayInput = array;
+        List<T> listInput = list;
+        if (arrayInput == null && !(listInput instanceof RandomAccess)) {
+            // chunks need indexed access
+            arrayInput = (T[]) listInput.toArray();
+            listInput = null;
+        }
+
+        final int size = size();
+        final int threshold = splitThreshold > 0
+                ? splitThreshold
+                : K2JParallel.defaultSplitThreshold(pool, size);
+        K2JParallel.apply(pool, threshold, pipeline.build(), arrayInput, listInput, out, size);
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> int compact(final Object[] results, final R[] out) {
+        int count = 0;
+        for (final Object result : results) {
+            if (result != null) {
+                out[count++] = (R) result;
+            }
+        }
+        return count;
+    }
+
+    private void checkCapacity(final R[] out) {
+        if (requireNonNull(out).length < size()) {
+            throw new IllegalArgumentException(
+                    "Output holds " + out.length + " elements but the input has " + size());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Bounded, thread-safe memo for {@link K2JCompat.K2JWrapper#letCached(ILet, K2JCache)}.
+ * <pre>
+ * private static final K2JCache&lt;String, String&gt; NORMALISED = K2JCache.&lt;String, String&gt;builder()
+ *         .maximumSize(10_000)
+ *         .expireAfterWrite(10, TimeUnit.MINUTES)
+ *         .build();
+ *
+ * take(phone)._letCached(Phones::normalise, NORMALISED).unwrap();
+ * </pre>
+ * Entries are spread over independently locked segments, each evicting its least recently used
+ * entry once full. The function runs outside of any lock, so two threads missing on the same key
+ * at the same time may both run it; the later result wins. Null results are cached too.
+ * <p>
+ * A cache remembers results, not which function produced them, so use one cache per function.
+ *
+ * @param <T> the input type of the cached function
+ * @param <V> the result type of the cached function
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JCache<T, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final Object NULL_KEY = new Object();
+    private static final Object NULL_VALUE = new Object();
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final ILet<T, ?> keyExtractor;
+
+    private K2JCache(final Builder<T, V> builder) {
+        final int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(builder.maximumSize));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // spread the remainder so the segment capacities add up to maximumSize exactly
+            final int capacity = builder.maximumSize / segmentCount + (i < builder.maximumSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment(capacity, builder.expireAfterWriteNanos, builder.ticker);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.keyExtractor = builder.keyExtractor;
+    }
+
+    public static <T, V> Builder<T, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return the cached result for {@code input}, or the result of {@code iLet} which is then
+     * cached. A null {@code input} is handed to {@code iLet} like {@code let} does, and cached
+     * under its own key without calling the key extractor.
+     * @throws NullPointerException if the key extractor returns null for {@code input}
+     */
+    @SuppressWarnings("unchecked")
+    public final V get(final T input, final ILet<T, V> iLet) {
+        requireNonNull(iLet);
+        final Object key = input != null ? keyFor(input) : NULL_KEY;
+        final Segment segment = segmentFor(key);
+
+        final Object cached = segment.get(key);
+        if (cached != null) {
+            return cached == NULL_VALUE ? null : (V) cached;
+        }
+
+        final V loaded = iLet.doLet(input);
+        segment.put(key, loaded != null ? loaded : NULL_VALUE);
+        return loaded;
+    }
+
+    /**
+     * @return the number of cached entries, including expired ones not removed yet
+     */
+    public final int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public final void invalidateAll() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Object keyFor(final T input) {
+        final Object key = keyExtractor.doLet(input);
+        if (key == null) {
+            throw new NullPointerException("keyExtractor returned null for a non-null input");
+        }
+        return key;
+    }
+
+    private Segment segmentFor(final Object key) {
+        final int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    private static final class Timestamped {
+        private final Object value;
+        private final long writtenAt;
+
+        private Timestamped(final Object value, final long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    private static final class Segment {
+        private final LinkedHashMap<Object, Timestamped> entries;
+        private final long expireAfterWriteNanos;
+        private final Ticker ticker;
+
+        Segment(final int capacity, final long expireAfterWriteNanos, final Ticker ticker) {
+            this.expireAfterWriteNanos = expireAfterWriteNanos;
+            this.ticker = ticker;
+            this.entries = new LinkedHashMap<Object, Timestamped>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Object, Timestamped> eldest) {
+                    return size() > capacity || isExpired(eldest.getValue(), ticker.read());
+                }
+            };
+        }
+
+        synchronized Object get(final Object key) {
+            final Timestamped entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (isExpired(entry, ticker.read())) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(final Object key, final Object value) {
+            entries.put(key, new Timestamped(value, ticker.read()));
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        private boolean isExpired(final Timestamped entry, final long now) {
+            return expireAfterWriteNanos > 0 && now - entry.writtenAt >= expireAfterWriteNanos;
+        }
+    }
+
+    /**
+     * Time source for expiry, replaceable in tests.
+     */
+    abstract static class Ticker {
+        static final Ticker SYSTEM = new Ticker() {
+            @Override
+            long read() {
+                return System.nanoTime();
+            }
+        };
+
+        abstract long read();
+    }
+
+    public static final class Builder<T, V> {
+        private int maximumSize = 1024;
+        private long expireAfterWriteNanos = 0;
+        private ILet<T, ?> keyExtractor = identity();
+        private Ticker ticker = Ticker.SYSTEM;
+
+        private Builder() {
+        }
+
+        /**
+         * Least recently used entries are evicted above this size. Defaults to 1024.
+         *
+         * @throws IllegalArgumentException if {@code maximumSize} is not positive
+         */
+        public Builder<T, V> maximumSize(final int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize must be positive, was " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Entries older than {@code duration} are treated as missing. By default entries do not
+         * expire.
+         *
+         * @throws IllegalArgumentException if {@code duration} is not positive
+         */
+        public Builder<T, V> expireAfterWrite(final long duration, final TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be positive, was " + duration);
+            }
+            this.expireAfterWriteNanos = requireNonNull(unit).toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Caches by {@code keyExtractor(input)} instead of the input itself. The key needs
+         * {@code equals} and {@code hashCode}, and must not be null.
+         */
+        public Builder<T, V> keyExtractor(final ILet<T, ?> keyExtractor) {
+            this.keyExtractor = requireNonNull(keyExtractor);
+            return this;
+        }
+
+        Builder<T, V> ticker(final Ticker ticker) {
+            this.ticker = requireNonNull(ticker);
+            return this;
+        }
+
+        public K2JCache<T, V> build() {
+            return new K2JCache<>(this);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> ILet<T, ?> identity() {
+            return (ILet<T, ?>) IDENTITY;
+        }
+
+        private static final ILet<Object, Object> IDENTITY = new ILet<Object, Object>() {
+            @Override
+            public Object doLet(final Object object) {
+                return object;
+            }
+        };
+    }
+}
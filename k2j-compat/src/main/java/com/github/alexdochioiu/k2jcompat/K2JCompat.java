@@ -15,6 +15,12 @@
  */
 package com.github.alexdochioiu.k2jcompat;
 
+import com.github.alexdochioiu.k2jcompat.K2JMetrics.Operation;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
 
 /**
@@ -24,90 +30,400 @@ import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
 public class K2JCompat {
 
     public static <T> K2JWrapper<T> take(T object) {
-        return new K2JWrapper<>(object);
+        return K2JWrapper.of(object);
+    }
+
+    /**
+     * @return a chain which records its stages and only runs them, once, on the first
+     * {@link K2JLazyWrapper#unwrap()}
+     */
+    public static <T> K2JLazyWrapper<T> takeLazy(ISupply<T> supplier) {
+        return K2JLazyWrapper.of(requireNonNull(supplier));
+    }
+
+    public static <T> K2JBulk<T, T> takeAll(T[] objects) {
+        return new K2JBulk<>(requireNonNull(objects), null, K2JPipeline.<T>start());
+    }
+
+    public static <T> K2JBulk<T, T> takeAll(List<T> objects) {
+        return new K2JBulk<>(null, requireNonNull(objects), K2JPipeline.<T>start());
+    }
+
+    /**
+     * @return a lazy sequence over {@code objects}, whose stages run in one pass when a terminal
+     * operation is called
+     */
+    public static <T> K2JSequence<T> takeSequence(T[] objects) {
+        return K2JSequence.of(requireNonNull(objects));
+    }
+
+    public static <T> K2JSequence<T> takeSequence(Iterable<T> objects) {
+        return K2JSequence.of(requireNonNull(objects));
+    }
+
+    /**
+     * @return a chain over an instance borrowed from {@code pool}, which goes back to the pool
+     * when the chain's {@link K2JPooledWrapper#let(ILet)} runs
+     */
+    public static <T> K2JPooledWrapper<T> takePooled(K2JPool<T> pool) {
+        return K2JPooledWrapper.of(requireNonNull(pool));
+    }
+
+    public static IntWrapper take(int value) {
+        return IntWrapper.of(value);
+    }
+
+    public static LongWrapper take(long value) {
+        return LongWrapper.of(value);
+    }
+
+    public static DoubleWrapper take(double value) {
+        return DoubleWrapper.of(value);
     }
 
     public static final class K2JWrapper<T>{
+        /**
+         * Shared wrapper for null. Every null / filtered-out result points here, so a chain that
+         * has gone null stays on this instance and does not allocate for the rest of the chain.
+         */
+        private static final K2JWrapper<?> EMPTY = new K2JWrapper<>(null);
+
         private final T wrappedObject;
 
         private K2JWrapper(final T wrappedObject) {
             this.wrappedObject = wrappedObject;
         }
 
+        @SuppressWarnings("unchecked")
+        static <T> K2JWrapper<T> empty() {
+            return (K2JWrapper<T>) EMPTY;
+        }
+
+        static <T> K2JWrapper<T> of(final T object) {
+            if (object == null) {
+                return empty();
+            }
+            return new K2JWrapper<>(object);
+        }
+
         public final <Y> K2JWrapper<Y> let(final ILet<T, Y> iLet) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.LET);
+            }
             final Y wrapped = requireNonNull(iLet).doLet(wrappedObject);
 
-            return new K2JWrapper<>(wrapped);
+            return of(wrapped);
         }
 
         public final <Y> K2JWrapper<Y> _let(final ILet<T, Y> iLet) {
-            final Y wrapped;
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.NULL_SAFE_LET);
+            }
             if (wrappedObject != null) {
-                wrapped = requireNonNull(iLet).doLet(wrappedObject);
+                return of(requireNonNull(iLet).doLet(wrappedObject));
             } else {
-                wrapped = null;
+                if (K2JInstrumentation.ENABLED) {
+                    K2JInstrumentation.shortCircuit(Operation.NULL_SAFE_LET);
+                }
+                return empty();
             }
+        }
+
+        /**
+         * Same as {@link #let(ILet)}, but {@code iLet} only runs if {@code cache} has no result for
+         * the wrapped value yet.
+         */
+        public final <Y> K2JWrapper<Y> letCached(final ILet<T, Y> iLet, final K2JCache<T, Y> cache) {
+            return of(requireNonNull(cache).get(wrappedObject, iLet));
+        }
 
-            return new K2JWrapper<>(wrapped);
+        /**
+         * Same as {@link #_let(ILet)}, but {@code iLet} only runs if {@code cache} has no result for
+         * the wrapped value yet.
+         */
+        public final <Y> K2JWrapper<Y> _letCached(final ILet<T, Y> iLet, final K2JCache<T, Y> cache) {
+            if (wrappedObject != null) {
+                return of(requireNonNull(cache).get(wrappedObject, iLet));
+            } else {
+                return empty();
+            }
+        }
+
+        /**
+         * Same as {@link #let(ILet)}, but an exception thrown by {@code iLet} is returned as a
+         * failed {@link K2JResult} instead of unwinding the chain.
+         */
+        public final <Y> K2JResult<Y> letCatching(final ILet<T, Y> iLet) {
+            return K2JResult.catching(iLet, wrappedObject);
+        }
+
+        /**
+         * Same as {@link #_let(ILet)}, but an exception thrown by {@code iLet} is returned as a
+         * failed {@link K2JResult} instead of unwinding the chain. A null value gives a successful
+         * null result.
+         */
+        public final <Y> K2JResult<Y> _letCatching(final ILet<T, Y> iLet) {
+            if (wrappedObject != null) {
+                return K2JResult.catching(iLet, wrappedObject);
+            } else {
+                return K2JResult.success(null);
+            }
+        }
+
+        /**
+         * Same as {@link #let(ILet)}, but gives {@code fallback} if {@code iLet} takes longer than
+         * {@code timeout}; a null fallback carries on like {@link #_let(ILet)} would. {@code iLet}
+         * runs on a daemon thread of the library while the calling thread waits, and a run which
+         * misses the deadline is interrupted.
+         */
+        public final <Y> K2JWrapper<Y> letWithTimeout(final ILet<T, Y> iLet,
+                                                      final long timeout,
+                                                      final TimeUnit unit,
+                                                      final Y fallback) {
+            return of(K2JRace.withTimeout(iLet, wrappedObject, timeout, unit, fallback, K2JExecutors.deadlineExecutor()));
+        }
+
+        /**
+         * Same as {@link #letWithTimeout(ILet, long, TimeUnit, Object)}, but a null value skips
+         * {@code iLet} and gives null.
+         */
+        public final <Y> K2JWrapper<Y> _letWithTimeout(final ILet<T, Y> iLet,
+                                                       final long timeout,
+                                                       final TimeUnit unit,
+                                                       final Y fallback) {
+            if (wrappedObject != null) {
+                return letWithTimeout(iLet, timeout, unit, fallback);
+            } else {
+                return empty();
+            }
+        }
+
+        /**
+         * Same as {@link #let(ILet)}, but {@code iLet} runs on {@code executor} and, if it has not
+         * finished after {@code hedgeAfter}, runs a second time there. The first result wins and the
+         * other run is interrupted. An exception is only thrown if both runs throw, or if the first
+         * throws before the second is started. If the calling thread is interrupted, the value
+         * becomes null and no second run is started.
+         */
+        public final <Y> K2JWrapper<Y> letHedged(final ILet<T, Y> iLet,
+                                                 final long hedgeAfter,
+                                                 final TimeUnit unit,
+                                                 final Executor executor) {
+            return of(K2JRace.hedged(iLet, wrappedObject, hedgeAfter, unit, executor));
+        }
+
+        /**
+         * Same as {@link #letHedged(ILet, long, TimeUnit, Executor)}, but a null value skips
+         * {@code iLet} and gives null.
+         */
+        public final <Y> K2JWrapper<Y> _letHedged(final ILet<T, Y> iLet,
+                                                  final long hedgeAfter,
+                                                  final TimeUnit unit,
+                                                  final Executor executor) {
+            if (wrappedObject != null) {
+                return letHedged(iLet, hedgeAfter, unit, executor);
+            } else {
+                return empty();
+            }
+        }
+
+        /**
+         * Runs {@code first} and {@code second} on the wrapped value at the same time, on
+         * {@code executor}, and combines their results. The calling thread waits for both; if either
+         * throws, its exception is rethrown straight away and the other is interrupted. An
+         * interrupt of the calling thread gives null, with the interrupt kept.
+         */
+        @SuppressWarnings("unchecked")
+        public final <A, B, Y> K2JWrapper<Y> letAll(final ILet<T, A> first,
+                                                    final ILet<T, B> second,
+                                                    final ICombine2<A, B, Y> combiner,
+                                                    final Executor executor) {
+            requireNonNull(combiner);
+            final Object[] results = K2JFanOut.run(wrappedObject, executor, new ILet<?, ?>[]{first, second});
+            if (results == null) {
+                return empty();
+            }
+            return of(combiner.doCombine((A) results[0], (B) results[1]));
+        }
+
+        /**
+         * Same as {@link #letAll(ILet, ILet, ICombine2, Executor)}, for three stages.
+         */
+        @SuppressWarnings("unchecked")
+        public final <A, B, C, Y> K2JWrapper<Y> letAll(final ILet<T, A> first,
+                                                       final ILet<T, B> second,
+                                                       final ILet<T, C> third,
+                                                       final ICombine3<A, B, C, Y> combiner,
+                                                       final Executor executor) {
+            requireNonNull(combiner);
+            final Object[] results = K2JFanOut.run(wrappedObject, executor, new ILet<?, ?>[]{first, second, third});
+            if (results == null) {
+                return empty();
+            }
+            return of(combiner.doCombine((A) results[0], (B) results[1], (C) results[2]));
+        }
+
+        /**
+         * Same as {@link #letAll(ILet, ILet, ICombine2, Executor)}, but a null value skips the
+         * stages and the combiner, and gives null.
+         */
+        public final <A, B, Y> K2JWrapper<Y> _letAll(final ILet<T, A> first,
+                                                     final ILet<T, B> second,
+                                                     final ICombine2<A, B, Y> combiner,
+                                                     final Executor executor) {
+            if (wrappedObject != null) {
+                return letAll(first, second, combiner, executor);
+            } else {
+                return empty();
+            }
+        }
+
+        /**
+         * Same as {@link #letAll(ILet, ILet, ILet, ICombine3, Executor)}, but a null value skips the
+         * stages and the combiner, and gives null.
+         */
+        public final <A, B, C, Y> K2JWrapper<Y> _letAll(final ILet<T, A> first,
+                                                        final ILet<T, B> second,
+                                                        final ILet<T, C> third,
+                                                        final ICombine3<A, B, C, Y> combiner,
+                                                        final Executor executor) {
+            if (wrappedObject != null) {
+                return letAll(first, second, third, combiner, executor);
+            } else {
+                return empty();
+            }
         }
 
         public final K2JWrapper<T> also(final IAlso<T> iAlso) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.ALSO);
+            }
             requireNonNull(iAlso).doAlso(wrappedObject);
 
             return this;
         }
 
         public final K2JWrapper<T> _also(final IAlso<T> iAlso) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.NULL_SAFE_ALSO);
+            }
             if (wrappedObject != null) {
                 requireNonNull(iAlso).doAlso(wrappedObject);
+            } else if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.shortCircuit(Operation.NULL_SAFE_ALSO);
+            }
+
+            return this;
+        }
+
+        /**
+         * Same as {@link #also(IAlso)}, but {@code iAlso} is handed to {@code effects} to run later,
+         * possibly on another thread, instead of running before this returns.
+         */
+        public final K2JWrapper<T> alsoDeferred(final IAlso<T> iAlso, final K2JDeferredEffects effects) {
+            requireNonNull(effects).defer(iAlso, wrappedObject);
+
+            return this;
+        }
+
+        /**
+         * Same as {@link #_also(IAlso)}, but {@code iAlso} is handed to {@code effects} to run later,
+         * possibly on another thread, instead of running before this returns.
+         */
+        public final K2JWrapper<T> _alsoDeferred(final IAlso<T> iAlso, final K2JDeferredEffects effects) {
+            if (wrappedObject != null) {
+                requireNonNull(effects).defer(iAlso, wrappedObject);
             }
 
             return this;
         }
 
         public final K2JWrapper<T> takeUnless(final ITake<T> iTake) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.TAKE_UNLESS);
+            }
             if (requireNonNull(iTake).doTake(wrappedObject)) {
-                return new K2JWrapper<>(null);
+                return filteredOut(Operation.TAKE_UNLESS);
             } else {
                 return this;
             }
         }
 
         public final K2JWrapper<T> _takeUnless(final ITake<T> iTake) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.NULL_SAFE_TAKE_UNLESS);
+            }
             if (wrappedObject != null) {
                 if (requireNonNull(iTake).doTake(wrappedObject)) {
-                    return new K2JWrapper<>(null);
+                    return filteredOut(Operation.NULL_SAFE_TAKE_UNLESS);
                 } else {
                     return this;
                 }
             } else {
-                return new K2JWrapper<>(null);
+                return filteredOut(Operation.NULL_SAFE_TAKE_UNLESS);
             }
         }
 
         public final K2JWrapper<T> takeIf(final ITake<T> iTake) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.TAKE_IF);
+            }
             if (requireNonNull(iTake).doTake(wrappedObject)) {
                 return this;
             } else {
-                return new K2JWrapper<>(null);
+                return filteredOut(Operation.TAKE_IF);
             }
         }
 
         public final K2JWrapper<T> _takeIf(final ITake<T> iTake) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.call(Operation.NULL_SAFE_TAKE_IF);
+            }
             if (wrappedObject != null) {
                 if (requireNonNull(iTake).doTake(wrappedObject)) {
                     return this;
                 } else {
-                    return new K2JWrapper<>(null);
+                    return filteredOut(Operation.NULL_SAFE_TAKE_IF);
                 }
             } else {
-                return new K2JWrapper<>(null);
+                return filteredOut(Operation.NULL_SAFE_TAKE_IF);
+            }
+        }
+
+        public final IntWrapper _letInt(final ToIntLet<T> iLet) {
+            if (wrappedObject != null) {
+                return IntWrapper.of(requireNonNull(iLet).doLet(wrappedObject));
+            } else {
+                return IntWrapper.absent();
+            }
+        }
+
+        public final LongWrapper _letLong(final ToLongLet<T> iLet) {
+            if (wrappedObject != null) {
+                return LongWrapper.of(requireNonNull(iLet).doLet(wrappedObject));
+            } else {
+                return LongWrapper.absent();
+            }
+        }
+
+        public final DoubleWrapper _letDouble(final ToDoubleLet<T> iLet) {
+            if (wrappedObject != null) {
+                return DoubleWrapper.of(requireNonNull(iLet).doLet(wrappedObject));
+            } else {
+                return DoubleWrapper.absent();
             }
         }
 
         public final T unwrap() {
             return wrappedObject;
         }
+
+        private static <T> K2JWrapper<T> filteredOut(final Operation operation) {
+            if (K2JInstrumentation.ENABLED) {
+                K2JInstrumentation.shortCircuit(operation);
+            }
+            return empty();
+        }
     }
 
     public interface ILet<T, Y> {
@@ -121,4 +437,76 @@ public class K2JCompat {
     public interface ITake<T> {
         boolean doTake(T object);
     }
+
+    public interface ISupply<T> {
+        T doSupply();
+    }
+
+    public interface ICombine2<A, B, Y> {
+        Y doCombine(A first, B second);
+    }
+
+    public interface ICombine3<A, B, C, Y> {
+        Y doCombine(A first, B second, C third);
+    }
+
+    public interface IntLet {
+        int doLet(int value);
+    }
+
+    public interface IntLetObj<Y> {
+        Y doLet(int value);
+    }
+
+    public interface ToIntLet<T> {
+        int doLet(T object);
+    }
+
+    public interface IntAlso {
+        void doAlso(int value);
+    }
+
+    public interface IntTake {
+        boolean doTake(int value);
+    }
+
+    public interface LongLet {
+        long doLet(long value);
+    }
+
+    public interface LongLetObj<Y> {
+        Y doLet(long value);
+    }
+
+    public interface ToLongLet<T> {
+        long doLet(T object);
+    }
+
+    public interface LongAlso {
+        void doAlso(long value);
+    }
+
+    public interface LongTake {
+        boolean doTake(long value);
+    }
+
+    public interface DoubleLet {
+        double doLet(double value);
+    }
+
+    public interface DoubleLetObj<Y> {
+        Y doLet(double value);
+    }
+
+    public interface ToDoubleLet<T> {
+        double doLet(T object);
+    }
+
+    public interface DoubleAlso {
+        void doAlso(double value);
+    }
+
+    public interface DoubleTake {
+        boolean doTake(double value);
+    }
 }
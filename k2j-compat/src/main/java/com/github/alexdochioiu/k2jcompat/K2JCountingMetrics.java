@@ -0,0 +1,220 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * {@link K2JMetrics} keeping lock-free counters per operation and a latency histogram per stage.
+ * The histograms have one bucket per power of two nanoseconds, so percentiles are exact to within
+ * a factor of two, which is enough to tell which stage dominates.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JCountingMetrics implements K2JMetrics {
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    /**
+     * Bucket {@code i} counts latencies in {@code [2^(i-1), 2^i)} nanoseconds, bucket 0 counts 0.
+     */
+    static final int BUCKETS = 64;
+
+    private final AtomicLongArray calls = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLongArray shortCircuits = new AtomicLongArray(OPERATIONS.length);
+    private final ConcurrentMap<String, Histogram> stages = new ConcurrentHashMap<>();
+
+    @Override
+    public void onCall(final Operation operation) {
+        calls.incrementAndGet(operation.ordinal());
+    }
+
+    @Override
+    public void onShortCircuit(final Operation operation) {
+        shortCircuits.incrementAndGet(operation.ordinal());
+    }
+
+    @Override
+    public void onStage(final String stage, final long nanos) {
+        Histogram histogram = stages.get(stage);
+        if (histogram == null) {
+            final Histogram created = new Histogram();
+            histogram = stages.putIfAbsent(stage, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * @return a copy of the current counters. Counters updated while copying may or may not be
+     * included.
+     */
+    public Snapshot snapshot() {
+        final long[] callCounts = new long[OPERATIONS.length];
+        final long[] shortCircuitCounts = new long[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            callCounts[i] = calls.get(i);
+            shortCircuitCounts[i] = shortCircuits.get(i);
+        }
+
+        final Map<String, StageSnapshot> stageSnapshots = new HashMap<>();
+        for (final Map.Entry<String, Histogram> entry : stages.entrySet()) {
+            stageSnapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(callCounts, shortCircuitCounts, Collections.unmodifiableMap(stageSnapshots));
+    }
+
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            calls.set(i, 0);
+            shortCircuits.set(i, 0);
+        }
+        stages.clear();
+    }
+
+    static int bucketOf(final long nanos) {
+        return nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(final long nanos) {
+            buckets.incrementAndGet(Math.min(BUCKETS - 1, bucketOf(nanos)));
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        StageSnapshot snapshot() {
+            final long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                count += counts[i];
+            }
+            return new StageSnapshot(counts, count, totalNanos.get(), maxNanos.get());
+        }
+    }
+
+    public static final class Snapshot {
+        private final long[] calls;
+        private final long[] shortCircuits;
+        private final Map<String, StageSnapshot> stages;
+
+        private Snapshot(final long[] calls, final long[] shortCircuits, final Map<String, StageSnapshot> stages) {
+            this.calls = calls;
+            this.shortCircuits = shortCircuits;
+            this.stages = stages;
+        }
+
+        public long calls(final Operation operation) {
+            return calls[requireNonNull(operation).ordinal()];
+        }
+
+        public long shortCircuits(final Operation operation) {
+            return shortCircuits[requireNonNull(operation).ordinal()];
+        }
+
+        /**
+         * @return the named stages, unmodifiable
+         */
+        public Map<String, StageSnapshot> stages() {
+            return stages;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder("K2JMetrics{");
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                builder.append(OPERATIONS[i]).append('=').append(calls[i])
+                        .append('/').append(shortCircuits[i]).append(", ");
+            }
+            return builder.append("stages=").append(stages).append('}').toString();
+        }
+    }
+
+    public static final class StageSnapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private StageSnapshot(final long[] buckets, final long count, final long totalNanos, final long maxNanos) {
+            this.buckets = buckets;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return an upper bound of the latency below which {@code percentile}% of the runs fell,
+         * at most twice the real value and never above {@link #maxNanos()}
+         */
+        public long percentileNanos(final double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100, was " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0 : Math.min(maxNanos, (1L << i) - 1);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + meanNanos() + "ns, p99=" + percentileNanos(99)
+                    + "ns, max=" + maxNanos + "ns}";
+        }
+    }
+}
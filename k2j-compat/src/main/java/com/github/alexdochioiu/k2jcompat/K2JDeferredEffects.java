@@ -0,0 +1,387 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Buffer of side effects for {@link K2JCompat.K2JWrapper#alsoDeferred(IAlso, K2JDeferredEffects)},
+ * run later by a background drainer thread or by {@link #flush()}, so slow logging or auditing
+ * does not add to the latency of the chain.
+ * <pre>
+ * private static final K2JDeferredEffects AUDIT = K2JDeferredEffects.builder()
+ *         .capacity(4096)
+ *         .overflowPolicy(K2JDeferredEffects.OverflowPolicy.DROP)
+ *         .build();
+ *
+ * take(order)._alsoDeferred(auditLog::write, AUDIT)._let(Orders::price).unwrap();
+ * </pre>
+ * The buffer is a bounded lock-free ring, so deferring an effect does not allocate or take a lock.
+ * Effects run in batches, in the order they were deferred when a single thread drains them.
+ * Exceptions and errors they throw go to the error handler and do not stop the effects after them.
+ * <p>
+ * After {@link #close()}, effects run inline in the deferring thread.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JDeferredEffects implements Closeable {
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+    /**
+     * Upper bound on how long an idle drainer sleeps, should a wake-up ever be missed.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    public enum OverflowPolicy {
+        /**
+         * Wait for room in the buffer. Without a background drainer, the deferring thread makes
+         * room by running a batch itself.
+         */
+        BLOCK,
+        /**
+         * Discard the effect, counted by {@link #droppedCount()}.
+         */
+        DROP,
+        /**
+         * Run the effect in the deferring thread.
+         */
+        RUN_INLINE
+    }
+
+    // Vyukov's bounded MPMC queue: sequences[i] tells whether slot i is free for the producer of
+    // position p (== p) or holds its effect for the consumer (== p + 1)
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<IAlso<Object>> effects;
+    private final AtomicReferenceArray<Object> values;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final IAlso<Throwable> errorHandler;
+    private final Thread drainer;
+    private volatile boolean drainerParked;
+    private volatile boolean closed;
+
+    private K2JDeferredEffects(final Builder builder) {
+        final int capacity = builder.capacity;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.effects = new AtomicReferenceArray<>(capacity);
+        this.values = new AtomicReferenceArray<>(capacity);
+        this.overflowPolicy = builder.overflowPolicy;
+        this.batchSize = builder.batchSize;
+        this.errorHandler = builder.errorHandler;
+
+        if (builder.drainInBackground) {
+            drainer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drainUntilClosed();
+                }
+            }, "k2j-deferred-effects-" + THREAD_IDS.incrementAndGet());
+            drainer.setDaemon(true);
+            drainer.start();
+        } else {
+            drainer = null;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Buffers {@code iAlso(value)} to be run later, or handles it according to the overflow
+     * policy if the buffer is full.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> void defer(final IAlso<T> iAlso, final T value) {
+        requireNonNull(iAlso);
+        if (closed) {
+            run((IAlso<Object>) iAlso, value);
+            return;
+        }
+        while (!offer((IAlso<Object>) iAlso, value)) {
+            switch (overflowPolicy) {
+                case DROP:
+                    dropped.incrementAndGet();
+                    return;
+                case RUN_INLINE:
+                    run((IAlso<Object>) iAlso, value);
+                    return;
+                default:
+                    if (closed) {
+                        run((IAlso<Object>) iAlso, value);
+                        return;
+                    }
+                    if (drainer == null) {
+                        drain(batchSize);
+                    } else {
+                        LockSupport.unpark(drainer);
+                        LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+                    }
+            }
+        }
+        if (closed) {
+            // close() may have finished draining before this effect went in
+            flush();
+        } else if (drainerParked) {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    /**
+     * Runs, in the calling thread, the effects buffered so far, and waits for those the drainer
+     * thread has already taken. Every effect deferred before this call has run when it returns.
+     * Must not be called from a deferred effect, which would wait for itself.
+     */
+    public final void flush() {
+        final long target = tail.get();
+        while (completed.get() < target) {
+            if (drain(batchSize) == 0) {
+                // the rest is being run by another thread, or is still being written
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Runs the buffered effects and stops the drainer thread. Effects deferred afterwards run
+     * inline. Like {@link #flush()}, must not be called from a deferred effect.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (drainer == null) {
+            flush();
+            return;
+        }
+        LockSupport.unpark(drainer);
+        flush();
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public final boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the number of effects deferred but not run yet
+     */
+    public final long pendingCount() {
+        return tail.get() - completed.get();
+    }
+
+    /**
+     * @return the number of effects discarded by {@link OverflowPolicy#DROP}
+     */
+    public final long droppedCount() {
+        return dropped.get();
+    }
+
+    private boolean offer(final IAlso<Object> iAlso, final Object value) {
+        long position = tail.get();
+        while (true) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    effects.lazySet(index, iAlso);
+                    values.lazySet(index, value);
+                    // publishes the slot, the lazySets above cannot be reordered after it
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the number of effects run, at most {@code max}
+     */
+    private int drain(final int max) {
+        int ran = 0;
+        long position = head.get();
+        while (ran < max) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final IAlso<Object> iAlso = effects.get(index);
+                    final Object value = values.get(index);
+                    effects.lazySet(index, null);
+                    values.lazySet(index, null);
+                    sequences.set(index, position + mask + 1);
+
+                    try {
+                        run(iAlso, value);
+                    } finally {
+                        // flush() and close() wait on this count, so it must move whatever happens
+                        completed.incrementAndGet();
+                    }
+                    ran++;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return ran;
+            } else {
+                position = head.get();
+            }
+        }
+        return ran;
+    }
+
+    private void run(final IAlso<Object> iAlso, final Object value) {
+        try {
+            iAlso.doAlso(value);
+        } catch (Throwable error) {
+            try {
+                errorHandler.doAlso(error);
+            } catch (Throwable handlerError) {
+                // a throwing handler must not stop the drainer, nor the effects after this one
+                Builder.UNCAUGHT.doAlso(handlerError);
+            }
+        }
+    }
+
+    private void drainUntilClosed() {
+        while (true) {
+            if (drain(batchSize) > 0) {
+                continue;
+            }
+            final boolean empty = head.get() == tail.get();
+            if (closed && empty) {
+                return;
+            }
+            if (empty) {
+                drainerParked = true;
+                // re-checked after announcing the park, so an effect deferred meanwhile is not missed
+                if (head.get() == tail.get() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                drainerParked = false;
+            } else {
+                // taken by a flushing thread, or still being written
+                Thread.yield();
+            }
+        }
+    }
+
+    public static final class Builder {
+        private int capacity = 1024;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int batchSize = 64;
+        private IAlso<Throwable> errorHandler = UNCAUGHT;
+        private boolean drainInBackground = true;
+
+        private Builder() {
+        }
+
+        /**
+         * The most effects buffered at once, rounded up to a power of two of at least 2. Defaults
+         * to 1024.
+         *
+         * @throws IllegalArgumentException if {@code capacity} is not positive or above 2^30
+         */
+        public Builder capacity(final int capacity) {
+            if (capacity <= 0 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("capacity must be between 1 and 2^30, was " + capacity);
+            }
+            // a single slot could not tell a full ring from an empty one
+            this.capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+            return this;
+        }
+
+        /**
+         * What to do with an effect when the buffer is full. Defaults to
+         * {@link OverflowPolicy#BLOCK}.
+         */
+        public Builder overflowPolicy(final OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = requireNonNull(overflowPolicy);
+            return this;
+        }
+
+        /**
+         * The most effects run in one go before the drainer checks whether it was closed. Defaults
+         * to 64.
+         *
+         * @throws IllegalArgumentException if {@code batchSize} is not positive
+         */
+        public Builder batchSize(final int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize must be positive, was " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Receives the exceptions and errors thrown by effects. Defaults to the uncaught exception
+         * handler of the thread running the effect, which also gets anything the handler throws.
+         */
+        public Builder errorHandler(final IAlso<Throwable> errorHandler) {
+            this.errorHandler = requireNonNull(errorHandler);
+            return this;
+        }
+
+        /**
+         * With {@code false}, no drainer thread is started and effects only run on
+         * {@link #flush()}, {@link #close()} or when a {@link OverflowPolicy#BLOCK} buffer is
+         * full. Defaults to {@code true}.
+         */
+        public Builder drainInBackground(final boolean drainInBackground) {
+            this.drainInBackground = drainInBackground;
+            return this;
+        }
+
+        public K2JDeferredEffects build() {
+            return new K2JDeferredEffects(this);
+        }
+
+        private static final IAlso<Throwable> UNCAUGHT = new IAlso<Throwable>() {
+            @Override
+            public void doAlso(final Throwable error) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import java.util.concurrent.Executor;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+import static com.github.alexdochioiu.k2jcompat.Utils.rethrow;
+
+/**
+ * Runs several {@link ILet}s on the same value at the same time and hands all their results to
+ * the calling thread, which waits for them. Used by {@link K2JCompat.K2JWrapper#letAll}.
+ */
+final class K2JFanOut {
+    private final Object[] results;
+
+    // guarded by this
+    private final Thread[] runners;
+    private int remaining;
+    private boolean done;
+    private Throwable failure;
+
+    private K2JFanOut(final int count) {
+        this.results = new Object[count];
+        this.runners = new Thread[count];
+        this.remaining = count;
+    }
+
+    /**
+     * @return the result of every {@code iLet} for {@code value}, in order, or null if the calling
+     * thread was interrupted first. The first exception thrown is rethrown straight away, and the
+     * runs still going are interrupted.
+     */
+    static Object[] run(final Object value, final Executor executor, final ILet<?, ?>[] iLets) {
+        for (final ILet<?, ?> iLet : iLets) {
+            requireNonNull(iLet);
+        }
+        requireNonNull(executor);
+
+        final K2JFanOut fanOut = new K2JFanOut(iLets.length);
+        for (int i = 0; i < iLets.length; i++) {
+            try {
+                fanOut.start(executor, i, iLets[i], value);
+            } catch (RuntimeException e) {
+                fanOut.abandon();
+                throw e;
+            }
+        }
+        if (!fanOut.await()) {
+            fanOut.abandon();
+            return null;
+        }
+        return fanOut.outcome();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void start(final Executor executor, final int index, final ILet<?, ?> iLet, final Object value) {
+        final ILet<Object, Object> function = (ILet<Object, Object>) iLet;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                runStage(index, function, value);
+            }
+        });
+    }
+
+    private void runStage(final int index, final ILet<Object, Object> iLet, final Object value) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            runners[index] = Thread.currentThread();
+        }
+        try {
+            final Object result = iLet.doLet(value);
+            synchronized (this) {
+                runners[index] = null;
+                results[index] = result;
+                if (--remaining == 0 && !done) {
+                    done = true;
+                    notifyAll();
+                }
+            }
+        } catch (Throwable error) {
+            synchronized (this) {
+                runners[index] = null;
+                if (!done) {
+                    done = true;
+                    failure = error;
+                    notifyAll();
+                }
+            }
+            abandon();
+        }
+    }
+
+    /**
+     * @return false if the calling thread was interrupted first, with its interrupt kept
+     */
+    private synchronized boolean await() {
+        while (!done) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Interrupts the runs still going, whose results are no longer needed.
+     */
+    private synchronized void abandon() {
+        done = true;
+        for (int i = 0; i < runners.length; i++) {
+            if (runners[i] != null) {
+                runners[i].interrupt();
+                runners[i] = null;
+            }
+        }
+    }
+
+    private synchronized Object[] outcome() {
+        if (failure != null) {
+            throw rethrow(failure);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a static method whose body is a single {@code return take(x)...unwrap();} chain. With
+ * {@code k2j-compat-processor} on the annotation processor path, a {@code <Class>_K2JInlined}
+ * class is generated next to the enclosing class, holding a method with the same signature which
+ * runs the chain as plain null-checked code, without wrappers or interface calls.
+ * <p>
+ * The generated class lives in another file, so everything the chain uses must be at least
+ * package-private. The value type before every stage must be known from the source: give the
+ * lambdas explicit parameter types where the processor asks for them.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface K2JInline {
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+import com.github.alexdochioiu.k2jcompat.K2JMetrics.Operation;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Opt-in metrics for {@link K2JCompat.K2JWrapper} chains, switched on by starting the JVM with
+ * {@code -Dk2j.metrics=true}.
+ * <pre>
+ * take(input)
+ *         ._let(K2JInstrumentation.timedLet("normalise", Phones::normalise))
+ *         ._takeIf(K2JInstrumentation.timedTake("isMobile", Phones::isMobile))
+ *         .unwrap();
+ *
+ * ((K2JCountingMetrics) K2JInstrumentation.metrics()).snapshot();
+ * </pre>
+ * When enabled, every wrapper operation and every short-circuit is reported to the installed
+ * {@link K2JMetrics}, which is a {@link K2JCountingMetrics} unless {@link #install(K2JMetrics)}
+ * replaced it. The {@code timed*} methods name a stage and report how long each run took.
+ * <p>
+ * When disabled, {@link #ENABLED} is a constant {@code false} to the JIT, so the wrapper hooks are
+ * compiled away, and the {@code timed*} methods return the function they were given. Apps shrunk
+ * with R8 or ProGuard get the consumer rules in {@code META-INF/proguard/k2j-compat.pro}, which fix
+ * {@link #ENABLED} to {@code false} so the hooks are removed from the dex altogether.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JInstrumentation {
+    public static final String PROPERTY = "k2j.metrics";
+
+    /**
+     * Read once, when the library is first used.
+     */
+    static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    /**
+     * Created on first use, so a disabled library does not allocate a sink it never reports to.
+     */
+    private static volatile K2JMetrics metrics;
+
+    private K2JInstrumentation() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Replaces the sink receiving the events. Has no effect on what is recorded when disabled.
+     */
+    public static synchronized void install(final K2JMetrics metrics) {
+        K2JInstrumentation.metrics = requireNonNull(metrics);
+    }
+
+    public static K2JMetrics metrics() {
+        final K2JMetrics current = metrics;
+        return current != null ? current : defaultMetrics();
+    }
+
+    private static synchronized K2JMetrics defaultMetrics() {
+        if (metrics == null) {
+            metrics = new K2JCountingMetrics();
+        }
+        return metrics;
+    }
+
+    public static <T, Y> ILet<T, Y> timedLet(final String stage, final ILet<T, Y> iLet) {
+        requireNonNull(stage);
+        requireNonNull(iLet);
+        if (!ENABLED) {
+            return iLet;
+        }
+        return new ILet<T, Y>() {
+            @Override
+            public Y doLet(final T object) {
+                final long start = System.nanoTime();
+                try {
+                    return iLet.doLet(object);
+                } finally {
+                    metrics().onStage(stage, System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    public static <T> IAlso<T> timedAlso(final String stage, final IAlso<T> iAlso) {
+        requireNonNull(stage);
+        requireNonNull(iAlso);
+        if (!ENABLED) {
+            return iAlso;
+        }
+        return new IAlso<T>() {
+            @Override
+            public void doAlso(final T object) {
+                final long start = System.nanoTime();
+                try {
+                    iAlso.doAlso(object);
+                } finally {
+                    metrics().onStage(stage, System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    public static <T> ITake<T> timedTake(final String stage, final ITake<T> iTake) {
+        requireNonNull(stage);
+        requireNonNull(iTake);
+        if (!ENABLED) {
+            return iTake;
+        }
+        return new ITake<T>() {
+            @Override
+            public boolean doTake(final T object) {
+                final long start = System.nanoTime();
+                try {
+                    return iTake.doTake(object);
+                } finally {
+                    metrics().onStage(stage, System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    /**
+     * Only called behind {@code if (ENABLED)}.
+     */
+    static void call(final Operation operation) {
+        metrics().onCall(operation);
+    }
+
+    /**
+     * Only called behind {@code if (ENABLED)}.
+     */
+    static void shortCircuit(final Operation operation) {
+        metrics().onShortCircuit(operation);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ISupply;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Lazy counterpart of {@link K2JCompat.K2JWrapper}, returned by
+ * {@link K2JCompat#takeLazy(ISupply)}.
+ * <p>
+ * The operations only record the stage. The first {@link #unwrap()} runs the supplier and the
+ * stages leading to this wrapper, with the usual null semantics, and remembers the result. Later
+ * unwraps, from any thread, return the remembered result without running anything again. Every
+ * wrapper in the chain remembers its own value, so two chains branching off the same wrapper
+ * share the work done up to that point.
+ * <p>
+ * If a stage throws, nothing is remembered and the next {@link #unwrap()} tries again.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JLazyWrapper<T> {
+    private static final Object UNSET = new Object();
+
+    /**
+     * Guarded by {@code this}. Dropped after evaluation so the earlier stages can be collected.
+     */
+    private ISupply<T> source;
+    private volatile Object value = UNSET;
+
+    private K2JLazyWrapper(final ISupply<T> source) {
+        this.source = source;
+    }
+
+    static <T> K2JLazyWrapper<T> of(final ISupply<T> source) {
+        return new K2JLazyWrapper<>(source);
+    }
+
+    public final <Y> K2JLazyWrapper<Y> let(final ILet<T, Y> iLet) {
+        requireNonNull(iLet);
+        final K2JLazyWrapper<T> parent = this;
+        return of(new ISupply<Y>() {
+            @Override
+            public Y doSupply() {
+                return iLet.doLet(parent.unwrap());
+            }
+        });
+    }
+
+    public final <Y> K2JLazyWrapper<Y> _let(final ILet<T, Y> iLet) {
+        requireNonNull(iLet);
+        final K2JLazyWrapper<T> parent = this;
+        return of(new ISupply<Y>() {
+            @Override
+            public Y doSupply() {
+                final T object = parent.unwrap();
+                return object != null ? iLet.doLet(object) : null;
+            }
+        });
+    }
+
+    public final K2JLazyWrapper<T> also(final IAlso<T> iAlso) {
+        requireNonNull(iAlso);
+        final K2JLazyWrapper<T> parent = this;
+        return of(new ISupply<T>() {
+            @Override
+            public T doSupply() {
+                final T object = parent.unwrap();
+                iAlso.doAlso(object);
+                return object;
+            }
+        });
+    }
+
+    public final K2JLazyWrapper<T> _also(final IAlso<T> iAlso) {
+        requireNonNull(iAlso);
+        final K2JLazyWrapper<T> parent = this;
+        return of(new ISupply<T>() {
+            @Override
+            public T doSupply() {
+                final T object = parent.unwrap();
+                if (object != null) {
+                    iAlso.doAlso(object);
+                }
+                return object;
+            }
+        });
+    }
+
+    public final K2JLazyWrapper<T> takeIf(final ITake<T> iTake) {
+        return take(iTake, true, false);
+    }
+
+    public final K2JLazyWrapper<T> _takeIf(final ITake<T> iTake) {
+        return take(iTake, true, true);
+    }
+
+    public final K2JLazyWrapper<T> takeUnless(final ITake<T> iTake) {
+        return take(iTake, false, false);
+    }
+
+    public final K2JLazyWrapper<T> _takeUnless(final ITake<T> iTake) {
+        return take(iTake, false, true);
+    }
+
+    /**
+     * Runs the chain the first time it is called, then returns the remembered result.
+     */
+    @SuppressWarnings("unchecked")
+    public final T unwrap() {
+        Object result = value;
+        if (result == UNSET) {
+            synchronized (this) {
+                result = value;
+                if (result == UNSET) {
+                    result = source.doSupply();
+                    value = result;
+                    source = null;
+                }
+            }
+        }
+        return (T) result;
+    }
+
+    public final boolean isEvaluated() {
+        return value != UNSET;
+    }
+
+    private K2JLazyWrapper<T> take(final ITake<T> iTake, final boolean keepWhen, final boolean nullSafe) {
+        requireNonNull(iTake);
+        final K2JLazyWrapper<T> parent = this;
+        return of(new ISupply<T>() {
+            @Override
+            public T doSupply() {
+                final T object = parent.unwrap();
+                if (nullSafe && object == null) {
+                    return null;
+                }
+                return iTake.doTake(object) == keepWhen ? object : null;
+            }
+        });
+    }
+}
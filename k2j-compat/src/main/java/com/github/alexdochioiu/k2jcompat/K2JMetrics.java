@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+/**
+ * Receives the events of {@link K2JInstrumentation}. Implementations are called from every thread
+ * running a chain, so they must be thread-safe and cheap.
+ *
+ * @see K2JCountingMetrics
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public interface K2JMetrics {
+
+    enum Operation {
+        LET,
+        NULL_SAFE_LET,
+        ALSO,
+        NULL_SAFE_ALSO,
+        TAKE_IF,
+        NULL_SAFE_TAKE_IF,
+        TAKE_UNLESS,
+        NULL_SAFE_TAKE_UNLESS
+    }
+
+    /**
+     * A {@link K2JCompat.K2JWrapper} operation was called.
+     */
+    void onCall(Operation operation);
+
+    /**
+     * A {@link K2JCompat.K2JWrapper} operation ended the chain early: a {@code _} operation skipped
+     * a null value, or a take operation filtered the value out.
+     */
+    void onShortCircuit(Operation operation);
+
+    /**
+     * A stage named through {@link K2JInstrumentation} took {@code nanos} to run.
+     */
+    void onStage(String stage, long nanos);
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join execution of a fused chain over an indexed input, used by the parallel mode of
+ * {@link K2JBulk}. Results are written by index, so the output keeps the input order.
+ */
+final class K2JParallel {
+
+    private K2JParallel() {
+    }
+
+    static ForkJoinPool defaultPool() {
+        return DefaultPoolHolder.POOL;
+    }
+
+    /**
+     * Used when no split threshold was given: about four chunks per worker, like
+     * {@code java.util.stream} does.
+     */
+    static int defaultSplitThreshold(final ForkJoinPool pool, final int size) {
+        return Math.max(1, size / (pool.getParallelism() << 2));
+    }
+
+    /**
+     * Writes {@code fused(input[i])} to {@code out[i]} for every element of exactly one of
+     * {@code array} and {@code list} (which must then be random access).
+     */
+    static <T, R> void apply(final ForkJoinPool pool,
+                             final int splitThreshold,
+                             final ILet<T, R> fused,
+                             final T[] array,
+                             final List<T> list,
+                             final Object[] out,
+                             final int size) {
+        pool.invoke(new ApplyTask<>(fused, array, list, out, splitThreshold, 0, size));
+    }
+
+    private static final class ApplyTask<T, R> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ILet<T, R> fused;
+        private final T[] array;
+        private final List<T> list;
+        private final Object[] out;
+        private final int splitThreshold;
+        private final int from;
+        private final int to;
+
+        ApplyTask(final ILet<T, R> fused,
+                  final T[] array,
+                  final List<T> list,
+                  final Object[] out,
+                  final int splitThreshold,
+                  final int from,
+                  final int to) {
+            this.fused = fused;
+            this.array = array;
+            this.list = list;
+            this.out = out;
+            this.splitThreshold = splitThreshold;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= splitThreshold) {
+                if (array != null) {
+                    for (int i = from; i < to; i++) {
+                        out[i] = fused.doLet(array[i]);
+                    }
+                } else {
+                    for (int i = from; i < to; i++) {
+                        out[i] = fused.doLet(list.get(i));
+                    }
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(
+                    new ApplyTask<>(fused, array, list, out, splitThreshold, from, middle),
+                    new ApplyTask<>(fused, array, list, out, splitThreshold, middle, to));
+        }
+    }
+
+    private static final class DefaultPoolHolder {
+        // ForkJoinPool.commonPool() needs Java 8, so we keep our own pool, sized to the CPUs
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+}
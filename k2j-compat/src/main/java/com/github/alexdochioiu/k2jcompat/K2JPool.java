@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ISupply;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Thread-safe pool of expensive mutable helpers, for {@link K2JCompat#takePooled(K2JPool)}.
+ * <pre>
+ * private static final K2JPool&lt;StringBuilder&gt; BUILDERS = K2JPool.builder(new ISupply&lt;StringBuilder&gt;() {...})
+ *         .reset(new IAlso&lt;StringBuilder&gt;() {... it.setLength(0); ...})
+ *         .build();
+ *
+ * takePooled(BUILDERS).also(...).let(StringBuilder::toString).unwrap();
+ * </pre>
+ * Idle instances sit in a few stripes, and a thread only looks at the stripe its id maps to, so
+ * threads rarely touch the same slots. Borrowing from an empty stripe creates a new instance, and
+ * returning one to a full stripe drops it, so the pool never blocks and never holds more than
+ * {@link Builder#maximumIdle(int)} instances.
+ *
+ * @param <T> the type of the pooled instances
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JPool<T> {
+    private static final int MAX_STRIPES = 64;
+    /**
+     * Stripes start 16 slots apart, so two stripes never share a cache line.
+     */
+    private static final int STRIPE_ALIGNMENT = 16;
+
+    private final AtomicReferenceArray<T> slots;
+    private final int stripeMask;
+    private final int stripeStride;
+    private final int slotsPerStripe;
+    private final ISupply<T> factory;
+    private final IAlso<T> reset;
+
+    private K2JPool(final Builder<T> builder) {
+        final int stripes = Math.min(stripesFor(Runtime.getRuntime().availableProcessors()),
+                Integer.highestOneBit(builder.maximumIdle));
+        this.slotsPerStripe = builder.maximumIdle / stripes;
+        this.stripeStride = (slotsPerStripe + STRIPE_ALIGNMENT - 1) / STRIPE_ALIGNMENT * STRIPE_ALIGNMENT;
+        this.slots = new AtomicReferenceArray<>(stripes * stripeStride);
+        this.stripeMask = stripes - 1;
+        this.factory = builder.factory;
+        this.reset = builder.reset;
+    }
+
+    /**
+     * @param factory creates an instance when there is no idle one. It must not return null.
+     */
+    public static <T> Builder<T> builder(final ISupply<T> factory) {
+        return new Builder<>(requireNonNull(factory));
+    }
+
+    /**
+     * @return an idle instance, or a new one from the factory if this thread's stripe is empty
+     */
+    public final T borrow() {
+        final int start = stripeStart();
+        for (int i = start; i < start + slotsPerStripe; i++) {
+            final T idle = slots.get(i);
+            if (idle != null && slots.compareAndSet(i, idle, null)) {
+                return idle;
+            }
+        }
+        return requireNonNull(factory.doSupply());
+    }
+
+    /**
+     * Resets {@code instance}, if the pool has a reset, and keeps it for the next {@link #borrow()}
+     * unless this thread's stripe is full. The instance must not be used after this call.
+     */
+    public final void release(final T instance) {
+        requireNonNull(instance);
+        if (reset != null) {
+            reset.doAlso(instance);
+        }
+        final int start = stripeStart();
+        for (int i = start; i < start + slotsPerStripe; i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, instance)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of idle instances, which may be changing while it is counted
+     */
+    public final int idle() {
+        int idle = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    private int stripeStart() {
+        final long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return (hash & stripeMask) * stripeStride;
+    }
+
+    private static int stripesFor(final int processors) {
+        final int stripes = Integer.highestOneBit(Math.max(1, processors));
+        return Math.min(MAX_STRIPES, stripes < processors ? stripes << 1 : stripes);
+    }
+
+    public static final class Builder<T> {
+        private final ISupply<T> factory;
+        private IAlso<T> reset;
+        private int maximumIdle = 2 * stripesFor(Runtime.getRuntime().availableProcessors());
+
+        private Builder(final ISupply<T> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * Runs on every instance given back, before it is kept for the next borrower. Should not
+         * throw; if it does, the instance is not kept and the exception reaches the caller.
+         */
+        public Builder<T> reset(final IAlso<T> reset) {
+            this.reset = requireNonNull(reset);
+            return this;
+        }
+
+        /**
+         * Instances given back above this number are dropped. Defaults to two per stripe, with a
+         * stripe per processor.
+         *
+         * @throws IllegalArgumentException if {@code maximumIdle} is not positive
+         */
+        public Builder<T> maximumIdle(final int maximumIdle) {
+            if (maximumIdle <= 0) {
+                throw new IllegalArgumentException("maximumIdle must be positive, was " + maximumIdle);
+            }
+            this.maximumIdle = maximumIdle;
+            return this;
+        }
+
+        public K2JPool<T> build() {
+            return new K2JPool<>(this);
+        }
+    }
+}
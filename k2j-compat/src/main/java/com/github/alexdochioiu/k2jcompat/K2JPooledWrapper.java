@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.K2JWrapper;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Chain over an instance borrowed from a {@link K2JPool}, returned by
+ * {@link K2JCompat#takePooled(K2JPool)}.
+ * <p>
+ * {@link #also(IAlso)} works on the borrowed instance, and {@link #let(ILet)} ends the scope: it
+ * turns the instance into a result, gives the instance back to the pool and carries on with a
+ * plain {@link K2JWrapper}. There is no {@code unwrap()}, since the instance belongs to the pool.
+ * If a stage throws, the instance is given back before the exception leaves the chain.
+ * <p>
+ * A pooled wrapper is meant for one thread and one chain; it can not be used after its
+ * {@link #let(ILet)}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JPooledWrapper<T> {
+    private final K2JPool<T> pool;
+    private T instance;
+
+    private K2JPooledWrapper(final K2JPool<T> pool) {
+        this.pool = pool;
+        this.instance = pool.borrow();
+    }
+
+    static <T> K2JPooledWrapper<T> of(final K2JPool<T> pool) {
+        return new K2JPooledWrapper<>(pool);
+    }
+
+    public final K2JPooledWrapper<T> also(final IAlso<T> iAlso) {
+        requireNonNull(iAlso);
+        final T borrowed = borrowed();
+        try {
+            iAlso.doAlso(borrowed);
+        } catch (RuntimeException | Error e) {
+            giveBack(borrowed);
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * @throws IllegalStateException if {@code iLet} returns the pooled instance itself, which
+     *                               would leave it in use by the caller and the pool at once
+     */
+    public final <Y> K2JWrapper<Y> let(final ILet<T, Y> iLet) {
+        requireNonNull(iLet);
+        final T borrowed = borrowed();
+        final Y result;
+        try {
+            result = iLet.doLet(borrowed);
+        } catch (RuntimeException | Error e) {
+            giveBack(borrowed);
+            throw e;
+        }
+        if (result == borrowed) {
+            instance = null;
+            throw new IllegalStateException("the pooled instance must not be the result of let");
+        }
+        giveBack(borrowed);
+        return K2JWrapper.of(result);
+    }
+
+    private T borrowed() {
+        if (instance == null) {
+            throw new IllegalStateException("the pooled instance was already given back");
+        }
+        return instance;
+    }
+
+    private void giveBack(final T borrowed) {
+        instance = null;
+        pool.release(borrowed);
+    }
+}
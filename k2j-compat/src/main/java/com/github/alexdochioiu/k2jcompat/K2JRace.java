@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+import static com.github.alexdochioiu.k2jcompat.Utils.rethrow;
+
+/**
+ * Runs one {@link ILet} on an executor, possibly more than once at the same time, and hands the
+ * first result to the calling thread, which waits for it. Used by
+ * {@link K2JCompat.K2JWrapper#letWithTimeout} and {@link K2JCompat.K2JWrapper#letHedged}.
+ */
+final class K2JRace<T, Y> {
+    private final ILet<T, Y> iLet;
+    private final T value;
+
+    // guarded by this
+    private final Thread[] runners = new Thread[2];
+    private int started;
+    private int failed;
+    private boolean done;
+    private boolean succeeded;
+    private Y result;
+    private Throwable failure;
+
+    private K2JRace(final ILet<T, Y> iLet, final T value) {
+        this.iLet = iLet;
+        this.value = value;
+    }
+
+    /**
+     * @return what {@code iLet} gives for {@code value}, or {@code fallback} if that takes longer
+     * than {@code timeout}
+     */
+    static <T, Y> Y withTimeout(final ILet<T, Y> iLet,
+                                final T value,
+                                final long timeout,
+                                final TimeUnit unit,
+                                final Y fallback,
+                                final Executor executor) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative, was " + timeout);
+        }
+        final K2JRace<T, Y> race = new K2JRace<>(requireNonNull(iLet), value);
+        requireNonNull(unit);
+        race.start(executor);
+        if (!race.await(true, System.nanoTime() + unit.toNanos(timeout))) {
+            race.abandon();
+            return fallback;
+        }
+        return race.outcome();
+    }
+
+    /**
+     * @return what {@code iLet} gives for {@code value}, from a second run started if the first has
+     * not finished after {@code hedgeAfter}, if that one finishes first. Null if the calling thread
+     * is interrupted before either finishes, in which case no second run is started.
+     */
+    static <T, Y> Y hedged(final ILet<T, Y> iLet,
+                           final T value,
+                           final long hedgeAfter,
+                           final TimeUnit unit,
+                           final Executor executor) {
+        if (hedgeAfter < 0) {
+            throw new IllegalArgumentException("hedgeAfter must not be negative, was " + hedgeAfter);
+        }
+        final K2JRace<T, Y> race = new K2JRace<>(requireNonNull(iLet), value);
+        requireNonNull(unit);
+        requireNonNull(executor);
+        race.start(executor);
+        // an interrupted caller gives up rather than starting a run nobody will wait for
+        if (!race.await(true, System.nanoTime() + unit.toNanos(hedgeAfter))
+                && !Thread.currentThread().isInterrupted()) {
+            race.start(executor);
+            race.await(false, 0L);
+        }
+        race.abandon();
+        return race.outcome();
+    }
+
+    /**
+     * Gives up on the race if {@code executor} rejects the run, so a run already started is
+     * interrupted rather than left going with nobody to decide the race.
+     */
+    private void start(final Executor executor) {
+        final int attempt;
+        synchronized (this) {
+            attempt = started++;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runAttempt(attempt);
+                }
+            });
+        } catch (RuntimeException e) {
+            abandon();
+            throw e;
+        }
+    }
+
+    private void runAttempt(final int attempt) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            runners[attempt] = Thread.currentThread();
+        }
+        try {
+            final Y outcome = iLet.doLet(value);
+            synchronized (this) {
+                runners[attempt] = null;
+                if (!done) {
+                    done = true;
+                    succeeded = true;
+                    result = outcome;
+                    notifyAll();
+                }
+            }
+        } catch (Throwable error) {
+            synchronized (this) {
+                runners[attempt] = null;
+                if (failure == null) {
+                    failure = error;
+                }
+                // a failed run only decides the race once no other run can still succeed
+                if (++failed == started && !done) {
+                    done = true;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if the race was not decided by {@code deadline}, as {@link System#nanoTime()},
+     * when {@code timed}. An interrupt counts as the deadline passing, and is kept for the caller
+     * to see.
+     */
+    private synchronized boolean await(final boolean timed, final long deadline) {
+        boolean interrupted = false;
+        try {
+            while (!done) {
+                final long left = deadline - System.nanoTime();
+                if ((timed && left <= 0) || interrupted) {
+                    return false;
+                }
+                try {
+                    if (timed) {
+                        TimeUnit.NANOSECONDS.timedWait(this, left);
+                    } else {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            return true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Interrupts the runs still going, which nobody will wait for anymore.
+     */
+    private synchronized void abandon() {
+        done = true;
+        for (int i = 0; i < runners.length; i++) {
+            if (runners[i] != null) {
+                runners[i].interrupt();
+                runners[i] = null;
+            }
+        }
+    }
+
+    private synchronized Y outcome() {
+        if (!succeeded && failure != null) {
+            throw rethrow(failure);
+        }
+        return result;
+    }
+}
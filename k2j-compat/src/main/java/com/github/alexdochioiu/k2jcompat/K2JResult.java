@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * The value of a stage which may fail, returned by
+ * {@link K2JCompat.K2JWrapper#letCatching(ILet)}. Holds either a value (which may be null) or the
+ * exception the stage threw.
+ * <pre>
+ * final int port = take(config.get("port"))
+ *         ._letCatching(Integer::parseInt)
+ *         .map((it) -&gt; it + offset)
+ *         .unwrapOrElse((failure) -&gt; DEFAULT_PORT);
+ * </pre>
+ * A failed result is passed along by {@link #map(ILet)} without allocating. Stages which fail often
+ * can throw a preallocated {@link K2JStacklessException}, in which case no exception, stack trace
+ * or result is created for the failure at all.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JResult<T> {
+    private static final K2JResult<?> SUCCESS_NULL = new K2JResult<>(null, null);
+
+    private final T value;
+    /**
+     * Null for a success.
+     */
+    private final Throwable failure;
+
+    private K2JResult(final T value, final Throwable failure) {
+        this.value = value;
+        this.failure = failure;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> K2JResult<T> success(final T value) {
+        return value == null ? (K2JResult<T>) SUCCESS_NULL : new K2JResult<>(value, null);
+    }
+
+    /**
+     * @return a failed result; the preallocated one if {@code failure} is a
+     * {@link K2JStacklessException}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> K2JResult<T> failure(final Throwable failure) {
+        if (failure instanceof K2JStacklessException) {
+            final K2JResult<?> preallocated = ((K2JStacklessException) failure).result;
+            if (preallocated != null) { // null after deserialisation
+                return (K2JResult<T>) preallocated;
+            }
+        }
+        return new K2JResult<>(null, requireNonNull(failure));
+    }
+
+    /**
+     * Only used by {@link K2JStacklessException}, to preallocate its result.
+     */
+    static K2JResult<?> preallocatedFailure(final K2JStacklessException failure) {
+        return new K2JResult<>(null, failure);
+    }
+
+    /**
+     * Runs {@code iLet}, capturing any exception it throws. Errors are not captured.
+     */
+    static <T, Y> K2JResult<Y> catching(final ILet<T, Y> iLet, final T object) {
+        requireNonNull(iLet);
+        final Y result;
+        try {
+            result = iLet.doLet(object);
+        } catch (Exception e) {
+            return failure(e);
+        }
+        return success(result);
+    }
+
+    public final boolean isSuccess() {
+        return failure == null;
+    }
+
+    public final boolean isFailure() {
+        return failure != null;
+    }
+
+    /**
+     * @return the exception of a failed result, null for a success
+     */
+    public final Throwable failure() {
+        return failure;
+    }
+
+    /**
+     * Applies {@code iLet} to the value of a success, capturing any exception it throws. A failure
+     * is returned as it is, without calling {@code iLet}.
+     */
+    @SuppressWarnings("unchecked")
+    public final <Y> K2JResult<Y> map(final ILet<T, Y> iLet) {
+        if (failure != null) {
+            requireNonNull(iLet);
+            return (K2JResult<Y>) this;
+        }
+        return catching(iLet, value);
+    }
+
+    /**
+     * Turns a failure into a success with the value {@code iLet} gives for the exception, capturing
+     * any exception {@code iLet} throws. A success is returned as it is.
+     */
+    public final K2JResult<T> recover(final ILet<Throwable, T> iLet) {
+        if (failure == null) {
+            requireNonNull(iLet);
+            return this;
+        }
+        return catching(iLet, failure);
+    }
+
+    /**
+     * @return the value of a success
+     * @throws RuntimeException the exception of a failure, as it is if unchecked, otherwise as
+     *                          the cause of an {@link IllegalStateException}
+     */
+    public final T unwrap() {
+        if (failure == null) {
+            return value;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException(failure);
+    }
+
+    public final T unwrapOr(final T fallback) {
+        return failure == null ? value : fallback;
+    }
+
+    /**
+     * @return the value of a success, or what {@code iLet} gives for the exception of a failure
+     */
+    public final T unwrapOrElse(final ILet<Throwable, T> iLet) {
+        requireNonNull(iLet);
+        return failure == null ? value : iLet.doLet(failure);
+    }
+
+    /**
+     * @return a wrapper of the value of a success, or of null for a failure, to carry on the chain
+     */
+    public final K2JCompat.K2JWrapper<T> toWrapper() {
+        return failure == null ? K2JCompat.K2JWrapper.of(value) : K2JCompat.K2JWrapper.<T>empty();
+    }
+
+    @Override
+    public String toString() {
+        return failure == null ? "Success(" + value + ")" : "Failure(" + failure + ")";
+    }
+}
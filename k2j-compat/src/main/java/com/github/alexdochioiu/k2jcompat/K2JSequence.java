@@ -0,0 +1,392 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.IAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Lazy operations over the elements of an array or {@link Iterable}, in the style of Kotlin's
+ * sequences.
+ * <pre>
+ * final List&lt;Integer&gt; ids = takeSequence(lines)
+ *         .mapNotNull(Parser::parseId)   // drops nulls and lines which do not parse
+ *         .filter((it) -&gt; it &gt; 0)
+ *         .take(10)
+ *         .toList();
+ * </pre>
+ * Nothing runs until a terminal operation ({@link #toList()}, {@link #forEach(IAlso)},
+ * {@link #firstOrNull()}, {@link #count()}, {@link #any(ITake)}, {@link #all(ITake)}). The terminal
+ * operation then pushes every element through all the stages in a single pass, with no
+ * intermediate collection, and stops pulling elements as soon as the result is known.
+ * <p>
+ * Sequences are immutable and can be run again, as long as their source can be iterated again.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JSequence<T> {
+    private static final int MAP = 0;
+    private static final int FILTER = 1;
+    private static final int MAP_NOT_NULL = 2;
+    private static final int ON_EACH = 3;
+    private static final int TAKE = 4;
+
+    private static final Object[] NO_ELEMENTS = new Object[0];
+
+    /**
+     * Exactly one of {@code array} and {@code iterable} is set.
+     */
+    private final Object[] array;
+    private final Iterable<?> iterable;
+    private final Stage[] stages;
+
+    private K2JSequence(final Object[] array, final Iterable<?> iterable, final Stage[] stages) {
+        this.array = array;
+        this.iterable = iterable;
+        this.stages = stages;
+    }
+
+    static <T> K2JSequence<T> of(final T[] array) {
+        return new K2JSequence<>(array, null, new Stage[0]);
+    }
+
+    static <T> K2JSequence<T> of(final Iterable<T> iterable) {
+        return new K2JSequence<>(null, iterable, new Stage[0]);
+    }
+
+    /**
+     * {@code let} semantics: {@code iLet} also receives null elements, and null results are kept.
+     */
+    public final <Y> K2JSequence<Y> map(final ILet<T, Y> iLet) {
+        return append(MAP, requireNonNull(iLet), 0);
+    }
+
+    /**
+     * {@code takeIf} semantics: keeps the elements {@code iTake} accepts, which may include null.
+     */
+    public final K2JSequence<T> filter(final ITake<T> iTake) {
+        return append(FILTER, requireNonNull(iTake), 0);
+    }
+
+    /**
+     * {@code _let} semantics: null elements are dropped without calling {@code iLet}, and so are
+     * null results.
+     */
+    public final <Y> K2JSequence<Y> mapNotNull(final ILet<T, Y> iLet) {
+        return append(MAP_NOT_NULL, requireNonNull(iLet), 0);
+    }
+
+    /**
+     * {@code also} semantics: {@code iAlso} sees every element reaching this stage, null included.
+     */
+    public final K2JSequence<T> onEach(final IAlso<T> iAlso) {
+        return append(ON_EACH, requireNonNull(iAlso), 0);
+    }
+
+    /**
+     * Keeps the first {@code count} elements reaching this stage. No element is pulled from the
+     * source after the last one.
+     *
+     * @throws IllegalArgumentException if {@code count} is negative
+     */
+    public final K2JSequence<T> take(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative, was " + count);
+        }
+        if (count == 0) {
+            return new K2JSequence<>(NO_ELEMENTS, null, new Stage[0]);
+        }
+        return append(TAKE, null, count);
+    }
+
+    public final List<T> toList() {
+        final ListSink<T> sink = new ListSink<>();
+        run(sink);
+        return sink.list;
+    }
+
+    public final void forEach(final IAlso<T> iAlso) {
+        run(new ForEachSink<>(requireNonNull(iAlso)));
+    }
+
+    /**
+     * @return the first element, or null if there is none. Use {@link #count()} or
+     * {@link #any(ITake)} to tell a null element from no element.
+     */
+    public final T firstOrNull() {
+        final FirstSink<T> sink = new FirstSink<>();
+        run(sink);
+        return sink.first;
+    }
+
+    public final int count() {
+        final CountSink sink = new CountSink();
+        run(sink);
+        return sink.count;
+    }
+
+    /**
+     * @return whether {@code iTake} accepts any element; stops at the first one it accepts
+     */
+    public final boolean any(final ITake<T> iTake) {
+        final MatchSink<T> sink = new MatchSink<>(requireNonNull(iTake), true);
+        run(sink);
+        return sink.matched;
+    }
+
+    /**
+     * @return whether {@code iTake} accepts every element; stops at the first one it rejects
+     */
+    public final boolean all(final ITake<T> iTake) {
+        final MatchSink<T> sink = new MatchSink<>(requireNonNull(iTake), false);
+        run(sink);
+        return !sink.matched;
+    }
+
+    private <Y> K2JSequence<Y> append(final int kind, final Object function, final int limit) {
+        final Stage[] appended = new Stage[stages.length + 1];
+        System.arraycopy(stages, 0, appended, 0, stages.length);
+        appended[stages.length] = new Stage(kind, function, limit);
+
+        return new K2JSequence<>(array, iterable, appended);
+    }
+
+    private void run(final Sink terminal) {
+        Sink sink = terminal;
+        for (int i = stages.length - 1; i >= 0; i--) {
+            sink = stages[i].toSink(sink);
+        }
+
+        if (array != null) {
+            for (final Object element : array) {
+                if (!sink.accept(element)) {
+                    return;
+                }
+            }
+        } else if (iterable instanceof List && iterable instanceof RandomAccess) {
+            final List<?> list = (List<?>) iterable;
+            for (int i = 0; i < list.size(); i++) {
+                if (!sink.accept(list.get(i))) {
+                    return;
+                }
+            }
+        } else {
+            for (final Object element : iterable) {
+                if (!sink.accept(element)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Stage {
+        private final int kind;
+        private final Object function;
+        private final int limit;
+
+        private Stage(final int kind, final Object function, final int limit) {
+            this.kind = kind;
+            this.function = function;
+            this.limit = limit;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Sink toSink(final Sink downstream) {
+            switch (kind) {
+                case MAP:
+                    return new MapSink(downstream, (ILet<Object, Object>) function);
+                case FILTER:
+                    return new FilterSink(downstream, (ITake<Object>) function);
+                case MAP_NOT_NULL:
+                    return new MapNotNullSink(downstream, (ILet<Object, Object>) function);
+                case ON_EACH:
+                    return new OnEachSink(downstream, (IAlso<Object>) function);
+                case TAKE:
+                    return new TakeSink(downstream, limit);
+                default:
+                    throw new IllegalStateException("Unknown stage " + kind);
+            }
+        }
+    }
+
+    /**
+     * Receives the elements of one terminal operation, one at a time.
+     */
+    private abstract static class Sink {
+        /**
+         * @return false once no more elements are needed
+         */
+        abstract boolean accept(Object element);
+    }
+
+    private static final class MapSink extends Sink {
+        private final Sink downstream;
+        private final ILet<Object, Object> iLet;
+
+        MapSink(final Sink downstream, final ILet<Object, Object> iLet) {
+            this.downstream = downstream;
+            this.iLet = iLet;
+        }
+
+        @Override
+        boolean accept(final Object element) {
+            return downstream.accept(iLet.doLet(element));
+        }
+    }
+
+    private static final class FilterSink extends Sink {
+        private final Sink downstream;
+        private final ITake<Object> iTake;
+
+        FilterSink(final Sink downstream, final ITake<Object> iTake) {
+            this.downstream = downstream;
+            this.iTake = iTake;
+        }
+
+        @Override
+        boolean accept(final Object element) {
+            return !iTake.doTake(element) || downstream.accept(element);
+        }
+    }
+
+    private static final class MapNotNullSink extends Sink {
+        private final Sink downstream;
+        private final ILet<Object, Object> iLet;
+
+        MapNotNullSink(final Sink downstream, final ILet<Object, Object> iLet) {
+            this.downstream = downstream;
+            this.iLet = iLet;
+        }
+
+        @Override
+        boolean accept(final Object element) {
+            if (element == null) {
+                return true;
+            }
+            final Object mapped = iLet.doLet(element);
+            return mapped == null || downstream.accept(mapped);
+        }
+    }
+
+    private static final class OnEachSink extends Sink {
+        private final Sink downstream;
+        private final IAlso<Object> iAlso;
+
+        OnEachSink(final Sink downstream, final IAlso<Object> iAlso) {
+            this.downstream = downstream;
+            this.iAlso = iAlso;
+        }
+
+        @Override
+        boolean accept(final Object element) {
+            iAlso.doAlso(element);
+            return downstream.accept(element);
+        }
+    }
+
+    private static final class TakeSink extends Sink {
+        private final Sink downstream;
+        private int remaining;
+
+        TakeSink(final Sink downstream, final int limit) {
+            this.downstream = downstream;
+            this.remaining = limit;
+        }
+
+        @Override
+        boolean accept(final Object element) {
+            remaining--;
+            return downstream.accept(element) && remaining > 0;
+        }
+    }
+
+    private static final class ListSink<T> extends Sink {
+        private final List<T> list = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean accept(final Object element) {
+            list.add((T) element);
+            return true;
+        }
+    }
+
+    private static final class ForEachSink<T> extends Sink {
+        private final IAlso<T> iAlso;
+
+        ForEachSink(final IAlso<T> iAlso) {
+            this.iAlso = iAlso;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean accept(final Object element) {
+            iAlso.doAlso((T) element);
+            return true;
+        }
+    }
+
+    private static final class FirstSink<T> extends Sink {
+        private T first;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean accept(final Object element) {
+            first = (T) element;
+            return false;
+        }
+    }
+
+    private static final class CountSink extends Sink {
+        private int count;
+
+        @Override
+        boolean accept(final Object element) {
+            count++;
+            return true;
+        }
+    }
+
+    /**
+     * Stops at the first element for which {@code iTake} gives {@code stopWhen}.
+     */
+    private static final class MatchSink<T> extends Sink {
+        private final ITake<T> iTake;
+        private final boolean stopWhen;
+        private boolean matched;
+
+        MatchSink(final ITake<T> iTake, final boolean stopWhen) {
+            this.iTake = iTake;
+            this.stopWhen = stopWhen;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean accept(final Object element) {
+            if (iTake.doTake((T) element) == stopWhen) {
+                matched = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
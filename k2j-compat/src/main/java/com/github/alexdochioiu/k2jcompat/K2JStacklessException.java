@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+/**
+ * Exception without a stack trace, for stages run with
+ * {@link K2JCompat.K2JWrapper#letCatching(K2JCompat.ILet)} which fail as part of their normal
+ * work. Creating one skips the stack walk, and an instance can be created once and thrown again
+ * and again:
+ * <pre>
+ * private static final K2JStacklessException NOT_A_NUMBER = new K2JStacklessException("not a number");
+ *
+ * take(field)._letCatching((it) -&gt; {
+ *     if (!isNumber(it)) {
+ *         throw NOT_A_NUMBER;
+ *     }
+ *     return Long.parseLong(it);
+ * });
+ * </pre>
+ * Each instance carries the failed {@link K2JResult} for itself, so failing this way allocates
+ * nothing at all.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class K2JStacklessException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final transient K2JResult<?> result = K2JResult.preallocatedFailure(this);
+
+    public K2JStacklessException(final String message) {
+        this(message, null);
+    }
+
+    public K2JStacklessException(final String message, final Throwable cause) {
+        // no suppressed exceptions, no stack trace: shared instances must not collect state
+        super(message, cause, false, false);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * Adapters between K2J chains and {@code java.util.stream}. The stages run directly on the stream
+ * elements, so no {@link K2JCompat.K2JWrapper} is created per element.
+ * <pre>
+ * final K2JPipeline&lt;String, Integer&gt; parse = K2JPipeline.&lt;String&gt;start()
+ *         ._let(String::trim)
+ *         ._takeIf((it) -&gt; it.matches("[0-9]+"))
+ *         ._let(Integer::parseInt);
+ *
+ * lines.stream().map(K2JStreams.function(parse))     // nulls for rejected lines
+ * lines.stream().collect(K2JStreams.collector(parse)) // only the parsed numbers
+ * K2JStreams.stream(lines, parse)                      // Stream of only the parsed numbers
+ * </pre>
+ * Unlike the rest of the library this class needs Java 8 (Android API 24).
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class K2JStreams {
+
+    private K2JStreams() {
+    }
+
+    /**
+     * @return the fused pipeline as a {@link Function}, for {@link Stream#map(Function)}
+     */
+    public static <T, R> Function<T, R> function(final K2JPipeline<T, R> pipeline) {
+        final ILet<T, R> fused = requireNonNull(pipeline).build();
+        return fused::doLet;
+    }
+
+    /**
+     * {@code let} semantics: {@code iLet} also receives null elements.
+     */
+    public static <T, R> Function<T, R> let(final ILet<T, R> iLet) {
+        requireNonNull(iLet);
+        return iLet::doLet;
+    }
+
+    /**
+     * {@code _let} semantics: null elements map to null without calling {@code iLet}.
+     */
+    public static <T, R> Function<T, R> _let(final ILet<T, R> iLet) {
+        requireNonNull(iLet);
+        return (it) -> it != null ? iLet.doLet(it) : null;
+    }
+
+    /**
+     * {@code takeIf} semantics, for {@link Stream#filter(Predicate)}.
+     */
+    public static <T> Predicate<T> takeIf(final ITake<T> iTake) {
+        requireNonNull(iTake);
+        return iTake::doTake;
+    }
+
+    /**
+     * {@code _takeIf} semantics: null elements are dropped without calling {@code iTake}.
+     */
+    public static <T> Predicate<T> _takeIf(final ITake<T> iTake) {
+        requireNonNull(iTake);
+        return (it) -> it != null && iTake.doTake(it);
+    }
+
+    public static <T> Predicate<T> takeUnless(final ITake<T> iTake) {
+        requireNonNull(iTake);
+        return (it) -> !iTake.doTake(it);
+    }
+
+    /**
+     * {@code _takeUnless} semantics: null elements are dropped without calling {@code iTake}.
+     */
+    public static <T> Predicate<T> _takeUnless(final ITake<T> iTake) {
+        requireNonNull(iTake);
+        return (it) -> it != null && !iTake.doTake(it);
+    }
+
+    /**
+     * Applies the pipeline to every element and collects the non-null results, in encounter order.
+     */
+    public static <T, R> Collector<T, ?, List<R>> collector(final K2JPipeline<T, R> pipeline) {
+        final ILet<T, R> fused = requireNonNull(pipeline).build();
+        return Collector.of(
+                ArrayList::new,
+                (list, element) -> {
+                    final R result = fused.doLet(element);
+                    if (result != null) {
+                        list.add(result);
+                    }
+                },
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                });
+    }
+
+    /**
+     * @return a stream of the non-null pipeline results for {@code source}, sequential
+     */
+    public static <T, R> Stream<R> stream(final Collection<T> source, final K2JPipeline<T, R> pipeline) {
+        return stream(requireNonNull(source).spliterator(), pipeline, false);
+    }
+
+    /**
+     * @return a stream of the non-null pipeline results for {@code source}. It is parallel if
+     * {@code source} is, and closing it closes {@code source}.
+     */
+    public static <T, R> Stream<R> stream(final Stream<T> source, final K2JPipeline<T, R> pipeline) {
+        requireNonNull(source);
+        return stream(source.spliterator(), pipeline, source.isParallel()).onClose(source::close);
+    }
+
+    public static <T, R> Stream<R> stream(final Spliterator<T> source,
+                                          final K2JPipeline<T, R> pipeline,
+                                          final boolean parallel) {
+        return StreamSupport.stream(spliterator(source, pipeline), parallel);
+    }
+
+    /**
+     * @return a {@link Spliterator} which applies the pipeline to the elements of {@code source} and
+     * skips null results. Splitting splits {@code source}.
+     */
+    public static <T, R> Spliterator<R> spliterator(final Spliterator<T> source, final K2JPipeline<T, R> pipeline) {
+        return new K2JSpliterator<>(requireNonNull(source), requireNonNull(pipeline).build());
+    }
+
+    private static final class K2JSpliterator<T, R> implements Spliterator<R>, Consumer<T> {
+        /**
+         * The result size is unknown (results may be dropped) and mapped elements are neither
+         * sorted nor known to be distinct.
+         */
+        private static final int DROPPED_CHARACTERISTICS = SIZED | SUBSIZED | SORTED | DISTINCT;
+
+        private final Spliterator<T> source;
+        private final ILet<T, R> fused;
+
+        /**
+         * Result of the last element handed to {@link #accept(Object)}. A spliterator is only used
+         * by one thread at a time, so this avoids a capturing lambda per {@code tryAdvance}.
+         */
+        private R current;
+
+        K2JSpliterator(final Spliterator<T> source, final ILet<T, R> fused) {
+            this.source = source;
+            this.fused = fused;
+        }
+
+        @Override
+        public void accept(final T element) {
+            current = fused.doLet(element);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super R> action) {
+            requireNonNull(action);
+            while (source.tryAdvance(this)) {
+                final R result = current;
+                if (result != null) {
+                    current = null;
+                    action.accept(result);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super R> action) {
+            requireNonNull(action);
+            source.forEachRemaining((element) -> {
+                final R result = fused.doLet(element);
+                if (result != null) {
+                    action.accept(result);
+                }
+            });
+        }
+
+        @Override
+        public Spliterator<R> trySplit() {
+            final Spliterator<T> prefix = source.trySplit();
+            return prefix != null ? new K2JSpliterator<>(prefix, fused) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return (source.characteristics() & ~DROPPED_CHARACTERISTICS) | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.LongAlso;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.LongLet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.LongLetObj;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.LongTake;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.K2JWrapper;
+
+import java.util.NoSuchElementException;
+
+import static com.github.alexdochioiu.k2jcompat.Utils.requireNonNull;
+
+/**
+ * {@link K2JWrapper} counterpart for {@code long} which never boxes the value.
+ * <p>
+ * A {@code long} cannot be null, so a filtered-out value becomes <b>absent</b> instead. There is
+ * nothing to hand to the function once the value is absent, so every operation skips the absent
+ * state, the same way the {@code _} operations of {@link K2JWrapper} skip null.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class LongWrapper {
+    private static final LongWrapper ABSENT = new LongWrapper(0L, false);
+
+    private final long wrappedValue;
+    private final boolean present;
+
+    private LongWrapper(final long wrappedValue, final boolean present) {
+        this.wrappedValue = wrappedValue;
+        this.present = present;
+    }
+
+    static LongWrapper of(final long value) {
+        return new LongWrapper(value, true);
+    }
+
+    static LongWrapper absent() {
+        return ABSENT;
+    }
+
+    public final LongWrapper let(final LongLet iLet) {
+        if (present) {
+            return of(requireNonNull(iLet).doLet(wrappedValue));
+        } else {
+            return ABSENT;
+        }
+    }
+
+    /**
+     * Leaves the primitive chain. An absent value becomes a wrapped null.
+     */
+    public final <Y> K2JWrapper<Y> letObj(final LongLetObj<Y> iLet) {
+        if (present) {
+            return K2JWrapper.of(requireNonNull(iLet).doLet(wrappedValue));
+        } else {
+            return K2JWrapper.empty();
+        }
+    }
+
+    public final LongWrapper also(final LongAlso iAlso) {
+        if (present) {
+            requireNonNull(iAlso).doAlso(wrappedValue);
+        }
+
+        return this;
+    }
+
+    public final LongWrapper takeIf(final LongTake iTake) {
+        if (present && requireNonNull(iTake).doTake(wrappedValue)) {
+            return this;
+        } else {
+            return ABSENT;
+        }
+    }
+
+    public final LongWrapper takeUnless(final LongTake iTake) {
+        if (present && !requireNonNull(iTake).doTake(wrappedValue)) {
+            return this;
+        } else {
+            return ABSENT;
+        }
+    }
+
+    public final boolean isPresent() {
+        return present;
+    }
+
+    /**
+     * @throws NoSuchElementException if the value is absent
+     */
+    public final long unwrap() {
+        if (!present) {
+            throw new NoSuchElementException("No value present");
+        }
+        return wrappedValue;
+    }
+
+    public final long unwrapOr(final long fallback) {
+        return present ? wrappedValue : fallback;
+    }
+}
@@ -42,4 +42,19 @@ class Utils {
             throw new NullPointerException();
         return obj;
     }
+
+    /**
+     * Throws {@code error} as it is if it is unchecked, wrapped in an
+     * {@link IllegalStateException} otherwise. The functional interfaces of the library do not
+     * throw checked exceptions, so the wrapping only happens for sneaky throws.
+     */
+    static RuntimeException rethrow(final Throwable error) {
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new IllegalStateException(error);
+    }
 }
@@ -0,0 +1,16 @@
+# Consumer rules for k2j-compat, applied by R8 / ProGuard to every app depending on the jar.
+#
+# The library uses no reflection, so nothing needs to be kept: whatever the app does not call is
+# removed, and the small final wrapper methods are inlined into the app's own code.
+#
+# UNVERIFIED: no shrink report has been recorded for these rules yet. The check task of
+# k2j-compat-shrink runs R8 with them and fails if any library class survives.
+
+# Metrics are switched on with -Dk2j.metrics=true, which is not something an Android app is
+# started with. Fixing the flag to false lets the shrinker drop every instrumentation hook in the
+# wrapper methods, which keeps them small enough to inline, and then K2JInstrumentation, K2JMetrics
+# and K2JMetrics$Operation themselves. Apps which do want metrics in a shrunk build can replace
+# this with their own -assumevalues ... return true; rule.
+-assumevalues class com.github.alexdochioiu.k2jcompat.K2JInstrumentation {
+    static boolean ENABLED return false;
+}
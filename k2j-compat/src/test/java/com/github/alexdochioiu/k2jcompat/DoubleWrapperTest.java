@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class DoubleWrapperTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void take_double_returnsDoubleWrapper() {
+        final Object object = take(5.0);
+        //noinspection ConstantConditions
+        Assert.assertTrue(object instanceof DoubleWrapper);
+    }
+
+    @Test
+    public void chain() {
+        final AtomicBoolean alsoCalled = new AtomicBoolean(false);
+
+        final double returned = take(0.5)
+                .let((in) -> in * 3)
+                .also((in) -> alsoCalled.set(true))
+                .takeIf((in) -> in > 1)
+                .takeUnless(Double::isNaN)
+                .unwrap();
+
+        Assert.assertEquals(1.5, returned, DELTA);
+        Assert.assertTrue(alsoCalled.get());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void unwrap_absent_throws() {
+        take(1.0).takeIf((in) -> false).unwrap();
+    }
+
+    @Test
+    public void absent_unwrapOrAndLetObj() {
+        final DoubleWrapper absent = take(Double.NaN).takeUnless(Double::isNaN);
+
+        Assert.assertFalse(absent.isPresent());
+        Assert.assertEquals(0.0, absent.unwrapOr(0.0), DELTA);
+        Assert.assertNull(absent.letObj(Double::toString).unwrap());
+    }
+
+    @Test
+    public void _letDouble_fromObjectChain() {
+        Assert.assertEquals(2.25, take("2.25")._letDouble(Double::parseDouble).unwrap(), DELTA);
+        Assert.assertFalse(take((String) null)._letDouble(Double::parseDouble).isPresent());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class IntWrapperTest {
+
+    @Test
+    public void take_int_returnsIntWrapper() {
+        final Object object = take(5);
+        //noinspection ConstantConditions
+        Assert.assertTrue(object instanceof IntWrapper);
+    }
+
+    @Test
+    public void unwrap_returnsValue() {
+        Assert.assertEquals(5, take(5).unwrap());
+        Assert.assertTrue(take(5).isPresent());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void let_crashOnNullIntLet() {
+        take(1).let(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void also_crashOnNullIntAlso() {
+        take(1).also(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void takeIf_crashOnNullIntTake() {
+        take(1).takeIf(null);
+    }
+
+    @Test
+    public void let_chain() {
+        final int returned = take(3)
+                .let((in) -> in * 2)
+                .let((in) -> in + 1)
+                .unwrap();
+
+        Assert.assertEquals(7, returned);
+    }
+
+    @Test
+    public void also_receivesValueAndReturnsSameWrapper() {
+        final AtomicInteger fromAlso = new AtomicInteger();
+
+        final IntWrapper wrapper = take(42);
+        Assert.assertSame(wrapper, wrapper.also(fromAlso::set));
+        Assert.assertEquals(42, fromAlso.get());
+    }
+
+    @Test
+    public void takeIf_keepsOrMakesAbsent() {
+        Assert.assertEquals(4, take(4).takeIf((in) -> in % 2 == 0).unwrap());
+        Assert.assertFalse(take(5).takeIf((in) -> in % 2 == 0).isPresent());
+    }
+
+    @Test
+    public void takeUnless_keepsOrMakesAbsent() {
+        Assert.assertEquals(5, take(5).takeUnless((in) -> in % 2 == 0).unwrap());
+        Assert.assertFalse(take(4).takeUnless((in) -> in % 2 == 0).isPresent());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void unwrap_absent_throws() {
+        take(1).takeIf((in) -> false).unwrap();
+    }
+
+    @Test
+    public void unwrapOr_absent_returnsFallback() {
+        Assert.assertEquals(-1, take(1).takeIf((in) -> false).unwrapOr(-1));
+        Assert.assertEquals(1, take(1).takeIf((in) -> true).unwrapOr(-1));
+    }
+
+    @Test
+    public void absent_skipsEveryLaterStage() {
+        final AtomicBoolean called = new AtomicBoolean(false);
+
+        final IntWrapper absent = take(1).takeIf((in) -> false);
+        final IntWrapper returned = absent
+                .let((in) -> {
+                    called.set(true);
+                    return in;
+                })
+                .also((in) -> called.set(true))
+                .takeIf((in) -> {
+                    called.set(true);
+                    return true;
+                })
+                .takeUnless((in) -> {
+                    called.set(true);
+                    return false;
+                });
+
+        Assert.assertFalse(called.get());
+        Assert.assertSame(absent, returned);
+    }
+
+    @Test
+    public void letObj_leavesPrimitiveChain() {
+        Assert.assertEquals("6", take(6).letObj(Integer::toString).unwrap());
+        Assert.assertNull(take(6).takeIf((in) -> false).letObj(Integer::toString).unwrap());
+    }
+
+    @Test
+    public void _letInt_parsesIntoPrimitiveChain() {
+        final int returned = take("889944")
+                ._takeIf((it) -> it.matches("[0-9]+"))
+                ._letInt(Integer::parseInt)
+                .let((in) -> in + 1)
+                .unwrap();
+
+        Assert.assertEquals(889945, returned);
+    }
+
+    @Test
+    public void _letInt_nullInput_isAbsent() {
+        final int returned = take("88a9944")
+                ._takeIf((it) -> it.matches("[0-9]+"))
+                ._letInt(Integer::parseInt)
+                .unwrapOr(-1);
+
+        Assert.assertEquals(-1, returned);
+    }
+}
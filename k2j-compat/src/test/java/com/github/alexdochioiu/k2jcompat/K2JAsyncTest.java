@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.alexdochioiu.k2jcompat.K2JAsync.takeAsync;
+import static com.github.alexdochioiu.k2jcompat.K2JAsync.takeFuture;
+
+public class K2JAsyncTest {
+
+    private static final String THREAD_NAME = "k2j-async-test";
+
+    private ExecutorService delegate;
+    private Executor executor;
+    private AtomicInteger submitted;
+
+    @Before
+    public void setUp() {
+        submitted = new AtomicInteger();
+        delegate = Executors.newSingleThreadExecutor((runnable) -> new Thread(runnable, THREAD_NAME));
+        executor = (command) -> {
+            submitted.incrementAndGet();
+            delegate.execute(command);
+        };
+    }
+
+    @After
+    public void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letAsync_crashOnNullILet() {
+        takeAsync("").letAsync(null, executor);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letAsync_crashOnNullExecutor() {
+        takeAsync("").letAsync((it) -> it, null);
+    }
+
+    @Test
+    public void letAsync_runsOnExecutor() {
+        final AtomicReference<String> threadName = new AtomicReference<>();
+
+        final String returned = takeAsync("Hello ")
+                .letAsync((it) -> {
+                    threadName.set(Thread.currentThread().getName());
+                    return it + "World";
+                }, executor)
+                .letAsync((it) -> it + "!", executor)
+                .unwrap();
+
+        Assert.assertEquals("Hello World!", returned);
+        Assert.assertEquals(THREAD_NAME, threadName.get());
+    }
+
+    @Test
+    public void letAsync_doesNotBlockCaller() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final CompletableFuture<Integer> future = takeAsync("slow")
+                .letAsync((it) -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return it.length();
+                }, executor)
+                .toFuture();
+
+        Assert.assertFalse(future.isDone());
+        release.countDown();
+        Assert.assertEquals(Integer.valueOf(4), future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void letAsync_acceptsNull() {
+        final String returned = takeAsync((String) null)
+                .letAsync(String::valueOf, executor)
+                .unwrap();
+
+        Assert.assertEquals("null", returned);
+    }
+
+    @Test
+    public void nullSafeStages_shortCircuitWithoutSubmitting() {
+        final AtomicBoolean called = new AtomicBoolean(false);
+
+        final Integer returned = takeAsync("Hello")
+                .letAsync((it) -> (String) null, executor)
+                ._letAsync((it) -> {
+                    called.set(true);
+                    return it;
+                }, executor)
+                ._alsoAsync((it) -> called.set(true), executor)
+                ._takeIfAsync((it) -> {
+                    called.set(true);
+                    return true;
+                }, executor)
+                ._takeUnlessAsync((it) -> {
+                    called.set(true);
+                    return false;
+                }, executor)
+                ._letAsync(String::length, executor)
+                .unwrap();
+
+        Assert.assertNull(returned);
+        Assert.assertFalse(called.get());
+        Assert.assertEquals(1, submitted.get());
+    }
+
+    @Test
+    public void alsoAndTakes_async() {
+        final AtomicReference<String> fromAlso = new AtomicReference<>();
+
+        Assert.assertEquals("abc", takeAsync("abc")
+                .alsoAsync(fromAlso::set, executor)
+                .takeIfAsync((it) -> it.startsWith("a"), executor)
+                ._takeUnlessAsync(String::isEmpty, executor)
+                .unwrap());
+        Assert.assertEquals("abc", fromAlso.get());
+
+        Assert.assertNull(takeAsync("abc").takeUnlessAsync((it) -> true, executor).unwrap());
+        Assert.assertNull(takeAsync("abc")._takeIfAsync((it) -> false, executor).unwrap());
+    }
+
+    @Test
+    public void takeFuture_waitsForSourceFuture() {
+        final CompletableFuture<String> source = new CompletableFuture<>();
+
+        final CompletableFuture<Integer> future = takeFuture(source)
+                ._letAsync(String::length, executor)
+                .toFuture();
+
+        Assert.assertFalse(future.isDone());
+        source.complete("four");
+        Assert.assertEquals(Integer.valueOf(4), future.join());
+    }
+
+    @Test
+    public void failedStage_failsRestOfChain() {
+        final AtomicBoolean laterStageCalled = new AtomicBoolean(false);
+
+        try {
+            takeAsync("boom")
+                    .<String>letAsync((it) -> {
+                        throw new IllegalStateException(it);
+                    }, executor)
+                    .alsoAsync((it) -> laterStageCalled.set(true), executor)
+                    .unwrap();
+            Assert.fail("expected the chain to fail");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertFalse(laterStageCalled.get());
+    }
+}
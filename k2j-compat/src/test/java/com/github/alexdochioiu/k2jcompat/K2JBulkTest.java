@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.takeAll;
+
+public class K2JBulkTest {
+
+    private static final String[] INPUT = {" 1 ", null, "x", " 22", "333 ", ""};
+
+    @Test(expected = NullPointerException.class)
+    public void takeAll_crashOnNullArray() {
+        takeAll((String[]) null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void takeAll_crashOnNullList() {
+        takeAll((List<String>) null);
+    }
+
+    @Test
+    public void unwrapInto_array_keepsIndices() {
+        final Integer[] out = takeAll(INPUT)
+                ._let(String::trim)
+                ._takeIf((it) -> it.matches("[0-9]+"))
+                ._let(Integer::parseInt)
+                .unwrapInto(new Integer[INPUT.length]);
+
+        Assert.assertArrayEquals(new Integer[]{1, null, null, 22, 333, null}, out);
+    }
+
+    @Test
+    public void unwrapInto_list_keepsIndices() {
+        final String[] out = takeAll(Arrays.asList(INPUT))
+                ._let(String::trim)
+                .takeUnless((it) -> it == null || it.isEmpty())
+                .unwrapInto(new String[INPUT.length]);
+
+        Assert.assertArrayEquals(new String[]{"1", null, "x", "22", "333", null}, out);
+    }
+
+    @Test
+    public void unwrapInto_linkedList_keepsIndices() {
+        final String[] out = takeAll(new LinkedList<>(Arrays.asList(INPUT)))
+                ._let(String::trim)
+                ._takeIf((it) -> it.length() > 1)
+                .unwrapInto(new String[INPUT.length]);
+
+        Assert.assertArrayEquals(new String[]{null, null, null, "22", "333", null}, out);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unwrapInto_crashOnShortOutput() {
+        takeAll(INPUT).unwrapInto(new String[INPUT.length - 1]);
+    }
+
+    @Test
+    public void compactInto_writesSurvivorsInOrder() {
+        final Integer[] out = new Integer[INPUT.length];
+        final int count = takeAll(INPUT)
+                ._let(String::trim)
+                ._takeIf((it) -> it.matches("[0-9]+"))
+                ._let(Integer::parseInt)
+                .compactInto(out);
+
+        Assert.assertEquals(3, count);
+        Assert.assertArrayEquals(new Integer[]{1, 22, 333}, Arrays.copyOf(out, count));
+    }
+
+    @Test
+    public void compactInto_linkedList_writesSurvivorsInOrder() {
+        final String[] out = new String[INPUT.length];
+        final int count = takeAll(new LinkedList<>(Arrays.asList(INPUT)))
+                ._takeIf((it) -> !it.isEmpty())
+                .compactInto(out);
+
+        Assert.assertEquals(4, count);
+        Assert.assertArrayEquals(new String[]{" 1 ", "x", " 22", "333 "}, Arrays.copyOf(out, count));
+    }
+
+    @Test
+    public void toList_returnsSurvivorsInOrder() {
+        final List<Integer> out = takeAll(Arrays.asList(INPUT))
+                ._let(String::length)
+                ._takeUnless((it) -> it < 2)
+                .toList();
+
+        Assert.assertEquals(Arrays.asList(3, 3, 4), out);
+    }
+
+    @Test
+    public void also_runsOncePerElement() {
+        final AtomicInteger alsoCalls = new AtomicInteger();
+        final AtomicInteger nullSafeAlsoCalls = new AtomicInteger();
+
+        takeAll(INPUT)
+                .also((it) -> alsoCalls.incrementAndGet())
+                ._also((it) -> nullSafeAlsoCalls.incrementAndGet())
+                .toList();
+
+        Assert.assertEquals(INPUT.length, alsoCalls.get());
+        Assert.assertEquals(INPUT.length - 1, nullSafeAlsoCalls.get());
+    }
+
+    @Test
+    public void stagesDoNotRunUntilTerminal() {
+        final AtomicInteger letCalls = new AtomicInteger();
+
+        final K2JBulk<String, String> bulk = takeAll(INPUT).let((it) -> {
+            letCalls.incrementAndGet();
+            return it;
+        });
+
+        Assert.assertEquals(0, letCalls.get());
+        Assert.assertEquals(INPUT.length, bulk.size());
+        bulk.toList();
+        Assert.assertEquals(INPUT.length, letCalls.get());
+    }
+
+    @Test
+    public void emptyInput() {
+        Assert.assertEquals(Collections.<String>emptyList(), takeAll(new ArrayList<String>()).toList());
+        Assert.assertEquals(0, takeAll(new String[0]).compactInto(new String[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void splitThreshold_crashOnZero() {
+        takeAll(INPUT).splitThreshold(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void parallel_crashOnNullPool() {
+        takeAll(INPUT).parallel(null);
+    }
+
+    @Test
+    public void parallel_matchesSequentialAndKeepsOrder() {
+        final Integer[] input = largeInput();
+
+        final K2JBulk<Integer, String> bulk = takeAll(input)
+                ._takeUnless((it) -> it % 3 == 0)
+                ._let(Integer::toHexString);
+
+        final String[] sequential = bulk.unwrapInto(new String[input.length]);
+        final String[] parallel = bulk.parallel().splitThreshold(64).unwrapInto(new String[input.length]);
+        Assert.assertArrayEquals(sequential, parallel);
+
+        Assert.assertEquals(bulk.toList(), bulk.parallel().toList());
+        Assert.assertEquals(bulk.toList(), bulk.parallel().splitThreshold(1).toList());
+
+        final String[] compacted = new String[input.length];
+        final int count = bulk.parallel().splitThreshold(100).compactInto(compacted);
+        Assert.assertEquals(bulk.toList(), Arrays.asList(compacted).subList(0, count));
+    }
+
+    @Test
+    public void parallel_linkedList_matchesSequential() {
+        final List<Integer> input = new LinkedList<>(Arrays.asList(largeInput()));
+
+        final K2JBulk<Integer, Integer> bulk = takeAll(input)._let((it) -> it * 2);
+
+        Assert.assertEquals(bulk.toList(), bulk.parallel().splitThreshold(128).toList());
+    }
+
+    @Test
+    public void parallel_runsOnGivenPool() {
+        final ForkJoinPool pool = new ForkJoinPool(2, (forkJoinPool) -> {
+            final ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("k2j-test-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        final Set<String> threadNames = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        try {
+            takeAll(largeInput())
+                    .also((it) -> threadNames.add(Thread.currentThread().getName()))
+                    .parallel(pool)
+                    .splitThreshold(16)
+                    .toList();
+        } finally {
+            pool.shutdown();
+        }
+
+        Assert.assertFalse(threadNames.isEmpty());
+        for (final String name : threadNames) {
+            Assert.assertTrue(name, name.startsWith("k2j-test-"));
+        }
+    }
+
+    @Test
+    public void parallel_sequential_runsOnCallingThread() {
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        takeAll(largeInput())
+                .also((it) -> threads.add(Thread.currentThread()))
+                .parallel()
+                .sequential()
+                .toList();
+
+        Assert.assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parallel_propagatesStageFailure() {
+        takeAll(largeInput())
+                ._let((it) -> {
+                    if (it == 5000) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return it;
+                })
+                .parallel()
+                .splitThreshold(32)
+                .toList();
+    }
+
+    private static Integer[] largeInput() {
+        final Integer[] input = new Integer[10_000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = i % 7 == 0 ? null : i;
+        }
+        return input;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JCacheTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_crashOnNonPositiveSize() {
+        K2JCache.builder().maximumSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_crashOnNonPositiveDuration() {
+        K2JCache.builder().expireAfterWrite(0, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void builder_crashOnNullKeyExtractor() {
+        K2JCache.builder().keyExtractor(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letCached_crashOnNullCache() {
+        take("").letCached((it) -> it, null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letCached_crashOnNullILet() {
+        take("").letCached(null, K2JCache.<String, String>builder().build());
+    }
+
+    @Test
+    public void letCached_runsOnlyOnMiss() {
+        final K2JCache<String, Integer> cache = K2JCache.<String, Integer>builder().build();
+        final AtomicInteger calls = new AtomicInteger();
+        final K2JCompat.ILet<String, Integer> length = (it) -> {
+            calls.incrementAndGet();
+            return it.length();
+        };
+
+        Assert.assertEquals(5, (int) take("Hello").letCached(length, cache).unwrap());
+        Assert.assertEquals(5, (int) take("Hello").letCached(length, cache).unwrap());
+        Assert.assertEquals(4, (int) take("Test").letCached(length, cache).unwrap());
+
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void letCached_passesAndCachesNullInput() {
+        final K2JCache<String, String> cache = K2JCache.<String, String>builder()
+                .keyExtractor((it) -> {
+                    throw new AssertionError("null input must not reach the key extractor");
+                })
+                .build();
+        final AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            final String result = take((String) null)
+                    .letCached((it) -> {
+                        calls.incrementAndGet();
+                        return it == null ? "was null" : it;
+                    }, cache)
+                    .unwrap();
+            Assert.assertEquals("was null", result);
+        }
+
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void _letCached_skipsNull() {
+        final K2JCache<String, String> cache = K2JCache.<String, String>builder().build();
+
+        final K2JCompat.K2JWrapper<String> result = take((String) null)
+                ._letCached((it) -> {
+                    Assert.fail("_letCached must not run on null");
+                    return it;
+                }, cache);
+
+        Assert.assertSame(K2JCompat.K2JWrapper.empty(), result);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void get_cachesNullResults() {
+        final K2JCache<String, String> cache = K2JCache.<String, String>builder().build();
+        final AtomicInteger calls = new AtomicInteger();
+        final K2JCompat.ILet<String, String> nothing = (it) -> {
+            calls.incrementAndGet();
+            return null;
+        };
+
+        Assert.assertNull(take("Hello")._letCached(nothing, cache).unwrap());
+        Assert.assertNull(take("Hello")._letCached(nothing, cache).unwrap());
+
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void keyExtractor_sharesResultsBetweenInputs() {
+        final K2JCache<String, String> cache = K2JCache.<String, String>builder()
+                .keyExtractor(String::toLowerCase)
+                .build();
+        final AtomicInteger calls = new AtomicInteger();
+        final K2JCompat.ILet<String, String> upper = (it) -> {
+            calls.incrementAndGet();
+            return it.toUpperCase();
+        };
+
+        Assert.assertEquals("HELLO", cache.get("Hello", upper));
+        Assert.assertEquals("HELLO", cache.get("hELLO", upper));
+
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void keyExtractor_returningNull_throwsNamingIt() {
+        final K2JCache<String, String> cache = K2JCache.<String, String>builder()
+                .keyExtractor((it) -> null)
+                .build();
+
+        try {
+            cache.get("a", (it) -> it);
+            Assert.fail();
+        } catch (NullPointerException e) {
+            Assert.assertEquals("keyExtractor returned null for a non-null input", e.getMessage());
+        }
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void maximumSize_evictsLeastRecentlyUsed() {
+        // a single segment, so the eviction order is deterministic
+        final K2JCache<Integer, Integer> cache = K2JCache.<Integer, Integer>builder()
+                .maximumSize(1)
+                .build();
+        final AtomicInteger calls = new AtomicInteger();
+        final K2JCompat.ILet<Integer, Integer> twice = (it) -> {
+            calls.incrementAndGet();
+            return it * 2;
+        };
+
+        cache.get(1, twice);
+        cache.get(2, twice);
+        cache.get(1, twice);
+
+        Assert.assertEquals(3, calls.get());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void maximumSize_neverExceeded() {
+        final K2JCache<Integer, Integer> cache = K2JCache.<Integer, Integer>builder()
+                .maximumSize(100)
+                .build();
+
+        for (int i = 0; i < 10_000; i++) {
+            cache.get(i, (it) -> it);
+        }
+
+        Assert.assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void expireAfterWrite_reloadsOldEntries() {
+        final long[] now = {0};
+        final K2JCache<String, Integer> cache = K2JCache.<String, Integer>builder()
+                .expireAfterWrite(10, TimeUnit.SECONDS)
+                .ticker(new K2JCache.Ticker() {
+                    @Override
+                    long read() {
+                        return now[0];
+                    }
+                })
+                .build();
+        final AtomicInteger calls = new AtomicInteger();
+        final K2JCompat.ILet<String, Integer> length = (it) -> {
+            calls.incrementAndGet();
+            return it.length();
+        };
+
+        cache.get("Hello", length);
+        now[0] = TimeUnit.SECONDS.toNanos(9);
+        cache.get("Hello", length);
+        Assert.assertEquals(1, calls.get());
+
+        now[0] = TimeUnit.SECONDS.toNanos(10);
+        cache.get("Hello", length);
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void invalidateAll_clearsEntries() {
+        final K2JCache<String, Integer> cache = K2JCache.<String, Integer>builder().build();
+        cache.get("Hello", String::length);
+
+        cache.invalidateAll();
+
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void concurrentAccess_returnsConsistentResults() throws Exception {
+        final K2JCache<Integer, Integer> cache = K2JCache.<Integer, Integer>builder()
+                .maximumSize(64)
+                .build();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = 0; i < 20_000; i++) {
+                            final int key = i % 128;
+                            if (cache.get(key, (it) -> it * 3) != key * 3) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (final Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertTrue(cache.size() <= 64);
+    }
+}
@@ -603,7 +603,7 @@ public class K2JCompatTest {
 
     @Test
     public void chain_mixed_1() {
-        final int input = 102;
+        final Integer input = 102; // boxed, take(int) would give an IntWrapper
         final SimpleClass simpleClass = new SimpleClass();
 
         final SimpleClass returned = take(input)
@@ -618,7 +618,7 @@ public class K2JCompatTest {
 
     @Test
     public void chain_mixed_2() {
-        final int input = 102;
+        final Integer input = 102; // boxed, take(int) would give an IntWrapper
         final SimpleClass simpleClass = new SimpleClass();
 
         final SimpleClass returned = take(input)
@@ -660,6 +660,28 @@ public class K2JCompatTest {
         Assert.assertNull(returned);
     }
 
+    @Test
+    public void take_null_returnsSharedEmptyWrapper() {
+        Assert.assertSame(take(null), take((SimpleClass) null));
+    }
+
+    @Test
+    public void shortCircuit_keepsSharedEmptyWrapperThroughChain() {
+        final K2JCompat.K2JWrapper<String> empty = take(null);
+
+        Assert.assertSame(empty, take("").takeIf((in) -> false));
+        Assert.assertSame(empty, take("").takeUnless((in) -> true));
+        Assert.assertSame(empty, take("")._takeIf((in) -> false));
+        Assert.assertSame(empty, take("")._takeUnless((in) -> true));
+        Assert.assertSame(empty, take("").let((in) -> null));
+        Assert.assertSame(empty, take("")._let((in) -> null));
+        Assert.assertSame(empty, empty
+                ._let(String::length)
+                ._also((in) -> Assert.fail("this _also should not have been called"))
+                ._takeIf((in) -> true)
+                ._takeUnless((in) -> false));
+    }
+
    /* @Test TODO custom lint to warn against this case
     public void chain_takeIfTakeUnless_2() {
         final int input = 102;
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JMetrics.Operation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class K2JCountingMetricsTest {
+
+    @Test
+    public void countsCallsAndShortCircuitsPerOperation() {
+        final K2JCountingMetrics metrics = new K2JCountingMetrics();
+
+        metrics.onCall(Operation.LET);
+        metrics.onCall(Operation.LET);
+        metrics.onCall(Operation.NULL_SAFE_TAKE_IF);
+        metrics.onShortCircuit(Operation.NULL_SAFE_TAKE_IF);
+
+        final K2JCountingMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(2, snapshot.calls(Operation.LET));
+        Assert.assertEquals(0, snapshot.shortCircuits(Operation.LET));
+        Assert.assertEquals(1, snapshot.calls(Operation.NULL_SAFE_TAKE_IF));
+        Assert.assertEquals(1, snapshot.shortCircuits(Operation.NULL_SAFE_TAKE_IF));
+        Assert.assertEquals(0, snapshot.calls(Operation.ALSO));
+    }
+
+    @Test
+    public void snapshot_isNotUpdatedAfterwards() {
+        final K2JCountingMetrics metrics = new K2JCountingMetrics();
+        final K2JCountingMetrics.Snapshot snapshot = metrics.snapshot();
+
+        metrics.onCall(Operation.LET);
+        metrics.onStage("parse", 10);
+
+        Assert.assertEquals(0, snapshot.calls(Operation.LET));
+        Assert.assertTrue(snapshot.stages().isEmpty());
+    }
+
+    @Test
+    public void stage_recordsLatencies() {
+        final K2JCountingMetrics metrics = new K2JCountingMetrics();
+
+        for (int i = 1; i <= 100; i++) {
+            metrics.onStage("parse", i * 10);
+        }
+        metrics.onStage("other", 5);
+
+        final K2JCountingMetrics.StageSnapshot parse = metrics.snapshot().stages().get("parse");
+        Assert.assertEquals(100, parse.count());
+        Assert.assertEquals(50500, parse.totalNanos());
+        Assert.assertEquals(505, parse.meanNanos());
+        Assert.assertEquals(1000, parse.maxNanos());
+        Assert.assertEquals(1, metrics.snapshot().stages().get("other").count());
+    }
+
+    @Test
+    public void percentile_isWithinAFactorOfTwo() {
+        final K2JCountingMetrics metrics = new K2JCountingMetrics();
+        for (int i = 1; i <= 1000; i++) {
+            metrics.onStage("parse", i);
+        }
+
+        final K2JCountingMetrics.StageSnapshot parse = metrics.snapshot().stages().get("parse");
+
+        final long p50 = parse.percentileNanos(50);
+        Assert.assertTrue("p50 was " + p50, p50 >= 500 && p50 < 1000);
+        Assert.assertEquals(1000, parse.percentileNanos(100));
+        Assert.assertEquals(1, parse.percentileNanos(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentile_crashOutOfRange() {
+        final K2JCountingMetrics metrics = new K2JCountingMetrics();
+        metrics.onStage("parse", 1);
+
+        metrics.snapshot().stages().get("parse").percentileNanos(101);
+    }
+
+    @Test
+    public void bucketOf_isLog2() {
+        Assert.assertEquals(0, K2JCountingMetrics.bucketOf(0));
+        Assert.assertEquals(1, K2JCountingMetrics.bucketOf(1));
+        Assert.assertEquals(2, K2JCountingMetrics.bucketOf(2));
+        Assert.assertEquals(2, K2JCountingMetrics.bucketOf(3));
+        Assert.assertEquals(11, K2JCountingMetrics.bucketOf(1024));
+        Assert.assertEquals(63, K2JCountingMetrics.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        final K2JCountingMetrics metrics = new K2JCountingMetrics();
+        metrics.onCall(Operation.ALSO);
+        metrics.onShortCircuit(Operation.NULL_SAFE_ALSO);
+        metrics.onStage("parse", 1);
+
+        metrics.reset();
+
+        final K2JCountingMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(0, snapshot.calls(Operation.ALSO));
+        Assert.assertEquals(0, snapshot.shortCircuits(Operation.NULL_SAFE_ALSO));
+        Assert.assertTrue(snapshot.stages().isEmpty());
+    }
+
+    @Test
+    public void concurrentUpdates_areNotLost() throws InterruptedException {
+        final K2JCountingMetrics metrics = new K2JCountingMetrics();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.onCall(Operation.LET);
+                    metrics.onStage("parse", i);
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final K2JCountingMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(40_000, snapshot.calls(Operation.LET));
+        Assert.assertEquals(40_000, snapshot.stages().get("parse").count());
+        Assert.assertEquals(9_999, snapshot.stages().get("parse").maxNanos());
+    }
+}
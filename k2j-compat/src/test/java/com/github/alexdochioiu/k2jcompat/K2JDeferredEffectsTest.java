@@ -0,0 +1,312 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JDeferredEffects.OverflowPolicy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JDeferredEffectsTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_crashOnNonPositiveCapacity() {
+        K2JDeferredEffects.builder().capacity(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_crashOnNonPositiveBatchSize() {
+        K2JDeferredEffects.builder().batchSize(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void alsoDeferred_crashOnNullEffects() {
+        take("").alsoDeferred((it) -> { }, null);
+    }
+
+    @Test
+    public void alsoDeferred_runsOnTheDrainerThread() throws InterruptedException {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder().build();
+        final CountDownLatch ran = new CountDownLatch(1);
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+
+        final String result = take("Hello")
+                .alsoDeferred((it) -> {
+                    thread.set(Thread.currentThread());
+                    ran.countDown();
+                }, effects)
+                .unwrap();
+
+        Assert.assertEquals("Hello", result);
+        Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+        Assert.assertNotSame(Thread.currentThread(), thread.get());
+        Assert.assertTrue(thread.get().isDaemon());
+        effects.close();
+    }
+
+    @Test
+    public void withoutDrainer_effectsRunInOrderOnFlush() {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder().drainInBackground(false).build();
+        final List<String> seen = new ArrayList<>();
+
+        take("a").alsoDeferred(seen::add, effects);
+        take("b").alsoDeferred(seen::add, effects);
+        Assert.assertEquals(Collections.emptyList(), seen);
+        Assert.assertEquals(2, effects.pendingCount());
+
+        effects.flush();
+
+        Assert.assertEquals(Arrays.asList("a", "b"), seen);
+        Assert.assertEquals(0, effects.pendingCount());
+    }
+
+    @Test
+    public void nullSafeVariant_skipsNull() {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder().drainInBackground(false).build();
+        final List<String> seen = new ArrayList<>();
+
+        take((String) null)._alsoDeferred(seen::add, effects);
+        take((String) null).alsoDeferred(seen::add, effects);
+        take("a")._alsoDeferred(seen::add, effects);
+        effects.flush();
+
+        Assert.assertEquals(Arrays.asList(null, "a"), seen);
+    }
+
+    @Test
+    public void dropPolicy_discardsWhenFull() {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                .drainInBackground(false)
+                .capacity(2)
+                .overflowPolicy(OverflowPolicy.DROP)
+                .build();
+        final List<Integer> seen = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            effects.defer(seen::add, i);
+        }
+        effects.flush();
+
+        Assert.assertEquals(Arrays.asList(0, 1), seen);
+        Assert.assertEquals(3, effects.droppedCount());
+    }
+
+    @Test
+    public void capacity_isRoundedUpToAPowerOfTwo() {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                .drainInBackground(false)
+                .capacity(3)
+                .overflowPolicy(OverflowPolicy.DROP)
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            effects.defer((it) -> { }, i);
+        }
+
+        Assert.assertEquals(4, effects.pendingCount());
+        Assert.assertEquals(1, effects.droppedCount());
+    }
+
+    @Test
+    public void runInlinePolicy_runsInTheCallerWhenFull() {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                .drainInBackground(false)
+                .capacity(2)
+                .overflowPolicy(OverflowPolicy.RUN_INLINE)
+                .build();
+        final List<Integer> seen = new ArrayList<>();
+
+        effects.defer(seen::add, 1);
+        effects.defer(seen::add, 2);
+        effects.defer(seen::add, 3);
+        Assert.assertEquals(Collections.singletonList(3), seen);
+
+        effects.flush();
+        Assert.assertEquals(Arrays.asList(3, 1, 2), seen);
+    }
+
+    @Test
+    public void blockPolicy_withoutDrainer_makesRoomItself() {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                .drainInBackground(false)
+                .capacity(2)
+                .batchSize(1)
+                .build();
+        final List<Integer> seen = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            effects.defer(seen::add, i);
+        }
+        Assert.assertEquals(Arrays.asList(0, 1, 2), seen);
+
+        effects.flush();
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), seen);
+        Assert.assertEquals(0, effects.droppedCount());
+    }
+
+    @Test
+    public void exceptions_goToTheErrorHandler() {
+        final List<Throwable> errors = new ArrayList<>();
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                .drainInBackground(false)
+                .errorHandler(errors::add)
+                .build();
+        final List<String> seen = new ArrayList<>();
+        final IllegalStateException failure = new IllegalStateException();
+
+        effects.defer((it) -> {
+            throw failure;
+        }, "a");
+        effects.defer(seen::add, "b");
+        effects.flush();
+
+        Assert.assertEquals(Collections.<Throwable>singletonList(failure), errors);
+        Assert.assertEquals(Collections.singletonList("b"), seen);
+    }
+
+    @Test
+    public void errors_goToTheErrorHandlerAndDoNotStopTheDrainer() {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                .errorHandler(errors::add)
+                .build();
+        final List<String> seen = Collections.synchronizedList(new ArrayList<String>());
+        final AssertionError failure = new AssertionError("effect");
+
+        effects.defer((it) -> {
+            throw failure;
+        }, "a");
+        effects.flush();
+        effects.defer(seen::add, "b");
+        effects.close();
+
+        Assert.assertEquals(Collections.<Throwable>singletonList(failure), errors);
+        Assert.assertEquals(Collections.singletonList("b"), seen);
+        Assert.assertEquals(0, effects.pendingCount());
+    }
+
+    @Test
+    public void throwingErrorHandler_goesToUncaughtHandlerAndFlushReturns() {
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        final List<Throwable> uncaught = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> uncaught.add(error));
+        try {
+            final IllegalStateException handlerFailure = new IllegalStateException("handler");
+            final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                    .errorHandler((error) -> {
+                        throw handlerFailure;
+                    })
+                    .build();
+            final List<String> seen = Collections.synchronizedList(new ArrayList<String>());
+
+            for (int i = 0; i < 10; i++) {
+                effects.defer((it) -> {
+                    throw new StackOverflowError();
+                }, "a");
+            }
+            effects.flush();
+            effects.defer(seen::add, "b");
+            effects.close();
+
+            Assert.assertEquals(10, uncaught.size());
+            for (final Throwable error : uncaught) {
+                Assert.assertSame(handlerFailure, error);
+            }
+            Assert.assertEquals(Collections.singletonList("b"), seen);
+            Assert.assertEquals(0, effects.pendingCount());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+    }
+
+    @Test
+    public void close_runsWhatIsLeftThenRunsInline() {
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder().batchSize(1).build();
+        final AtomicLong sum = new AtomicLong();
+
+        for (int i = 1; i <= 100; i++) {
+            effects.defer(sum::addAndGet, (long) i);
+        }
+        effects.close();
+
+        Assert.assertTrue(effects.isClosed());
+        Assert.assertEquals(5050, sum.get());
+        Assert.assertEquals(0, effects.pendingCount());
+
+        final List<Thread> threads = new ArrayList<>();
+        effects.defer((it) -> threads.add(Thread.currentThread()), "late");
+        Assert.assertEquals(Collections.singletonList(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void concurrentProducers_noEffectIsLostOrRunTwice() throws Exception {
+        for (final OverflowPolicy policy : OverflowPolicy.values()) {
+            final K2JDeferredEffects effects = K2JDeferredEffects.builder()
+                    .capacity(16)
+                    .batchSize(4)
+                    .overflowPolicy(policy)
+                    .build();
+            final AtomicLong sum = new AtomicLong();
+            final AtomicLong count = new AtomicLong();
+            final int producers = 4;
+            final int perProducer = 20_000;
+
+            final ExecutorService executor = Executors.newFixedThreadPool(producers);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int p = 0; p < producers; p++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 1; i <= perProducer; i++) {
+                            effects.defer((it) -> {
+                                sum.addAndGet(it);
+                                count.incrementAndGet();
+                            }, (long) i);
+                            if (i % 5_000 == 0) {
+                                effects.flush();
+                            }
+                        }
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdown();
+            }
+            effects.close();
+
+            final long expectedCount = producers * perProducer - effects.droppedCount();
+            Assert.assertEquals(policy.name(), expectedCount, count.get());
+            if (policy != OverflowPolicy.DROP) {
+                Assert.assertEquals(policy.name(), producers * (long) perProducer * (perProducer + 1) / 2, sum.get());
+            }
+        }
+    }
+}
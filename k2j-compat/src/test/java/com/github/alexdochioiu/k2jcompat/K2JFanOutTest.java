@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JFanOutTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void letAll_twoStages_combinesTheirResults() {
+        final String result = take("Hello")
+                .letAll(String::length, String::toUpperCase, (length, upper) -> upper + length, executor)
+                .unwrap();
+
+        Assert.assertEquals("HELLO5", result);
+    }
+
+    @Test
+    public void letAll_threeStages_combinesInOrder() {
+        final String result = take(Integer.valueOf(21))
+                .letAll((it) -> it + 1, (it) -> it * 2, (it) -> -it, (first, second, third) -> first + "," + second + "," + third, executor)
+                .unwrap();
+
+        Assert.assertEquals("22,42,-21", result);
+    }
+
+    @Test
+    public void letAll_runsStagesAtTheSameTime() {
+        final CountDownLatch started = new CountDownLatch(3);
+        final Integer result = take(Integer.valueOf(1))
+                .letAll((it) -> awaitOthers(started, it), (it) -> awaitOthers(started, it), (it) -> awaitOthers(started, it),
+                        (first, second, third) -> first + second + third, executor)
+                .unwrap();
+
+        Assert.assertEquals(Integer.valueOf(3), result);
+    }
+
+    @Test
+    public void letAll_nullResults_areHandedToTheCombiner() {
+        final String result = take("x")
+                .letAll((it) -> (String) null, (it) -> it, (first, second) -> first + second, executor)
+                .unwrap();
+
+        Assert.assertEquals("nullx", result);
+    }
+
+    @Test
+    public void letAll_nullValue_isHandedToTheStages() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Integer result = take((String) null)
+                .letAll((it) -> calls.incrementAndGet(), (it) -> calls.incrementAndGet(), (first, second) -> first + second, executor)
+                .unwrap();
+
+        Assert.assertEquals(Integer.valueOf(3), result);
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void _letAll_nullValue_skipsStagesAndCombiner() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Integer result = take((String) null)
+                ._letAll((it) -> calls.incrementAndGet(), (it) -> calls.incrementAndGet(), (first, second) -> calls.incrementAndGet(), executor)
+                .unwrap();
+
+        Assert.assertNull(result);
+        Assert.assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void _letAll_value_runsLikeLetAll() {
+        final Integer result = take("abc")
+                ._letAll(String::length, String::length, String::length, (first, second, third) -> first + second + third, executor)
+                .unwrap();
+
+        Assert.assertEquals(Integer.valueOf(9), result);
+    }
+
+    @Test
+    public void letAll_failingStage_failsFastAndInterruptsTheOthers() throws InterruptedException {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicInteger combined = new AtomicInteger();
+        final long start = System.nanoTime();
+        try {
+            take("42")
+                    .letAll((it) -> {
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                        return it;
+                    }, (it) -> {
+                        sleep(50);
+                        throw new IllegalStateException("boom");
+                    }, (first, second) -> combined.incrementAndGet(), executor);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("boom", e.getMessage());
+        }
+
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, combined.get());
+    }
+
+    @Test
+    public void letAll_error_isRethrownAsIs() {
+        try {
+            take("42").letAll((it) -> {
+                throw new AssertionError("bad");
+            }, (it) -> it, (first, second) -> second, executor);
+            Assert.fail();
+        } catch (AssertionError e) {
+            Assert.assertEquals("bad", e.getMessage());
+        }
+    }
+
+    @Test
+    public void letAll_interruptedCaller_givesNullAndKeepsInterrupt() throws InterruptedException {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final Thread caller = Thread.currentThread();
+        try {
+            final Integer result = take("42")
+                    .letAll((it) -> {
+                        caller.interrupt();
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                        return 1;
+                    }, (it) -> 2, (first, second) -> first + second, executor)
+                    .unwrap();
+
+            Assert.assertNull(result);
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void letAll_rejectingExecutor_interruptsStartedStages() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicInteger executed = new AtomicInteger();
+        try {
+            take("42").letAll((it) -> {
+                running.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return it;
+            }, (it) -> it, (first, second) -> first, (command) -> {
+                if (executed.getAndIncrement() > 0) {
+                    awaitQuietly(running);
+                    throw new RejectedExecutionException("full");
+                }
+                executor.execute(command);
+            });
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals("full", e.getMessage());
+        }
+
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letAll_nullStage_throws() {
+        take("42").letAll(String::length, null, (first, second) -> first, executor);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letAll_nullCombiner_throws() {
+        take("42").letAll(String::length, String::length, null, executor);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letAll_nullExecutor_throws() {
+        take("42").letAll(String::length, String::length, (first, second) -> first, null);
+    }
+
+    private static int awaitOthers(final CountDownLatch started, final int value) {
+        started.countDown();
+        try {
+            if (!started.await(5, TimeUnit.SECONDS)) {
+                throw new AssertionError("the stages did not run at the same time");
+            }
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return value;
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+public class K2JInstrumentationTest {
+    private static final String PACKAGE = "com.github.alexdochioiu.k2jcompat.";
+
+    @Test
+    public void disabledByDefault() {
+        Assert.assertFalse(K2JInstrumentation.isEnabled());
+    }
+
+    @Test
+    public void disabled_timedFunctionsAreReturnedUnchanged() {
+        final K2JCompat.ILet<String, Integer> iLet = String::length;
+        final K2JCompat.IAlso<String> iAlso = (it) -> { };
+        final K2JCompat.ITake<String> iTake = String::isEmpty;
+
+        Assert.assertSame(iLet, K2JInstrumentation.timedLet("let", iLet));
+        Assert.assertSame(iAlso, K2JInstrumentation.timedAlso("also", iAlso));
+        Assert.assertSame(iTake, K2JInstrumentation.timedTake("take", iTake));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void timedLet_crashOnNullName() {
+        K2JInstrumentation.timedLet(null, (it) -> it);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void install_crashOnNull() {
+        K2JInstrumentation.install(null);
+    }
+
+    @Test
+    public void disabled_createsNoSinkUntilAskedFor() throws Exception {
+        final URL classes = K2JCompat.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null)) {
+            final Class<?> instrumentation = loader.loadClass(PACKAGE + "K2JInstrumentation");
+            final Field sink = instrumentation.getDeclaredField("metrics");
+            sink.setAccessible(true);
+            final Class<?> compat = loader.loadClass(PACKAGE + "K2JCompat");
+            compat.getMethod("take", Object.class).invoke(null, "Hello");
+
+            Assert.assertNull(sink.get(null));
+            final Object metrics = instrumentation.getMethod("metrics").invoke(null);
+            Assert.assertEquals(PACKAGE + "K2JCountingMetrics", metrics.getClass().getName());
+            Assert.assertSame(metrics, instrumentation.getMethod("metrics").invoke(null));
+        }
+    }
+
+    /**
+     * The flag is read when the library is first used, so the enabled library is loaded again in a
+     * class loader of its own.
+     */
+    @Test
+    public void enabled_reportsOperationsShortCircuitsAndStages() throws Exception {
+        final URL classes = K2JCompat.class.getProtectionDomain().getCodeSource().getLocation();
+        final String previous = System.setProperty(K2JInstrumentation.PROPERTY, "true");
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null)) {
+            final Class<?> compat = loader.loadClass(PACKAGE + "K2JCompat");
+            final Class<?> iLet = loader.loadClass(PACKAGE + "K2JCompat$ILet");
+            final Class<?> iTake = loader.loadClass(PACKAGE + "K2JCompat$ITake");
+            final Class<?> instrumentation = loader.loadClass(PACKAGE + "K2JInstrumentation");
+            final Class<?> wrapper = loader.loadClass(PACKAGE + "K2JCompat$K2JWrapper");
+            final Method takeIf = wrapper.getMethod("takeIf", iTake);
+            final Method nullSafeLet = wrapper.getMethod("_let", iLet);
+
+            final Object reject = Proxy.newProxyInstance(loader, new Class<?>[]{iTake}, (proxy, method, args) -> false);
+            final Object identity = Proxy.newProxyInstance(loader, new Class<?>[]{iLet}, (proxy, method, args) -> args[0]);
+            final Object timed = instrumentation.getMethod("timedLet", String.class, iLet).invoke(null, "identity", identity);
+
+            final Object taken = compat.getMethod("take", Object.class).invoke(null, "Hello");
+            final Object let = nullSafeLet.invoke(taken, timed);       // runs
+            final Object filtered = takeIf.invoke(let, reject);         // filters out
+            nullSafeLet.invoke(filtered, timed);                        // skips the null
+
+            final Object metrics = instrumentation.getMethod("metrics").invoke(null);
+            final Object snapshot = metrics.getClass().getMethod("snapshot").invoke(metrics);
+            final String text = snapshot.toString();
+
+            Assert.assertTrue((Boolean) instrumentation.getMethod("isEnabled").invoke(null));
+            Assert.assertTrue(text, text.contains("NULL_SAFE_LET=2/1"));
+            Assert.assertTrue(text, text.contains("TAKE_IF=1/1"));
+            Assert.assertTrue(text, text.contains("LET=0/0"));
+            Assert.assertTrue(text, text.contains("identity={count=1"));
+        } finally {
+            if (previous == null) {
+                System.clearProperty(K2JInstrumentation.PROPERTY);
+            } else {
+                System.setProperty(K2JInstrumentation.PROPERTY, previous);
+            }
+        }
+    }
+}
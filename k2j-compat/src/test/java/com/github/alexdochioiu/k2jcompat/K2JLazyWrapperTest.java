@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.takeLazy;
+
+public class K2JLazyWrapperTest {
+
+    @Test(expected = NullPointerException.class)
+    public void takeLazy_crashOnNullSupplier() {
+        takeLazy(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void let_crashOnNullILet() {
+        takeLazy(() -> "").let(null);
+    }
+
+    @Test
+    public void nothingRunsUntilUnwrap() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final K2JLazyWrapper<Integer> lazy = takeLazy(() -> {
+            calls.incrementAndGet();
+            return "Hello";
+        })
+                .let((it) -> {
+                    calls.incrementAndGet();
+                    return it + " World";
+                })
+                .also((it) -> calls.incrementAndGet())
+                .takeIf((it) -> {
+                    calls.incrementAndGet();
+                    return true;
+                })
+                ._let(String::length);
+
+        Assert.assertEquals(0, calls.get());
+        Assert.assertFalse(lazy.isEvaluated());
+
+        Assert.assertEquals(Integer.valueOf(11), lazy.unwrap());
+        Assert.assertEquals(4, calls.get());
+        Assert.assertTrue(lazy.isEvaluated());
+    }
+
+    @Test
+    public void unwrap_isMemoized() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final K2JLazyWrapper<String> lazy = takeLazy(() -> "value")
+                .let((it) -> {
+                    calls.incrementAndGet();
+                    return it.toUpperCase();
+                });
+
+        final String first = lazy.unwrap();
+        Assert.assertSame(first, lazy.unwrap());
+        Assert.assertSame(first, lazy.unwrap());
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void unwrap_memoizesNull() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final K2JLazyWrapper<String> lazy = takeLazy(() -> {
+            calls.incrementAndGet();
+            return (String) null;
+        });
+
+        Assert.assertNull(lazy.unwrap());
+        Assert.assertNull(lazy.unwrap());
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void branches_shareEvaluatedPrefix() {
+        final AtomicInteger prefixCalls = new AtomicInteger();
+
+        final K2JLazyWrapper<String> prefix = takeLazy(() -> " shared ")
+                .let((it) -> {
+                    prefixCalls.incrementAndGet();
+                    return it.trim();
+                });
+
+        Assert.assertEquals("SHARED", prefix.let(String::toUpperCase).unwrap());
+        Assert.assertEquals(Integer.valueOf(6), prefix.let(String::length).unwrap());
+        Assert.assertEquals(1, prefixCalls.get());
+    }
+
+    @Test
+    public void nullSemantics_matchWrapper() {
+        final AtomicBoolean nullSafeCalled = new AtomicBoolean(false);
+        final AtomicBoolean alsoCalled = new AtomicBoolean(false);
+
+        final String returned = takeLazy(() -> "Hello")
+                .takeUnless((it) -> true)
+                ._let((it) -> {
+                    nullSafeCalled.set(true);
+                    return it;
+                })
+                ._also((it) -> nullSafeCalled.set(true))
+                ._takeIf((it) -> {
+                    nullSafeCalled.set(true);
+                    return true;
+                })
+                ._takeUnless((it) -> {
+                    nullSafeCalled.set(true);
+                    return false;
+                })
+                .also((it) -> {
+                    alsoCalled.set(true);
+                    Assert.assertNull(it);
+                })
+                .let(String::valueOf)
+                .unwrap();
+
+        Assert.assertEquals("null", returned);
+        Assert.assertFalse(nullSafeCalled.get());
+        Assert.assertTrue(alsoCalled.get());
+    }
+
+    @Test
+    public void failure_isNotMemoized() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final K2JLazyWrapper<Integer> lazy = takeLazy(() -> "value")
+                .let((it) -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("first attempt fails");
+                    }
+                    return it.length();
+                });
+
+        try {
+            lazy.unwrap();
+            Assert.fail("expected the first unwrap to fail");
+        } catch (IllegalStateException expected) {
+            Assert.assertFalse(lazy.isEvaluated());
+        }
+        Assert.assertEquals(Integer.valueOf(5), lazy.unwrap());
+        Assert.assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void concurrentUnwraps_evaluateOnce() throws Exception {
+        final int threads = 8;
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final K2JLazyWrapper<Object> lazy = takeLazy(() -> {
+            calls.incrementAndGet();
+            return new Object();
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return lazy.unwrap();
+                }));
+            }
+            start.countDown();
+
+            final Object first = results.get(0).get();
+            for (final Future<Object> result : results) {
+                Assert.assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, calls.get());
+    }
+}
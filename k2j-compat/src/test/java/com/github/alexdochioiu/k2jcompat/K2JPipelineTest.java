@@ -0,0 +1,303 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ILet;
+import com.github.alexdochioiu.k2jcompat.K2JCompat.ITake;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JPipelineTest {
+
+    @Test
+    public void emptyPipeline_returnsInput() {
+        final Object input = new Object();
+        Assert.assertSame(input, K2JPipeline.start().build().doLet(input));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void let_crashOnNullILet() {
+        K2JPipeline.<String>start().let(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void _takeIf_crashOnNullITake() {
+        K2JPipeline.<String>start()._takeIf(null);
+    }
+
+    @Test
+    public void build_appliesStagesInOrder() {
+        final ILet<String, String> pipeline = K2JPipeline.<String>start()
+                .let((in) -> in + "World")
+                .let((in) -> in + "!")
+                .build();
+
+        Assert.assertEquals("Hello World!", pipeline.doLet("Hello "));
+        Assert.assertEquals("Bye World!", pipeline.doLet("Bye "));
+    }
+
+    @Test
+    public void build_canBeAppliedRepeatedly() {
+        final AtomicInteger alsoCalls = new AtomicInteger();
+        final ILet<String, Integer> parse = K2JPipeline.<String>start()
+                ._let(String::trim)
+                ._takeIf((it) -> it.matches("[0-9]+"))
+                ._let(Integer::parseInt)
+                ._also((it) -> alsoCalls.incrementAndGet())
+                .build();
+
+        Assert.assertEquals(Integer.valueOf(42), parse.doLet(" 42 "));
+        Assert.assertNull(parse.doLet("4x2"));
+        Assert.assertNull(parse.doLet(null));
+        Assert.assertEquals(Integer.valueOf(7), parse.doLet("7"));
+        Assert.assertEquals(2, alsoCalls.get());
+    }
+
+    @Test
+    public void let_acceptsNull() {
+        final AtomicBoolean letCalled = new AtomicBoolean(false);
+        final ILet<String, String> pipeline = K2JPipeline.<String>start()
+                .let((in) -> {
+                    letCalled.set(true);
+                    return in == null ? "was null" : in;
+                })
+                .build();
+
+        Assert.assertEquals("was null", pipeline.doLet(null));
+        Assert.assertTrue(letCalled.get());
+    }
+
+    @Test
+    public void nullSafeStages_areSkippedAfterNull() {
+        final ILet<String, Boolean> pipeline = K2JPipeline.<String>start()
+                ._let((in) -> (String) null)
+                ._let((in) -> {
+                    Assert.fail("this _let should not have been called");
+                    return in;
+                })
+                ._also((in) -> Assert.fail("this _also should not have been called"))
+                ._takeIf((in) -> {
+                    Assert.fail("this _takeIf should not have been called");
+                    return true;
+                })
+                ._takeUnless((in) -> {
+                    Assert.fail("this _takeUnless should not have been called");
+                    return false;
+                })
+                ._let((in) -> in.equals("!"))
+                .build();
+
+        Assert.assertNull(pipeline.doLet("Hello"));
+    }
+
+    @Test
+    public void nonNullSafeStages_stillRunAfterNull() {
+        final AtomicBoolean alsoCalled = new AtomicBoolean(false);
+        final AtomicBoolean takeIfCalled = new AtomicBoolean(false);
+        final ILet<String, String> pipeline = K2JPipeline.<String>start()
+                .takeUnless((in) -> true)
+                ._let(String::trim)
+                .also((in) -> {
+                    alsoCalled.set(true);
+                    Assert.assertNull(in);
+                })
+                .takeIf((in) -> {
+                    takeIfCalled.set(true);
+                    return true;
+                })
+                .let((in) -> "after " + in)
+                .build();
+
+        Assert.assertEquals("after null", pipeline.doLet("Hello"));
+        Assert.assertTrue(alsoCalled.get());
+        Assert.assertTrue(takeIfCalled.get());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void let_chainWithNull() {
+        K2JPipeline.<String>start()
+                .let((in) -> (String) null)
+                .let((in) -> in.equals("!"))
+                .build()
+                .doLet("Hello");
+    }
+
+    @Test
+    public void pipeline_matchesWrapperChain() {
+        final ILet<Integer, String> pipeline = K2JPipeline.<Integer>start()
+                .let((in) -> in + 2)
+                .takeIf((in) -> in % 2 == 0)
+                ._takeUnless((in) -> in > 100)
+                ._let(Integer::toBinaryString)
+                .build();
+
+        for (int i = 0; i < 200; i++) {
+            final Integer input = i;
+            final String expected = take(input)
+                    .let((in) -> in + 2)
+                    .takeIf((in) -> in % 2 == 0)
+                    ._takeUnless((in) -> in > 100)
+                    ._let(Integer::toBinaryString)
+                    .unwrap();
+
+            Assert.assertEquals(expected, pipeline.doLet(input));
+        }
+    }
+
+    @Test
+    public void pipeline_isImmutable() {
+        final K2JPipeline<String, String> trimmed = K2JPipeline.<String>start()._let(String::trim);
+        final ILet<String, Integer> length = trimmed._let(String::length).build();
+        final ILet<String, String> upper = trimmed._let(String::toUpperCase).build();
+
+        Assert.assertEquals(Integer.valueOf(2), length.doLet(" ab "));
+        Assert.assertEquals("AB", upper.doLet(" ab "));
+        Assert.assertEquals("ab", trimmed.build().doLet(" ab "));
+    }
+
+    @Test
+    public void buildWithProbe_matchesBuild() {
+        final K2JPipeline<Integer, String> pipeline = K2JPipeline.<Integer>start()
+                .let((in) -> in == null ? -1 : in + 2)
+                .takeIf((in) -> in % 2 == 0)
+                ._takeUnless((in) -> in > 100)
+                ._let(Integer::toBinaryString);
+        final ILet<Integer, String> fused = pipeline.build();
+        final RecordingProbe probe = new RecordingProbe();
+        final ILet<Integer, String> probed = pipeline.build(probe);
+
+        for (int i = -3; i < 200; i++) {
+            final Integer input = i == -3 ? null : i;
+            Assert.assertEquals(fused.doLet(input), probed.doLet(input));
+        }
+        Assert.assertEquals(203, probe.chains.size());
+    }
+
+    @Test
+    public void stages_canBeReadBack() {
+        final ITake<String> notEmpty = (in) -> !in.isEmpty();
+        final K2JPipeline<String, String> pipeline = K2JPipeline.<String>start()
+                ._let(String::trim)
+                .takeUnless(notEmpty);
+
+        Assert.assertEquals(2, pipeline.size());
+        Assert.assertEquals("_let", pipeline.operation(0));
+        Assert.assertEquals("takeUnless", pipeline.operation(1));
+        Assert.assertSame(notEmpty, pipeline.function(1));
+    }
+
+    @Test
+    public void buildWithProbe_reportsStagesAndShortCircuit() {
+        final RecordingProbe probe = new RecordingProbe();
+        final ILet<String, Integer> probed = K2JPipeline.<String>start()
+                ._let(String::trim)
+                ._takeUnless(String::isEmpty)
+                .also((in) -> { })
+                ._let(String::length)
+                .build(probe);
+
+        Assert.assertEquals(Integer.valueOf(2), probed.doLet(" ab "));
+        Assert.assertEquals("4:-1", probe.chains.get(0));
+        Assert.assertEquals("[0 _let, 1 _takeUnless, 2 also, 3 _let]", probe.stages.toString());
+
+        probe.stages.clear();
+        Assert.assertNull(probed.doLet("   "));
+        // also is not null safe, so the empty value still goes through every stage
+        Assert.assertEquals("4:-1", probe.chains.get(1));
+        Assert.assertEquals("[0 _let, 1 _takeUnless, 2 also, 3 _let]", probe.stages.toString());
+
+        final ILet<String, String> nullSafe = K2JPipeline.<String>start()
+                ._takeIf((in) -> in.startsWith("a"))
+                ._let(String::toUpperCase)
+                .build(probe);
+        probe.stages.clear();
+        Assert.assertNull(nullSafe.doLet("b"));
+        Assert.assertEquals("2:0", probe.chains.get(2));
+        Assert.assertEquals("[0 _takeIf!]", probe.stages.toString());
+    }
+
+    @Test
+    public void buildWithProbe_nullContext_runsWithoutReporting() {
+        final AtomicInteger stages = new AtomicInteger();
+        final ILet<String, String> probed = K2JPipeline.<String>start()
+                ._let(String::trim)
+                .build(new K2JPipeline.Probe() {
+                    @Override
+                    public Object beginChain(int stageCount) {
+                        return null;
+                    }
+
+                    @Override
+                    public Object beginStage(Object chain, int index, String operation, Object function) {
+                        stages.incrementAndGet();
+                        return null;
+                    }
+
+                    @Override
+                    public void endStage(Object chain, Object stage, boolean shortCircuited) {
+                        stages.incrementAndGet();
+                    }
+
+                    @Override
+                    public void endChain(Object chain, int shortCircuitedAt) {
+                        stages.incrementAndGet();
+                    }
+                });
+
+        Assert.assertEquals("ab", probed.doLet(" ab "));
+        Assert.assertEquals(0, stages.get());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void buildWithProbe_crashOnNullProbe() {
+        K2JPipeline.<String>start().build(null);
+    }
+
+    private static final class RecordingProbe implements K2JPipeline.Probe {
+        final List<String> chains = new ArrayList<>();
+        final List<String> stages = new ArrayList<>();
+
+        @Override
+        public Object beginChain(int stageCount) {
+            return stageCount;
+        }
+
+        @Override
+        public Object beginStage(Object chain, int index, String operation, Object function) {
+            Assert.assertNotNull(function);
+            return index + " " + operation;
+        }
+
+        @Override
+        public void endStage(Object chain, Object stage, boolean shortCircuited) {
+            stages.add(shortCircuited ? stage + "!" : (String) stage);
+        }
+
+        @Override
+        public void endChain(Object chain, int shortCircuitedAt) {
+            chains.add(chain + ":" + shortCircuitedAt);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class K2JPoolTest {
+
+    @Test
+    public void borrow_emptyPool_usesFactory() {
+        final AtomicInteger created = new AtomicInteger();
+        final K2JPool<StringBuilder> pool = K2JPool.builder(() -> {
+            created.incrementAndGet();
+            return new StringBuilder();
+        }).build();
+
+        Assert.assertNotNull(pool.borrow());
+        Assert.assertNotNull(pool.borrow());
+        Assert.assertEquals(2, created.get());
+    }
+
+    @Test
+    public void release_thenBorrow_givesSameInstance() {
+        final AtomicInteger created = new AtomicInteger();
+        final K2JPool<StringBuilder> pool = K2JPool.builder(() -> {
+            created.incrementAndGet();
+            return new StringBuilder();
+        }).build();
+
+        final StringBuilder first = pool.borrow();
+        pool.release(first);
+        Assert.assertEquals(1, pool.idle());
+
+        Assert.assertSame(first, pool.borrow());
+        Assert.assertEquals(0, pool.idle());
+        Assert.assertEquals(1, created.get());
+    }
+
+    @Test
+    public void release_runsReset() {
+        final K2JPool<StringBuilder> pool = K2JPool.builder(StringBuilder::new)
+                .reset((it) -> it.setLength(0))
+                .build();
+
+        final StringBuilder builder = pool.borrow().append("dirty");
+        pool.release(builder);
+
+        Assert.assertEquals("", pool.borrow().toString());
+    }
+
+    @Test
+    public void release_failingReset_dropsInstance() {
+        final K2JPool<StringBuilder> pool = K2JPool.builder(StringBuilder::new)
+                .reset((it) -> {
+                    throw new IllegalStateException("cannot reset");
+                })
+                .build();
+
+        try {
+            pool.release(pool.borrow());
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("cannot reset", e.getMessage());
+        }
+        Assert.assertEquals(0, pool.idle());
+    }
+
+    @Test
+    public void release_fullPool_dropsInstances() {
+        final K2JPool<Object> pool = K2JPool.builder(Object::new).maximumIdle(3).build();
+
+        for (int i = 0; i < 10; i++) {
+            pool.release(new Object());
+        }
+
+        Assert.assertTrue(pool.idle() >= 1);
+        Assert.assertTrue(pool.idle() <= 3);
+    }
+
+    @Test
+    public void concurrentUse_neverHandsOneInstanceToTwoThreads() throws InterruptedException {
+        final K2JPool<AtomicInteger> pool = K2JPool.builder(AtomicInteger::new).maximumIdle(8).build();
+        final Set<AtomicInteger> seen = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final AtomicInteger conflicts = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    final AtomicInteger borrowed = pool.borrow();
+                    seen.add(borrowed);
+                    if (borrowed.incrementAndGet() != 1) {
+                        conflicts.incrementAndGet();
+                    }
+                    borrowed.decrementAndGet();
+                    pool.release(borrowed);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(0, conflicts.get());
+        Assert.assertTrue(pool.idle() <= 8);
+        Assert.assertTrue(seen.size() < 8 * 10_000);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void borrow_factoryReturningNull_throws() {
+        K2JPool.<Object>builder(() -> null).build().borrow();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void release_null_throws() {
+        K2JPool.builder(Object::new).build().release(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumIdle_zero_throws() {
+        K2JPool.builder(Object::new).maximumIdle(0);
+    }
+}
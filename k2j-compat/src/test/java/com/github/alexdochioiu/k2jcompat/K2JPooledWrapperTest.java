@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.takePooled;
+
+public class K2JPooledWrapperTest {
+    private final AtomicInteger created = new AtomicInteger();
+    private final K2JPool<StringBuilder> pool = K2JPool.builder(() -> {
+        created.incrementAndGet();
+        return new StringBuilder();
+    }).reset((it) -> it.setLength(0)).build();
+
+    @Test
+    public void alsoThenLet_givesResultAndReturnsInstance() {
+        final String result = takePooled(pool)
+                .also((it) -> it.append("Hello"))
+                .also((it) -> it.append(", World"))
+                .let(StringBuilder::toString)
+                .unwrap();
+
+        Assert.assertEquals("Hello, World", result);
+        Assert.assertEquals(1, pool.idle());
+    }
+
+    @Test
+    public void repeatedChains_reuseOneInstance() {
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            final String result = takePooled(pool)
+                    .also((it) -> it.append(value))
+                    .let(StringBuilder::toString)
+                    .unwrap();
+            Assert.assertEquals(Integer.toString(i), result);
+        }
+
+        Assert.assertEquals(1, created.get());
+    }
+
+    @Test
+    public void let_carriesOnAsPlainChain() {
+        final Integer result = takePooled(pool)
+                .also((it) -> it.append("  42 "))
+                .let((it) -> it.toString().trim())
+                ._let(Integer::parseInt)
+                .unwrap();
+
+        Assert.assertEquals(Integer.valueOf(42), result);
+    }
+
+    @Test
+    public void nestedChains_borrowDifferentInstances() {
+        final String result = takePooled(pool)
+                .also((outer) -> outer.append(takePooled(pool)
+                        .also((inner) -> inner.append("inner"))
+                        .let(StringBuilder::toString)
+                        .unwrap()))
+                .let(StringBuilder::toString)
+                .unwrap();
+
+        Assert.assertEquals("inner", result);
+        Assert.assertEquals(2, created.get());
+        Assert.assertEquals(2, pool.idle());
+    }
+
+    @Test
+    public void throwingAlso_returnsInstance() {
+        try {
+            takePooled(pool)
+                    .also((it) -> it.append("partial"))
+                    .also((it) -> {
+                        throw new IllegalArgumentException("bad");
+                    });
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("bad", e.getMessage());
+        }
+
+        Assert.assertEquals(1, pool.idle());
+        Assert.assertEquals("", takePooled(pool).let(StringBuilder::toString).unwrap());
+    }
+
+    @Test
+    public void throwingLet_returnsInstance() {
+        try {
+            takePooled(pool).let((it) -> {
+                throw new IllegalArgumentException("bad");
+            });
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("bad", e.getMessage());
+        }
+
+        Assert.assertEquals(1, pool.idle());
+    }
+
+    @Test
+    public void letReturningInstance_throwsAndKeepsItOutOfPool() {
+        try {
+            takePooled(pool).let((it) -> it);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(0, pool.idle());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void useAfterLet_throws() {
+        final K2JPooledWrapper<StringBuilder> wrapper = takePooled(pool);
+        wrapper.let(StringBuilder::length);
+        wrapper.also((it) -> it.append("late"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullPool_throws() {
+        takePooled(null);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JRaceTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void letWithTimeout_fastStage_givesItsResult() {
+        final Integer result = take("42")
+                .letWithTimeout(Integer::parseInt, 5, TimeUnit.SECONDS, -1)
+                .unwrap();
+
+        Assert.assertEquals(Integer.valueOf(42), result);
+    }
+
+    @Test
+    public void letWithTimeout_slowStage_givesFallbackAndInterruptsIt() throws InterruptedException {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final Integer result = take("42")
+                .letWithTimeout((it) -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return 0;
+                }, 50, TimeUnit.MILLISECONDS, -1)
+                .unwrap();
+
+        Assert.assertEquals(Integer.valueOf(-1), result);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void letWithTimeout_nullFallback_skipsNullSafeStages() {
+        final AtomicInteger calls = new AtomicInteger();
+        final String result = take("42")
+                .letWithTimeout((it) -> {
+                    sleep(2_000);
+                    return it;
+                }, 10, TimeUnit.MILLISECONDS, (String) null)
+                ._let((it) -> {
+                    calls.incrementAndGet();
+                    return it;
+                })
+                .unwrap();
+
+        Assert.assertNull(result);
+        Assert.assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void letWithTimeout_rethrowsStageException() {
+        final IllegalStateException thrown = new IllegalStateException();
+        try {
+            take("42").letWithTimeout((it) -> {
+                throw thrown;
+            }, 5, TimeUnit.SECONDS, null);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertSame(thrown, e);
+        }
+    }
+
+    @Test
+    public void letWithTimeout_interruptedCaller_givesFallbackAndKeepsInterrupt() {
+        Thread.currentThread().interrupt();
+        try {
+            final String result = take("42")
+                    .letWithTimeout((it) -> {
+                        sleep(2_000);
+                        return it;
+                    }, 5, TimeUnit.SECONDS, "fallback")
+                    .unwrap();
+
+            Assert.assertEquals("fallback", result);
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void _letWithTimeout_skipsNull() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Object result = take((String) null)
+                ._letWithTimeout((it) -> calls.incrementAndGet(), 5, TimeUnit.SECONDS, -1)
+                .unwrap();
+
+        Assert.assertNull(result);
+        Assert.assertEquals(0, calls.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void letWithTimeout_crashOnNegativeTimeout() {
+        take("42").letWithTimeout(Integer::parseInt, -1, TimeUnit.SECONDS, -1);
+    }
+
+    @Test
+    public void letHedged_fastStage_runsOnce() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Integer result = take("42")
+                .letHedged((it) -> {
+                    calls.incrementAndGet();
+                    return Integer.parseInt(it);
+                }, 5, TimeUnit.SECONDS, executor)
+                .unwrap();
+
+        Assert.assertEquals(Integer.valueOf(42), result);
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void letHedged_slowStage_takesTheSecondRun() throws InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final String result = take("42")
+                .letHedged((it) -> {
+                    if (calls.incrementAndGet() == 1) {
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                        return "first";
+                    }
+                    return "second";
+                }, 50, TimeUnit.MILLISECONDS, executor)
+                .unwrap();
+
+        Assert.assertEquals("second", result);
+        Assert.assertEquals(2, calls.get());
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void letHedged_oneRunFails_takesTheOther() {
+        final AtomicInteger calls = new AtomicInteger();
+        final String result = take("42")
+                .letHedged((it) -> {
+                    if (calls.incrementAndGet() == 1) {
+                        sleep(200);
+                        throw new IllegalStateException();
+                    }
+                    sleep(400);
+                    return "second";
+                }, 50, TimeUnit.MILLISECONDS, executor)
+                .unwrap();
+
+        Assert.assertEquals("second", result);
+    }
+
+    @Test
+    public void letHedged_bothRunsFail_throwsFirstFailure() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            take("42").letHedged((it) -> {
+                final int call = calls.incrementAndGet();
+                sleep(call == 1 ? 200 : 400);
+                throw new IllegalStateException("run " + call);
+            }, 50, TimeUnit.MILLISECONDS, executor);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("run 1", e.getMessage());
+        }
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void letHedged_failureBeforeHedge_isThrownWithoutSecondRun() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            take("42").letHedged((it) -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException();
+            }, 5, TimeUnit.SECONDS, executor);
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+            Assert.assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void letHedged_callerInterruptedBeforeHedge_startsNoSecondRun() {
+        final AtomicInteger tasks = new AtomicInteger();
+        final Thread caller = Thread.currentThread();
+        final String result = take("42")
+                .letHedged((it) -> {
+                    caller.interrupt();
+                    sleep(10_000);
+                    return "first";
+                }, 5, TimeUnit.SECONDS, (task) -> {
+                    tasks.incrementAndGet();
+                    executor.execute(task);
+                })
+                .unwrap();
+
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertNull(result);
+        Assert.assertEquals(1, tasks.get());
+    }
+
+    @Test
+    public void letHedged_rejectedHedge_throwsAndInterruptsFirstRun() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicInteger tasks = new AtomicInteger();
+        try {
+            take("42").letHedged((it) -> {
+                running.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return it;
+            }, 50, TimeUnit.MILLISECONDS, (task) -> {
+                if (tasks.getAndIncrement() > 0) {
+                    awaitQuietly(running);
+                    throw new RejectedExecutionException("full");
+                }
+                executor.execute(task);
+            });
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals("full", e.getMessage());
+        }
+
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, tasks.get());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void withTimeout_rejectingExecutor_throws() {
+        K2JRace.withTimeout(Integer::parseInt, "42", 5, TimeUnit.SECONDS, -1, (task) -> {
+            throw new RejectedExecutionException("full");
+        });
+    }
+
+    @Test
+    public void _letHedged_skipsNull() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Object result = take((String) null)
+                ._letHedged((it) -> calls.incrementAndGet(), 5, TimeUnit.SECONDS, executor)
+                .unwrap();
+
+        Assert.assertNull(result);
+        Assert.assertEquals(0, calls.get());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letHedged_crashOnNullExecutor() {
+        take("42").letHedged(Integer::parseInt, 5, TimeUnit.SECONDS, null);
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
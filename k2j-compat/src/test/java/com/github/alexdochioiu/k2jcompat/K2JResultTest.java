@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class K2JResultTest {
+    private static final K2JStacklessException NOT_A_NUMBER = new K2JStacklessException("not a number");
+
+    @Test
+    public void letCatching_success() {
+        final K2JResult<Integer> result = take("42").letCatching(Integer::parseInt);
+
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertFalse(result.isFailure());
+        Assert.assertNull(result.failure());
+        Assert.assertEquals(42, (int) result.unwrap());
+    }
+
+    @Test
+    public void letCatching_capturesException() {
+        final K2JResult<Integer> result = take("forty two").letCatching(Integer::parseInt);
+
+        Assert.assertTrue(result.isFailure());
+        Assert.assertTrue(result.failure() instanceof NumberFormatException);
+        Assert.assertEquals(-1, (int) result.unwrapOr(-1));
+    }
+
+    @Test
+    public void letCatching_passesNull() {
+        final AtomicBoolean called = new AtomicBoolean();
+
+        final K2JResult<String> result = take((String) null).letCatching((it) -> {
+            called.set(true);
+            return String.valueOf(it);
+        });
+
+        Assert.assertTrue(called.get());
+        Assert.assertEquals("null", result.unwrap());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void letCatching_crashOnNullILet() {
+        take("").letCatching(null);
+    }
+
+    @Test(expected = StackOverflowError.class)
+    public void letCatching_doesNotCaptureErrors() {
+        take("").letCatching((it) -> {
+            throw new StackOverflowError();
+        });
+    }
+
+    @Test
+    public void _letCatching_skipsNull() {
+        final K2JResult<Integer> result = take((String) null)._letCatching((it) -> {
+            Assert.fail("_letCatching must not run on null");
+            return 0;
+        });
+
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertNull(result.unwrap());
+        Assert.assertSame(K2JResult.success(null), result);
+    }
+
+    @Test
+    public void map_runsOnSuccessAndCaptures() {
+        Assert.assertEquals(43, (int) take("42").letCatching(Integer::parseInt).map((it) -> it + 1).unwrap());
+
+        final K2JResult<Integer> failed = take("42").letCatching(Integer::parseInt).map((it) -> it / 0);
+        Assert.assertTrue(failed.failure() instanceof ArithmeticException);
+    }
+
+    @Test
+    public void map_skipsFailureWithoutAllocating() {
+        final K2JResult<Integer> failed = take("x").letCatching(Integer::parseInt);
+
+        final K2JResult<String> mapped = failed.map((it) -> {
+            Assert.fail("map must not run on a failure");
+            return "";
+        });
+
+        Assert.assertSame(failed, mapped);
+    }
+
+    @Test
+    public void recover_turnsFailureIntoSuccess() {
+        final K2JResult<Integer> recovered = take("x")
+                .letCatching(Integer::parseInt)
+                .recover((failure) -> failure instanceof NumberFormatException ? 0 : -1);
+
+        Assert.assertTrue(recovered.isSuccess());
+        Assert.assertEquals(0, (int) recovered.unwrap());
+    }
+
+    @Test
+    public void recover_keepsSuccess() {
+        final K2JResult<Integer> success = take("1").letCatching(Integer::parseInt);
+
+        Assert.assertSame(success, success.recover((failure) -> 0));
+    }
+
+    @Test
+    public void unwrapOrElse() {
+        Assert.assertEquals(1, (int) take("1").letCatching(Integer::parseInt).unwrapOrElse((failure) -> 0));
+        Assert.assertEquals(0, (int) take("x").letCatching(Integer::parseInt).unwrapOrElse((failure) -> 0));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void unwrap_rethrowsUncheckedFailure() {
+        take("x").letCatching(Integer::parseInt).unwrap();
+    }
+
+    @Test
+    public void unwrap_wrapsCheckedFailure() {
+        final IOException failure = new IOException("boom");
+        try {
+            K2JResult.failure(failure).unwrap();
+            Assert.fail("unwrap of a failure must throw");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void toWrapper_continuesTheChain() {
+        Assert.assertEquals("42!", take("42").letCatching(Integer::parseInt).toWrapper()._let((it) -> it + "!").unwrap());
+        Assert.assertSame(K2JCompat.K2JWrapper.empty(), take("x").letCatching(Integer::parseInt).toWrapper());
+    }
+
+    @Test
+    public void stacklessException_hasNoStackTrace() {
+        Assert.assertEquals(0, NOT_A_NUMBER.getStackTrace().length);
+
+        NOT_A_NUMBER.addSuppressed(new RuntimeException());
+        Assert.assertEquals(0, NOT_A_NUMBER.getSuppressed().length);
+    }
+
+    @Test
+    public void stacklessException_usesPreallocatedResult() {
+        final K2JResult<Integer> first = take("x").letCatching((it) -> {
+            throw NOT_A_NUMBER;
+        });
+        final K2JResult<Long> second = take("y").letCatching((it) -> {
+            throw NOT_A_NUMBER;
+        });
+
+        Assert.assertSame(NOT_A_NUMBER, first.failure());
+        Assert.assertSame(first, second);
+        Assert.assertSame(first, K2JResult.failure(NOT_A_NUMBER));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void failure_crashOnNull() {
+        K2JResult.failure(null);
+    }
+}
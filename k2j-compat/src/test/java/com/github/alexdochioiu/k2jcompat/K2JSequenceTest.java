@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.takeSequence;
+
+public class K2JSequenceTest {
+
+    @Test(expected = NullPointerException.class)
+    public void takeSequence_crashOnNullArray() {
+        takeSequence((String[]) null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void map_crashOnNullILet() {
+        takeSequence(new String[0]).map(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void take_crashOnNegativeCount() {
+        takeSequence(new String[0]).take(-1);
+    }
+
+    @Test
+    public void stages_runInOrder() {
+        final List<Integer> result = takeSequence(new String[]{" 1", "22 ", null, "x", " 333 "})
+                .mapNotNull((it) -> it.trim())
+                .filter((it) -> Character.isDigit(it.charAt(0)))
+                .map(String::length)
+                .toList();
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), result);
+    }
+
+    @Test
+    public void map_passesNullAndKeepsNullResults() {
+        final List<String> result = takeSequence(Arrays.asList("a", null))
+                .map((it) -> it == null ? "was null" : null)
+                .toList();
+
+        Assert.assertEquals(Arrays.asList(null, "was null"), result);
+    }
+
+    @Test
+    public void filter_seesNull() {
+        final List<String> result = takeSequence(Arrays.asList("a", null, "b"))
+                .filter((it) -> it == null)
+                .toList();
+
+        Assert.assertEquals(Collections.singletonList((String) null), result);
+    }
+
+    @Test
+    public void mapNotNull_skipsNullWithoutCalling() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final List<Integer> result = takeSequence(Arrays.asList("a", null, "bb"))
+                .mapNotNull((it) -> {
+                    calls.incrementAndGet();
+                    return it.length() > 1 ? it.length() : null;
+                })
+                .toList();
+
+        Assert.assertEquals(Collections.singletonList(2), result);
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void nothingRunsBeforeTerminal() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final K2JSequence<String> sequence = takeSequence(Arrays.asList("a", "b"))
+                .onEach((it) -> calls.incrementAndGet());
+
+        Assert.assertEquals(0, calls.get());
+        Assert.assertEquals(2, sequence.count());
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void stages_areFusedElementByElement() {
+        final List<String> events = new ArrayList<>();
+
+        takeSequence(new String[]{"a", "b"})
+                .onEach((it) -> events.add("first " + it))
+                .map(String::toUpperCase)
+                .onEach((it) -> events.add("second " + it))
+                .toList();
+
+        Assert.assertEquals(Arrays.asList("first a", "second A", "first b", "second B"), events);
+    }
+
+    @Test
+    public void take_stopsPullingFromSource() {
+        final AtomicInteger pulled = new AtomicInteger();
+        final Iterable<Integer> naturals = () -> new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                pulled.incrementAndGet();
+                return next++;
+            }
+        };
+
+        final List<Integer> result = takeSequence(naturals)
+                .filter((it) -> it % 2 == 0)
+                .take(3)
+                .toList();
+
+        Assert.assertEquals(Arrays.asList(0, 2, 4), result);
+        Assert.assertEquals(5, pulled.get());
+    }
+
+    @Test
+    public void take_zeroPullsNothing() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final List<String> result = takeSequence(Arrays.asList("a", "b"))
+                .onEach((it) -> calls.incrementAndGet())
+                .take(0)
+                .toList();
+
+        Assert.assertTrue(result.isEmpty());
+        Assert.assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void take_moreThanAvailable() {
+        Assert.assertEquals(Arrays.asList("a", "b"), takeSequence(Arrays.asList("a", "b")).take(5).toList());
+    }
+
+    @Test
+    public void take_twice() {
+        Assert.assertEquals(Arrays.asList(1, 2),
+                takeSequence(new Integer[]{1, 2, 3, 4}).take(3).take(2).toList());
+    }
+
+    @Test
+    public void firstOrNull() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String first = takeSequence(new LinkedList<>(Arrays.asList("a", "bb", "cc")))
+                .onEach((it) -> calls.incrementAndGet())
+                .filter((it) -> it.length() == 2)
+                .firstOrNull();
+
+        Assert.assertEquals("bb", first);
+        Assert.assertEquals(2, calls.get());
+        Assert.assertNull(takeSequence(new String[0]).firstOrNull());
+    }
+
+    @Test
+    public void anyAndAll_stopEarly() {
+        final AtomicInteger calls = new AtomicInteger();
+        final K2JSequence<Integer> sequence = takeSequence(new Integer[]{1, 2, 3, 4})
+                .onEach((it) -> calls.incrementAndGet());
+
+        Assert.assertTrue(sequence.any((it) -> it == 2));
+        Assert.assertEquals(2, calls.getAndSet(0));
+
+        Assert.assertFalse(sequence.all((it) -> it < 3));
+        Assert.assertEquals(3, calls.getAndSet(0));
+
+        Assert.assertTrue(sequence.all((it) -> it > 0));
+        Assert.assertFalse(sequence.any((it) -> it > 4));
+    }
+
+    @Test
+    public void forEach_visitsInOrder() {
+        final List<Integer> visited = new ArrayList<>();
+
+        takeSequence(Arrays.asList(3, 1, 2)).forEach(visited::add);
+
+        Assert.assertEquals(Arrays.asList(3, 1, 2), visited);
+    }
+
+    @Test
+    public void sequence_canRunAgain() {
+        final K2JSequence<Integer> lengths = takeSequence(Arrays.asList("a", "bb")).map(String::length);
+
+        Assert.assertEquals(lengths.toList(), lengths.toList());
+    }
+
+    @Test
+    public void sequence_isImmutable() {
+        final K2JSequence<String> base = takeSequence(Arrays.asList("a", "bb"));
+
+        base.filter((it) -> false);
+        base.take(1);
+
+        Assert.assertEquals(2, base.count());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class K2JStreamsTest {
+
+    private static final List<String> INPUT = Arrays.asList(" 1 ", null, "x", " 22", "333 ", "");
+
+    private static final K2JPipeline<String, Integer> PARSE = K2JPipeline.<String>start()
+            ._let(String::trim)
+            ._takeIf((it) -> it.matches("[0-9]+"))
+            ._let(Integer::parseInt);
+
+    @Test
+    public void function_appliesPipeline() {
+        final List<Integer> out = INPUT.stream()
+                .map(K2JStreams.function(PARSE))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(Arrays.asList(1, null, null, 22, 333, null), out);
+    }
+
+    @Test
+    public void let_receivesNull() {
+        final List<String> out = Stream.of("a", null)
+                .map(K2JStreams.let((String it) -> String.valueOf(it)))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(Arrays.asList("a", "null"), out);
+    }
+
+    @Test
+    public void _let_skipsNull() {
+        final List<Integer> out = INPUT.stream()
+                .map(K2JStreams._let(String::length))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(Arrays.asList(3, null, 1, 3, 4, 0), out);
+    }
+
+    @Test
+    public void takeIf_and_takeUnless() {
+        Assert.assertEquals(Arrays.asList(2, 4), Stream.of(1, 2, 3, 4)
+                .filter(K2JStreams.takeIf((it) -> it % 2 == 0))
+                .collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(1, 3), Stream.of(1, 2, 3, 4)
+                .filter(K2JStreams.takeUnless((it) -> it % 2 == 0))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void nullSafeTakes_dropNullWithoutCallingITake() {
+        final AtomicBoolean calledWithNull = new AtomicBoolean(false);
+
+        final List<String> kept = INPUT.stream()
+                .filter(K2JStreams._takeIf((it) -> {
+                    calledWithNull.compareAndSet(false, it == null);
+                    return !it.isEmpty();
+                }))
+                .collect(Collectors.toList());
+        final List<String> notRejected = INPUT.stream()
+                .filter(K2JStreams._takeUnless(String::isEmpty))
+                .collect(Collectors.toList());
+
+        Assert.assertFalse(calledWithNull.get());
+        Assert.assertEquals(Arrays.asList(" 1 ", "x", " 22", "333 "), kept);
+        Assert.assertEquals(kept, notRejected);
+    }
+
+    @Test
+    public void collector_keepsNonNullResultsInOrder() {
+        Assert.assertEquals(Arrays.asList(1, 22, 333), INPUT.stream().collect(K2JStreams.collector(PARSE)));
+    }
+
+    @Test
+    public void collector_parallel_keepsOrder() {
+        final List<String> input = numbers(10_000);
+        final List<Integer> expected = input.stream()
+                .map(K2JStreams.function(PARSE))
+                .filter((it) -> it != null)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(expected, input.parallelStream().collect(K2JStreams.collector(PARSE)));
+    }
+
+    @Test
+    public void stream_collection_skipsNullResults() {
+        Assert.assertEquals(Arrays.asList(1, 22, 333),
+                K2JStreams.stream(INPUT, PARSE).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void stream_tryAdvance_skipsNullResults() {
+        final Spliterator<Integer> spliterator = K2JStreams.spliterator(INPUT.spliterator(), PARSE);
+        final StringBuilder seen = new StringBuilder();
+
+        while (spliterator.tryAdvance((it) -> seen.append(it).append(','))) {
+            // drain one element at a time
+        }
+
+        Assert.assertEquals("1,22,333,", seen.toString());
+    }
+
+    @Test
+    public void stream_parallelSource_staysParallelAndOrdered() {
+        final List<String> input = numbers(10_000);
+        final Stream<Integer> stream = K2JStreams.stream(input.parallelStream(), PARSE);
+
+        Assert.assertTrue(stream.isParallel());
+        Assert.assertEquals(
+                input.stream().collect(K2JStreams.collector(PARSE)),
+                stream.collect(Collectors.toList()));
+    }
+
+    @Test
+    public void stream_closeClosesSource() {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+
+        K2JStreams.stream(INPUT.stream().onClose(() -> closed.set(true)), PARSE).close();
+
+        Assert.assertTrue(closed.get());
+    }
+
+    @Test
+    public void spliterator_characteristics() {
+        final Spliterator<Integer> spliterator = K2JStreams.spliterator(INPUT.spliterator(), PARSE);
+
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+        Assert.assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+    }
+
+    private static List<String> numbers(final int count) {
+        return IntStream.range(0, count)
+                .mapToObj((it) -> it % 5 == 0 ? "n" + it : String.valueOf(it))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+/**
+ * Per-operation allocation budgets for every {@link K2JCompat.K2JWrapper} method, measured with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}. Null and filtered-out
+ * paths must not allocate at all; a non-null {@code let} / {@code _let} may allocate one wrapper.
+ */
+public class K2JWrapperAllocationTest {
+
+    private static final int OPERATIONS = 200_000;
+    /**
+     * Bytes tolerated per measured loop (not per operation) for the measurement itself.
+     */
+    private static final long MEASUREMENT_SLACK = 4096;
+    /**
+     * One {@code K2JWrapper}: 12 byte header + 4 byte reference (16 bytes) with compressed oops,
+     * 24 bytes without.
+     */
+    private static final long ONE_WRAPPER = 24;
+    private static final long NOTHING = 0;
+    private static final K2JStacklessException FAILURE = new K2JStacklessException("failure");
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+
+    private static Object sink;
+
+    @BeforeClass
+    public static void setUpClass() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void take_nonNull() {
+        final String value = "value";
+        assertBudget(ONE_WRAPPER, () -> take(value));
+    }
+
+    @Test
+    public void take_null() {
+        assertBudget(NOTHING, () -> take(null));
+    }
+
+    @Test
+    public void unwrap() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, wrapper::unwrap);
+    }
+
+    @Test
+    public void let_nonNullResult() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(ONE_WRAPPER, () -> wrapper.let((it) -> it));
+    }
+
+    @Test
+    public void let_nullResult() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper.let((it) -> null));
+    }
+
+    @Test
+    public void _let_nonNull() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(ONE_WRAPPER, () -> wrapper._let((it) -> it));
+    }
+
+    @Test
+    public void _let_null() {
+        final K2JCompat.K2JWrapper<String> wrapper = take(null);
+        assertBudget(NOTHING, () -> wrapper._let((it) -> it));
+    }
+
+    @Test
+    public void also_nonNull() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper.also((it) -> sink = it));
+    }
+
+    @Test
+    public void _also_nonNull() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper._also((it) -> sink = it));
+    }
+
+    @Test
+    public void _also_null() {
+        final K2JCompat.K2JWrapper<String> wrapper = take(null);
+        assertBudget(NOTHING, () -> wrapper._also((it) -> sink = it));
+    }
+
+    @Test
+    public void takeIf_kept() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper.takeIf((it) -> true));
+    }
+
+    @Test
+    public void takeIf_filteredOut() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper.takeIf((it) -> false));
+    }
+
+    @Test
+    public void _takeIf_filteredOut() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper._takeIf((it) -> false));
+    }
+
+    @Test
+    public void _takeIf_null() {
+        final K2JCompat.K2JWrapper<String> wrapper = take(null);
+        assertBudget(NOTHING, () -> wrapper._takeIf((it) -> true));
+    }
+
+    @Test
+    public void takeUnless_kept() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper.takeUnless((it) -> false));
+    }
+
+    @Test
+    public void takeUnless_filteredOut() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper.takeUnless((it) -> true));
+    }
+
+    @Test
+    public void _takeUnless_filteredOut() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper._takeUnless((it) -> true));
+    }
+
+    @Test
+    public void _takeUnless_null() {
+        final K2JCompat.K2JWrapper<String> wrapper = take(null);
+        assertBudget(NOTHING, () -> wrapper._takeUnless((it) -> false));
+    }
+
+    @Test
+    public void chain_afterShortCircuit() {
+        final String value = "value";
+        // only the initial take(value) allocates
+        assertBudget(ONE_WRAPPER, () -> take(value)
+                .takeIf((it) -> false)
+                ._let(String::length)
+                ._also((it) -> sink = it)
+                ._takeUnless((it) -> it > 2)
+                ._let(Integer::toBinaryString)
+                .unwrap());
+    }
+
+    @Test
+    public void letCatching_stacklessFailure() {
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        assertBudget(NOTHING, () -> wrapper.letCatching((it) -> {
+            throw FAILURE;
+        }));
+    }
+
+    @Test
+    public void letCatching_failureMapped() {
+        final K2JResult<String> failed = take("value").letCatching((it) -> {
+            throw FAILURE;
+        });
+        assertBudget(NOTHING, () -> failed.map(String::length));
+    }
+
+    @Test
+    public void _letCatching_null() {
+        final K2JCompat.K2JWrapper<String> wrapper = take(null);
+        assertBudget(NOTHING, () -> wrapper._letCatching((it) -> it));
+    }
+
+    @Test
+    public void alsoDeferred() {
+        // no drainer thread, so a full buffer is drained by this thread, inside the measurement
+        final K2JDeferredEffects effects = K2JDeferredEffects.builder().drainInBackground(false).build();
+        final K2JCompat.K2JWrapper<String> wrapper = take("value");
+        final K2JCompat.IAlso<String> noOp = (it) -> { };
+        assertBudget(NOTHING, () -> wrapper.alsoDeferred(noOp, effects));
+    }
+
+    private static void assertBudget(final long bytesPerOperation, final Operation operation) {
+        // first pass warms up the interpreter/JIT and any lazily initialised state
+        measure(operation);
+        final long allocated = measure(operation);
+
+        final long budget = bytesPerOperation * OPERATIONS + MEASUREMENT_SLACK;
+        Assert.assertTrue(
+                "allocated " + ((double) allocated / OPERATIONS) + " bytes/op, budget is " + bytesPerOperation,
+                allocated <= budget);
+    }
+
+    private static long measure(final Operation operation) {
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < OPERATIONS; i++) {
+            sink = operation.run();
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private interface Operation {
+        Object run();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 Alexandru Iustin Dochioiu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.alexdochioiu.k2jcompat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.alexdochioiu.k2jcompat.K2JCompat.take;
+
+public class LongWrapperTest {
+
+    @Test
+    public void take_long_returnsLongWrapper() {
+        final Object object = take(5L);
+        //noinspection ConstantConditions
+        Assert.assertTrue(object instanceof LongWrapper);
+    }
+
+    @Test
+    public void chain() {
+        final AtomicLong fromAlso = new AtomicLong();
+
+        final long returned = take(Integer.MAX_VALUE + 1L)
+                .let((in) -> in * 2)
+                .also(fromAlso::set)
+                .takeIf((in) -> in > Integer.MAX_VALUE)
+                .takeUnless((in) -> in < 0)
+                .unwrap();
+
+        Assert.assertEquals((Integer.MAX_VALUE + 1L) * 2, returned);
+        Assert.assertEquals(returned, fromAlso.get());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void unwrap_absent_throws() {
+        take(1L).takeUnless((in) -> true).unwrap();
+    }
+
+    @Test
+    public void absent_unwrapOrAndLetObj() {
+        final LongWrapper absent = take(1L).takeIf((in) -> false);
+
+        Assert.assertFalse(absent.isPresent());
+        Assert.assertEquals(7L, absent.let((in) -> in + 1).unwrapOr(7L));
+        Assert.assertNull(absent.letObj(Long::toString).unwrap());
+    }
+
+    @Test
+    public void _letLong_fromObjectChain() {
+        Assert.assertEquals(12L, take("12")._letLong(Long::parseLong).unwrap());
+        Assert.assertFalse(take((String) null)._letLong(Long::parseLong).isPresent());
+    }
+}